@@ -19,14 +19,33 @@ CREATE TABLE wallets (
   customer_id BIGINT UNSIGNED NOT NULL UNIQUE, -- 1:1
   balance DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
   version INT NOT NULL DEFAULT 0, -- maps to @Version optimistic locking in JPA
+  shard_count INT NULL,          -- set when the wallet runs in hot mode (balance split across shards)
   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   CONSTRAINT fk_wallet_customer FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
 ) ENGINE=InnoDB;
 
+-- Pooled id blocks for ledger-side tables (JPA TABLE generator, allocationSize 100), so their inserts can be JDBC-batched
+CREATE TABLE id_sequences (
+  sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+  next_val BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+-- Balance shards for hot wallets (credits pick a random shard, debits sweep in shard_no order)
+CREATE TABLE wallet_balance_shards (
+  id BIGINT UNSIGNED NOT NULL PRIMARY KEY,        -- allocated from id_sequences
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  shard_no INT NOT NULL,
+  balance DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
+  version INT NOT NULL DEFAULT 0,                 -- @Version; wallet version + shard versions orders cached balances
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  CONSTRAINT fk_shard_wallet FOREIGN KEY (wallet_id) REFERENCES wallets(id) ON DELETE CASCADE,
+  UNIQUE KEY uk_shard_wallet_no (wallet_id, shard_no)
+) ENGINE=InnoDB;
+
 -- Transactions
 CREATE TABLE transactions (
-  id CHAR(36) NOT NULL PRIMARY KEY,             -- store UUID as CHAR(36)
+  id BINARY(16) NOT NULL PRIMARY KEY,           -- time-ordered UUID (v7) as 16 raw bytes
   wallet_id BIGINT UNSIGNED NOT NULL,           -- wallet that this transaction belongs to
   amount DECIMAL(19,4) NOT NULL,
   type ENUM('CREDIT','DEBIT') NOT NULL,
@@ -34,7 +53,8 @@ CREATE TABLE transactions (
   transfer_id CHAR(36) NULL,                    -- optional: group of txns for a transfer
   related_wallet_id BIGINT UNSIGNED NULL,       -- counterparty wallet for transfers
   reference VARCHAR(255) NULL,                  -- external reference (payment id, etc.)
-  created_at DATETIME(6) NOT NULL DEFAULT (CURRENT_TIMESTAMP(6)),
+  created_at DATETIME(6) NOT NULL DEFAULT (CURRENT_TIMESTAMP(6)), -- history order; INITIATED legs are restamped when they settle
+  balance_after DECIMAL(19,4) NULL,             -- wallet balance after this entry (NULL until backfilled for hot wallets)
   CONSTRAINT fk_tx_wallet FOREIGN KEY (wallet_id) REFERENCES wallets(id) ON DELETE CASCADE,
   CONSTRAINT fk_tx_related_wallet FOREIGN KEY (related_wallet_id) REFERENCES wallets(id) ON DELETE SET NULL,
   INDEX idx_tx_wallet_created (wallet_id, created_at),
@@ -42,6 +62,154 @@ CREATE TABLE transactions (
   INDEX idx_tx_status (status)
 ) ENGINE=InnoDB;
 
+-- Transactional outbox: one compact event per successful transactions row, written in the same DB transaction
+-- and drained by OutboxRelay (SELECT ... FOR UPDATE SKIP LOCKED, deleted once the sink accepted the batch)
+CREATE TABLE outbox_events (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  transaction_id BINARY(16) NOT NULL,
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  type ENUM('CREDIT','DEBIT') NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  balance_after DECIMAL(19,4) NULL,
+  transfer_id CHAR(36) NULL,
+  related_wallet_id BIGINT UNSIGNED NULL,
+  occurred_at DATETIME(6) NOT NULL
+) ENGINE=InnoDB;
+
+-- One-to-many payout campaigns (DisbursementService); the campaign id is the transfer_id of the rows it writes
+CREATE TABLE disbursements (
+  id CHAR(36) NOT NULL PRIMARY KEY,
+  source_wallet_id BIGINT UNSIGNED NOT NULL,
+  reference VARCHAR(255) NULL,
+  status VARCHAR(9) NOT NULL,                   -- RUNNING, PAUSED, COMPLETED, FAILED
+  total_items INT NOT NULL,
+  total_amount DECIMAL(19,4) NOT NULL,
+  paid_items INT NOT NULL DEFAULT 0,
+  failed_items INT NOT NULL DEFAULT 0,
+  amount_paid DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
+  last_error VARCHAR(255) NULL,
+  created_at DATETIME(6) NOT NULL,
+  started_at DATETIME(6) NULL,
+  processed_at_start INT NOT NULL DEFAULT 0,
+  finished_at DATETIME(6) NULL,
+  CONSTRAINT fk_disbursement_source FOREIGN KEY (source_wallet_id) REFERENCES wallets(id)
+) ENGINE=InnoDB;
+
+-- Items are paid in wallet id order; an item is marked PAID in the same transaction that credits it
+CREATE TABLE disbursement_items (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  campaign_id CHAR(36) NOT NULL,
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  status ENUM('PENDING','PAID','FAILED') NOT NULL,
+  CONSTRAINT fk_disbursement_item_campaign FOREIGN KEY (campaign_id) REFERENCES disbursements(id) ON DELETE CASCADE,
+  UNIQUE KEY uk_disbursement_item (campaign_id, wallet_id),
+  INDEX idx_disbursement_pending (campaign_id, status, wallet_id)
+) ENGINE=InnoDB;
+
+-- End-of-day balances, one row per wallet and day with activity (written by BalanceSnapshotService)
+CREATE TABLE wallet_daily_balances (
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  balance_date DATE NOT NULL,
+  net_change DECIMAL(19,4) NOT NULL,
+  closing_balance DECIMAL(19,4) NOT NULL,
+  PRIMARY KEY (wallet_id, balance_date),
+  CONSTRAINT fk_daily_balance_wallet FOREIGN KEY (wallet_id) REFERENCES wallets(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
+
+-- Last day for which wallet_daily_balances is complete (single row; locked while a day is being closed)
+CREATE TABLE balance_snapshot_progress (
+  id INT NOT NULL PRIMARY KEY,
+  closed_through DATE NULL
+) ENGINE=InnoDB;
+INSERT INTO balance_snapshot_progress (id, closed_through) VALUES (1, NULL);
+
+-- Balance reconciliation runs (ReconciliationService); each run checkpoints its wallet id ranges
+CREATE TABLE reconciliation_runs (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  status VARCHAR(9) NOT NULL,                   -- RUNNING, COMPLETED, FAILED
+  started_at DATETIME(6) NOT NULL,
+  finished_at DATETIME(6) NULL,
+  changed_since DATETIME(6) NULL,               -- incremental runs only check wallets updated since; NULL = full run
+  range_size INT NOT NULL,
+  wallets_checked BIGINT NOT NULL DEFAULT 0,
+  mismatches BIGINT NOT NULL DEFAULT 0
+) ENGINE=InnoDB;
+
+CREATE TABLE reconciliation_ranges (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  run_id BIGINT UNSIGNED NOT NULL,
+  range_start BIGINT UNSIGNED NOT NULL,
+  range_end BIGINT UNSIGNED NOT NULL,
+  done BOOLEAN NOT NULL DEFAULT FALSE,
+  wallets_checked INT NULL,
+  mismatches INT NULL,
+  checked_at DATETIME(6) NULL,
+  CONSTRAINT fk_recon_range_run FOREIGN KEY (run_id) REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+  UNIQUE KEY uk_recon_range (run_id, range_start)
+) ENGINE=InnoDB;
+
+CREATE TABLE reconciliation_mismatches (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  run_id BIGINT UNSIGNED NOT NULL,
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  wallet_balance DECIMAL(19,4) NOT NULL,        -- wallets row plus hot-wallet shards
+  ledger_balance DECIMAL(19,4) NOT NULL,        -- net of SUCCESS transactions
+  difference DECIMAL(19,4) NOT NULL,
+  detected_at DATETIME(6) NOT NULL,
+  CONSTRAINT fk_recon_mismatch_run FOREIGN KEY (run_id) REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+  INDEX idx_recon_mismatch_run (run_id, wallet_id)
+) ENGINE=InnoDB;
+
+-- Idempotency keys for money-moving calls (claimed with INSERT IGNORE in the same transaction)
+CREATE TABLE idempotency_keys (
+  idem_key VARCHAR(132) NOT NULL PRIMARY KEY,  -- hdr:<Idempotency-Key> or transfer:<transferId>
+  operation VARCHAR(64) NOT NULL,
+  request_hash CHAR(64) NULL,                   -- SHA-256 of the request, to reject key reuse
+  response_status INT NULL,
+  response_body MEDIUMTEXT NULL,                -- serialized response replayed on retry
+  created_at DATETIME(6) NOT NULL DEFAULT (CURRENT_TIMESTAMP(6))
+) ENGINE=InnoDB;
+
+-- Highest ledger journal sequence persisted to MySQL (LedgerPersister; advanced in the same transaction as the rows)
+CREATE TABLE ledger_flush_state (
+  id TINYINT NOT NULL PRIMARY KEY,
+  last_seq BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+-- Ledger journal entries MySQL rejected (LedgerEngine quarantines them instead of retrying their batch forever);
+-- entry is the journal line, to be repaired and replayed by hand
+CREATE TABLE ledger_dead_letters (
+  seq BIGINT NOT NULL PRIMARY KEY,
+  transaction_id BINARY(16) NOT NULL,
+  wallet_id BIGINT UNSIGNED NOT NULL,
+  entry TEXT NOT NULL,
+  error VARCHAR(1024) NULL,
+  quarantined_at DATETIME(6) NOT NULL
+) ENGINE=InnoDB;
+
+-- Wallets whose balance_after walk is under way (RunningBalanceBackfill): rows older than
+-- (before_created_at, before_id) are next, and the newest of them ends at balance
+CREATE TABLE balance_after_backfill (
+  wallet_id BIGINT UNSIGNED NOT NULL PRIMARY KEY,
+  before_created_at DATETIME(6) NOT NULL,
+  before_id BINARY(16) NOT NULL,
+  balance DECIMAL(19,4) NOT NULL
+) ENGINE=InnoDB;
+
+-- Highest wallet id the startup balance_after scan has finished (single row)
+CREATE TABLE balance_after_backfill_state (
+  id TINYINT NOT NULL PRIMARY KEY,
+  scanned_through BIGINT UNSIGNED NOT NULL
+) ENGINE=InnoDB;
+
+-- Existing deployments: register already processed transfer ids so they stay idempotent
+-- INSERT IGNORE INTO idempotency_keys (idem_key, operation)
+--   SELECT DISTINCT CONCAT('transfer:', transfer_id), 'TRANSFER' FROM transactions WHERE transfer_id IS NOT NULL;
+-- and move header keys (the rows with a request hash) into their own namespace
+-- ALTER TABLE idempotency_keys MODIFY idem_key VARCHAR(132) NOT NULL;
+-- UPDATE idempotency_keys SET idem_key = CONCAT('hdr:', idem_key) WHERE request_hash IS NOT NULL;
+
 -- Customers
 INSERT INTO customers (name, email) VALUES
   ('Rakesh', 'rakesh@example.com'),
@@ -52,79 +220,29 @@ INSERT INTO wallets (customer_id, balance) VALUES
   (1, 1000.00),
   (2, 250.50);
 
--- Example transactions
-INSERT INTO transactions (id, wallet_id, amount, type, status, created_at)
-VALUES
-  (UUID(), 1, 1000.00, 'CREDIT', 'SUCCESS', NOW(6)),
-  (UUID(), 2, 250.50, 'CREDIT', 'SUCCESS', NOW(6));
-
-
 DELIMITER $$
 
-CREATE PROCEDURE transfer_funds(
-  IN p_from_wallet BIGINT,
-  IN p_to_wallet BIGINT,
-  IN p_amount DECIMAL(19,4),
-  IN p_reference VARCHAR(255)
-)
+-- Time-ordered UUID (v7) as 16 raw bytes, the same layout TimeOrderedUuid generates in the application
+CREATE FUNCTION uuid_v7() RETURNS BINARY(16) NOT DETERMINISTIC NO SQL
 BEGIN
-  DECLARE v_balance DECIMAL(19,4);
-  DECLARE v_transfer_id CHAR(36) DEFAULT UUID();
-  DECLARE v_txid1 CHAR(36);
-  DECLARE v_txid2 CHAR(36);
-
-  -- Basic validations
-  IF p_from_wallet = p_to_wallet THEN
-    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'SAME_WALLET';
-  END IF;
-
-  IF p_amount <= 0 THEN
-    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'INVALID_AMOUNT';
-  END IF;
-
-  START TRANSACTION;
-    -- Lock source wallet row
-    SELECT balance INTO v_balance FROM wallets WHERE id = p_from_wallet FOR UPDATE;
-    IF v_balance IS NULL THEN
-      ROLLBACK;
-      SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'SOURCE_WALLET_NOT_FOUND';
-    END IF;
-
-    -- Check sufficient funds
-    IF v_balance < p_amount THEN
-      ROLLBACK;
-      SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'INSUFFICIENT_FUNDS';
-    END IF;
-
-    -- Lock destination wallet row (ensure it exists) - optional to lock both
-    SELECT balance INTO v_balance FROM wallets WHERE id = p_to_wallet FOR UPDATE;
-    IF v_balance IS NULL THEN
-      ROLLBACK;
-      SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'DEST_WALLET_NOT_FOUND';
-    END IF;
-
-    -- Perform updates
-    UPDATE wallets
-      SET balance = balance - p_amount,
-          version = version + 1
-      WHERE id = p_from_wallet;
-
-    UPDATE wallets
-      SET balance = balance + p_amount,
-          version = version + 1
-      WHERE id = p_to_wallet;
-
-    -- Insert transaction rows (two entries: debit & credit)
-    SET v_txid1 = UUID();
-    SET v_txid2 = UUID();
-
-    INSERT INTO transactions (id, wallet_id, amount, type, status, transfer_id, related_wallet_id, reference, created_at)
-    VALUES (v_txid1, p_from_wallet, p_amount, 'DEBIT', 'SUCCESS', v_transfer_id, p_to_wallet, p_reference, NOW(6));
-
-    INSERT INTO transactions (id, wallet_id, amount, type, status, transfer_id, related_wallet_id, reference, created_at)
-    VALUES (v_txid2, p_to_wallet, p_amount, 'CREDIT', 'SUCCESS', v_transfer_id, p_from_wallet, p_reference, NOW(6));
-
-  COMMIT;
+  DECLARE v_rand BINARY(10) DEFAULT RANDOM_BYTES(10);
+  RETURN CONCAT(
+    UNHEX(LPAD(HEX(FLOOR(UNIX_TIMESTAMP(NOW(3)) * 1000)), 12, '0')),  -- 48 bits of unix millis
+    CHAR(0x70 | (ASCII(SUBSTR(v_rand, 1, 1)) & 0x0F)),                 -- version 7
+    SUBSTR(v_rand, 2, 1),
+    CHAR(0x80 | (ASCII(SUBSTR(v_rand, 3, 1)) & 0x3F)),                 -- IETF variant
+    SUBSTR(v_rand, 4, 7));
 END$$
 
 DELIMITER ;
+
+-- Example transactions
+INSERT INTO transactions (id, wallet_id, amount, type, status, created_at, balance_after)
+VALUES
+  (uuid_v7(), 1, 1000.00, 'CREDIT', 'SUCCESS', NOW(6), 1000.00),
+  (uuid_v7(), 2, 250.50, 'CREDIT', 'SUCCESS', NOW(6), 250.50);
+
+-- Transfers go through WalletService only: besides the two wallet rows it writes balance_after, the outbox
+-- event and the transfer claim, and keeps hot-wallet shards, the ledger engine and the balance caches in step.
+-- Existing deployments: drop the old procedure that bypassed all of that
+-- DROP PROCEDURE IF EXISTS transfer_funds;
@@ -0,0 +1,50 @@
+-- Generates a 1M-wallet dataset for timing the reconciliation job (run against an empty schema from database.sql).
+--
+--   mysql -u root -p miniwallet < loadtest/reconciliation-dataset.sql
+--   curl -X POST 'http://localhost:8080/api/reconciliation/runs?full=true'
+--   curl http://localhost:8080/api/reconciliation/runs/1     (poll until COMPLETED)
+--
+-- Each wallet gets one opening deposit and two to four later movements (~4M transaction rows), balances are
+-- derived from them, and every 10000th wallet is then skewed by 0.01 so the report should list exactly 100
+-- mismatches. Throughput = wallets_checked / (finished_at - started_at); the service also logs it per run.
+-- Re-run an incremental pass (POST without full=true) after touching a few wallets to compare.
+-- Try wallet.reconciliation.db-concurrency at 1, 4 and 8 to see where the database stops scaling.
+
+SET SESSION cte_max_recursion_depth = 1000000;
+SET @wallets = 1000000;
+
+DELETE FROM balance_snapshot_progress;
+INSERT INTO balance_snapshot_progress (id, closed_through) VALUES (1, CURRENT_DATE - INTERVAL 1 DAY);
+
+INSERT INTO customers (id, name, email)
+WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < @wallets)
+SELECT n, CONCAT('load-', n), CONCAT('load-', n, '@example.com') FROM seq;
+
+INSERT INTO wallets (id, customer_id, balance)
+WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < @wallets)
+SELECT n, n, 0 FROM seq;
+
+-- opening deposit, then k = 1..(n % 3 + 2) movements alternating credit/debit (debits are smaller, never overdraw)
+INSERT INTO transactions (id, wallet_id, amount, type, status, created_at)
+SELECT UUID_TO_BIN(UUID(), 1), id, 1000.0000, 'CREDIT', 'SUCCESS', NOW(6) - INTERVAL 30 DAY FROM wallets;
+
+INSERT INTO transactions (id, wallet_id, amount, type, status, created_at)
+WITH RECURSIVE moves (k) AS (SELECT 1 UNION ALL SELECT k + 1 FROM moves WHERE k < 4)
+SELECT UUID_TO_BIN(UUID(), 1), w.id,
+       ROUND(((w.id * 31 + m.k * 17) % 5000) / 100, 4),
+       IF(m.k % 2 = 1, 'DEBIT', 'CREDIT'),
+       'SUCCESS', NOW(6) - INTERVAL (30 - m.k) DAY
+FROM wallets w JOIN moves m ON m.k <= w.id % 3 + 2;
+
+-- a few failed attempts that must not count towards the balance
+INSERT INTO transactions (id, wallet_id, amount, type, status, created_at)
+SELECT UUID_TO_BIN(UUID(), 1), id, 99999.0000, 'DEBIT', 'FAILED', NOW(6) - INTERVAL 1 DAY FROM wallets WHERE id % 97 = 0;
+
+UPDATE wallets w
+JOIN (SELECT wallet_id, SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) AS net
+      FROM transactions WHERE status = 'SUCCESS' GROUP BY wallet_id) t ON t.wallet_id = w.id
+SET w.balance = t.net;
+
+UPDATE wallets SET balance = balance + 0.01 WHERE id % 10000 = 0;
+
+ANALYZE TABLE wallets, transactions;
@@ -0,0 +1,41 @@
+-- Migrate transactions.id from CHAR(36) to BINARY(16) on an existing database.
+-- Existing ids keep their value (UUID_TO_BIN without the swap flag, matching UuidBinaryConverter);
+-- new rows get time-ordered ids from the application and append to the end of the clustered index.
+--
+-- Usage: stop the application (or put it in maintenance), then
+--   mysql -u root -p mini_wallet < migrate_transaction_ids.sql
+USE mini_wallet;
+
+ALTER TABLE transactions ADD COLUMN id_bin BINARY(16) NULL;
+
+DELIMITER $$
+
+-- backfill in chunks so the undo log and replication lag stay small; each chunk is a primary key
+-- range after the last one converted, so no chunk rescans rows that are already done
+CREATE PROCEDURE backfill_transaction_id_bin(IN p_chunk INT)
+BEGIN
+  DECLARE v_last CHAR(36) DEFAULT '';
+  DECLARE v_next CHAR(36);
+  WHILE v_last IS NOT NULL DO
+    SELECT MAX(id) INTO v_next
+      FROM (SELECT id FROM transactions WHERE id > v_last ORDER BY id LIMIT p_chunk) AS chunk;
+    IF v_next IS NOT NULL THEN
+      UPDATE transactions SET id_bin = UUID_TO_BIN(id) WHERE id > v_last AND id <= v_next;
+      COMMIT;
+    END IF;
+    SET v_last = v_next;
+  END WHILE;
+END$$
+
+DELIMITER ;
+
+CALL backfill_transaction_id_bin(50000);
+DROP PROCEDURE backfill_transaction_id_bin;
+
+-- swap the key in one table rebuild
+ALTER TABLE transactions
+  DROP PRIMARY KEY,
+  DROP COLUMN id,
+  RENAME COLUMN id_bin TO id,
+  MODIFY COLUMN id BINARY(16) NOT NULL FIRST,
+  ADD PRIMARY KEY (id);
@@ -0,0 +1,137 @@
+package com.example.miniwallet.config;
+
+import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis value codecs from {@link RedisCacheConfig}: default-typed JSON against {@link CompactCacheSerializer},
+ * for the value types the caches hold (a page is 20 transactions). {@code encodedSize} reports the bytes of
+ * one encoded entry in its {@code bytes} counter. The JSON codec cannot read a {@code PageImpl} back (it has
+ * no creator), so pages are decoded with the binary codec only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Encode {
+
+        @Param({"json", "binary"})
+        public String codec;
+
+        @Param({"wallet", "customer", "transaction", "page"})
+        public String type;
+
+        RedisSerializer<Object> serializer;
+        Object value;
+
+        @Setup
+        public void setUp() {
+            serializer = serializer(codec);
+            value = value(type);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Decode {
+
+        @Param({"json:wallet", "json:customer", "json:transaction",
+                "binary:wallet", "binary:customer", "binary:transaction", "binary:page"})
+        public String payload;
+
+        RedisSerializer<Object> serializer;
+        byte[] encoded;
+
+        @Setup
+        public void setUp() {
+            String[] codecAndType = payload.split(":");
+            serializer = serializer(codecAndType[0]);
+            encoded = serializer.serialize(value(codecAndType[1]));
+        }
+    }
+
+    // events are summed over invocations and iterations, so the size is recorded from exactly one
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class EncodedSize {
+
+        public long bytes;
+    }
+
+    @Benchmark
+    public byte[] serialize(Encode state) {
+        return state.serializer.serialize(state.value);
+    }
+
+    @Benchmark
+    public Object deserialize(Decode state) {
+        return state.serializer.deserialize(state.encoded);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1, batchSize = 1)
+    public byte[] encodedSize(Encode state, EncodedSize size) {
+        byte[] bytes = state.serializer.serialize(state.value);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    static RedisSerializer<Object> serializer(String codec) {
+        return "binary".equals(codec)
+                ? new CompactCacheSerializer(RedisCacheConfig.jsonSerializer())
+                : RedisCacheConfig.jsonSerializer();
+    }
+
+    static Object value(String type) {
+        LocalDateTime now = LocalDateTime.now();
+        Customer customer = Customer.builder().customerId(7L).name("Rakesh").email("rakesh@example.com")
+                .createdAt(now).updatedAt(now).build();
+        Wallet wallet = Wallet.builder().walletId(42L).customer(customer).balance(Money.of(new BigDecimal("1250.5000")))
+                .version(17).createdAt(now).updatedAt(now).build();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            transactions.add(transaction(wallet, now.minusMinutes(i)));
+        }
+        return switch (type) {
+            case "wallet" -> wallet;
+            case "customer" -> customer;
+            case "transaction" -> transactions.get(0);
+            case "page" -> new PageImpl<>(transactions, PageRequest.of(0, 20), 135);
+            default -> throw new IllegalArgumentException(type);
+        };
+    }
+
+    private static Transaction transaction(Wallet wallet, LocalDateTime createdAt) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID().toString())
+                .wallet(wallet)
+                .walletId(42L)
+                .amount(Money.of(new BigDecimal("10.0000")))
+                .balanceAfter(Money.of(new BigDecimal("1250.5000")))
+                .type(Transaction.TransactionType.CREDIT)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .transferId(UUID.randomUUID().toString())
+                .relatedWallet(Wallet.builder().walletId(43L).build())
+                .reference("order-12345")
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.miniwallet.controller;
+
+import com.example.miniwallet.dto.TransactionResponseDto;
+import com.example.miniwallet.dto.WalletResponseDto;
+import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Entity to response mapping done on every wallet read and every money-moving response. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DtoMappingBenchmark {
+
+    private WalletController controller;
+    private Wallet wallet;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        // the mappers only read their argument, so the controller needs no collaborators
+        controller = new WalletController(null, null, null, null, null);
+        LocalDateTime now = LocalDateTime.now();
+        Customer customer = Customer.builder().customerId(7L).name("Rakesh").email("rakesh@example.com")
+                .createdAt(now).updatedAt(now).build();
+        wallet = Wallet.builder().walletId(42L).customer(customer).balance(Money.of(new BigDecimal("1250.5000")))
+                .version(17).createdAt(now).updatedAt(now).build();
+        Wallet related = Wallet.builder().walletId(43L).build();
+        transaction = Transaction.builder()
+                .transactionId(UUID.randomUUID().toString())
+                .wallet(wallet)
+                .walletId(42L)
+                .amount(Money.of(new BigDecimal("10.0000")))
+                .balanceAfter(Money.of(new BigDecimal("1250.5000")))
+                .type(Transaction.TransactionType.DEBIT)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .transferId(UUID.randomUUID().toString())
+                .relatedWallet(related)
+                .reference("order-12345")
+                .createdAt(now)
+                .build();
+    }
+
+    @Benchmark
+    public WalletResponseDto walletToDto() {
+        return controller.toDto(wallet);
+    }
+
+    @Benchmark
+    public TransactionResponseDto transactionToDto() {
+        return controller.toTxDto(transaction);
+    }
+}
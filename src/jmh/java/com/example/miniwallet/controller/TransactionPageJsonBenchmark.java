@@ -0,0 +1,69 @@
+package com.example.miniwallet.controller;
+
+import com.example.miniwallet.dto.TransactionResponseDto;
+import com.example.miniwallet.entity.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** JSON rendering of a transaction history page, as returned by /api/transactions/by-wallet. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionPageJsonBenchmark {
+
+    // default page size and the largest page served from the recent-transactions window
+    @Param({"20", "200"})
+    public int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<TransactionResponseDto> page;
+
+    @Setup
+    public void setUp() {
+        // configured like Spring Boot's mapper: ISO dates instead of timestamps
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TransactionResponseDto> content = new ArrayList<>(pageSize);
+        Money balance = Money.of(new BigDecimal("5000.0000"));
+        for (int i = 0; i < pageSize; i++) {
+            Money amount = Money.ofUnits((i + 1) * 10_000L);
+            balance = balance.minus(amount);
+            content.add(TransactionResponseDto.builder()
+                    .id(UUID.randomUUID().toString())
+                    .walletId(42L)
+                    .amount(amount)
+                    .balanceAfter(balance)
+                    .type(i % 2 == 0 ? "DEBIT" : "CREDIT")
+                    .status("SUCCESS")
+                    .transferId(UUID.randomUUID().toString())
+                    .relatedWalletId(43L)
+                    .reference("order-" + i)
+                    .createdAt(now.minusSeconds(i))
+                    .build());
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, pageSize), 10_000);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
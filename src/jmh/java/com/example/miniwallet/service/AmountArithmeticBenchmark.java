@@ -0,0 +1,77 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amount handling on every balance change: {@link WalletService#normalizeAmount} on typical client
+ * inputs, and the add / subtract / compare sequence a deposit and a transfer perform, once on
+ * {@link BigDecimal} balances (as before {@link Money}) and once on {@link Money}. Run with the gc
+ * profiler (the jmh profile's default) to compare gc.alloc.rate.norm between the two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountArithmeticBenchmark {
+
+    // as clients send them: whole units, cents, already scaled, and over-precise (needs rounding)
+    @Param({"100", "99.99", "12.3450", "0.123456789"})
+    public String input;
+
+    private BigDecimal amount;
+    private BigDecimal fromBalance;
+    private BigDecimal toBalance;
+    private BigDecimal transferAmount;
+    private Money fromMoney;
+    private Money toMoney;
+    private Money transferMoney;
+
+    @Setup
+    public void setUp() {
+        amount = new BigDecimal(input);
+        fromBalance = new BigDecimal("1000000.0000");
+        toBalance = new BigDecimal("2500.5000");
+        transferAmount = new BigDecimal("12.3400");
+        fromMoney = Money.of(fromBalance);
+        toMoney = Money.of(toBalance);
+        transferMoney = Money.of(transferAmount);
+    }
+
+    @Benchmark
+    public Money normalizeAmount() {
+        return WalletService.normalizeAmount(amount);
+    }
+
+    @Benchmark
+    public BigDecimal depositArithmetic() {
+        return toBalance.add(transferAmount);
+    }
+
+    @Benchmark
+    public Money depositArithmeticMoney() {
+        return toMoney.plus(transferMoney);
+    }
+
+    @Benchmark
+    public void transferArithmetic(Blackhole bh) {
+        if (fromBalance.compareTo(transferAmount) >= 0) {
+            bh.consume(fromBalance.subtract(transferAmount));
+            bh.consume(toBalance.add(transferAmount));
+        }
+    }
+
+    @Benchmark
+    public void transferArithmeticMoney(Blackhole bh) {
+        if (!fromMoney.isLessThan(transferMoney)) {
+            bh.consume(fromMoney.minus(transferMoney));
+            bh.consume(toMoney.plus(transferMoney));
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.example.miniwallet.loadtest;
+
+import com.example.miniwallet.MiniwalletApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention load test for deposit / withdraw / transfer that needs no staging infrastructure: the
+ * application is booted in-process with the {@code loadtest} profile (H2 in MySQL mode, in-process
+ * caches) and driven over HTTP through {@code WalletController}.
+ *
+ * <pre>
+ *   ./mvnw -Ploadtest test-compile exec:java -Dexec.args="--wallets=1000 --threads=64 --duration=60s --distribution=zipf"
+ * </pre>
+ *
+ * Options: {@code --wallets --threads --duration --warmup --distribution=uniform|zipf --zipf-exponent
+ * --transfer-ratio --withdraw-ratio (the rest are deposits) --initial-balance --max-amount --seed
+ * --hot-wallets --shards}.
+ * {@code --hot-wallets=K} switches the K most picked wallets to hot mode before measuring, once for every
+ * shard count in {@code --shards=N[,N...]} (1 = left as a regular wallet), on a fresh set of wallets each
+ * time, and ends with deposit throughput per shard count. Credit scaling on a single hot wallet:
+ * <pre>
+ *   -Dexec.args="--wallets=1 --hot-wallets=1 --shards=1,2,4,8,16 --transfer-ratio=0 --withdraw-ratio=0"
+ * </pre>
+ * Options with a dot are application properties and are passed through, e.g.
+ * {@code --wallet.balance-update.mode=conditional} to compare the two balance update modes, or
+ * {@code --spring.threads.virtual.enabled=true} for the virtual-thread web tier with its database bulkhead.
+ * Reports throughput, p50/p99/p99.9 latency per operation, deadlocks and lock timeouts (from the 503
+ * reason the API returns), SQL statements per request (from {@code miniwallet.db.statements}) and finally
+ * checks that money was conserved. Fails if it was not. Statements with and without JDBC batching:
+ * <pre>
+ *   -Dexec.args="--spring.jpa.properties.hibernate.jdbc.batch_size=0 --spring.jpa.properties.hibernate.order_inserts=false"
+ * </pre>
+ */
+public final class ContentionLoadTest {
+
+    enum Op { TRANSFER, DEPOSIT, WITHDRAW }
+
+    enum Outcome { OK, INSUFFICIENT_FUNDS, DEADLOCK, LOCK_TIMEOUT, BUSY, CLIENT_TIMEOUT, ERROR }
+
+    record Options(int wallets, int threads, Duration duration, Duration warmup, String distribution,
+                   double zipfExponent, double transferRatio, double withdrawRatio, long initialBalance,
+                   int maxAmount, long seed, int hotWallets, List<Integer> shards) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("expected --name=value, got: " + arg);
+                }
+                String name = arg.substring(2, arg.indexOf('='));
+                if (!name.contains(".")) {
+                    values.put(name, arg.substring(arg.indexOf('=') + 1));
+                }
+            }
+            return new Options(
+                    Integer.parseInt(values.getOrDefault("wallets", "1000")),
+                    Integer.parseInt(values.getOrDefault("threads", "64")),
+                    duration(values.getOrDefault("duration", "60s")),
+                    duration(values.getOrDefault("warmup", "10s")),
+                    values.getOrDefault("distribution", "uniform"),
+                    Double.parseDouble(values.getOrDefault("zipf-exponent", "1.1")),
+                    Double.parseDouble(values.getOrDefault("transfer-ratio", "0.7")),
+                    Double.parseDouble(values.getOrDefault("withdraw-ratio", "0.1")),
+                    Long.parseLong(values.getOrDefault("initial-balance", "1000")),
+                    Integer.parseInt(values.getOrDefault("max-amount", "50")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    Integer.parseInt(values.getOrDefault("hot-wallets", "0")),
+                    Arrays.stream(values.getOrDefault("shards", "8").split(","))
+                            .map(String::trim)
+                            .map(Integer::parseInt)
+                            .toList());
+        }
+
+        private static Duration duration(String value) {
+            return Duration.parse("PT" + value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Options options;
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final MeterRegistry meterRegistry;
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+    // requests whose effect the client cannot know (timed out, or failed in transport), warmup included
+    private final LongAdder uncertain = new LongAdder();
+    private int walletsCreated;
+
+    private ContentionLoadTest(Options options, String baseUrl, MeterRegistry meterRegistry) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        SpringApplication app = new SpringApplication(MiniwalletApplication.class);
+        app.setAdditionalProfiles("loadtest");
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0"));
+        for (String arg : args) {
+            if (arg.substring(0, arg.indexOf('=')).contains(".")) {
+                appArgs.add(arg);
+            }
+        }
+        try (ConfigurableApplicationContext context = app.run(appArgs.toArray(String[]::new))) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            new ContentionLoadTest(options, baseUrl, context.getBean(MeterRegistry.class)).run(context.getBean(JdbcTemplate.class));
+        }
+    }
+
+    private void run(JdbcTemplate jdbcTemplate) throws Exception {
+        System.out.printf("%d wallets, %d threads, %s distribution, %.0f%% transfers / %.0f%% withdrawals%n",
+                options.wallets(), options.threads(),
+                "zipf".equals(options.distribution()) ? "zipf(s=" + options.zipfExponent() + ")" : "uniform",
+                options.transferRatio() * 100, options.withdrawRatio() * 100);
+
+        // hot mode cannot be switched off again, so every shard count gets its own wallets
+        List<Integer> shardCounts = options.hotWallets() > 0 ? options.shards() : List.of(1);
+        Map<Integer, Phase> results = new LinkedHashMap<>();
+        for (int round = 0; round < shardCounts.size(); round++) {
+            int shards = shardCounts.get(round);
+            long[] walletIds = createWallets(round);
+            if (options.hotWallets() > 0) {
+                enableHotMode(walletIds, shards);
+                System.out.printf("%n%d hottest wallet(s) with %d shard(s)%n", Math.min(options.hotWallets(), walletIds.length), shards);
+            }
+
+            if (!options.warmup().isZero()) {
+                runPhase(walletIds, options.warmup());
+            }
+            Map<String, double[]> statementsBefore = statementTotals();
+            Phase measured = runPhase(walletIds, options.duration());
+            measured.print(options.duration());
+            printStatements(statementsBefore, statementTotals());
+            results.put(shards, measured);
+        }
+
+        if (options.hotWallets() > 0) {
+            System.out.printf("%n%-10s %14s %14s %14s%n", "shards", "deposit req/s", "deposit p99 ms", "total req/s");
+            results.forEach((shards, phase) -> System.out.printf("%-10d %14.1f %14.2f %14.1f%n", shards,
+                    phase.rate(Op.DEPOSIT, options.duration()), phase.latencies().get(Op.DEPOSIT).percentile(0.99) / 1e6,
+                    phase.totalRate(options.duration())));
+        }
+
+        awaitQuiescence(jdbcTemplate);
+        boolean conserved = checkConservation(jdbcTemplate);
+        if (!conserved) {
+            throw new IllegalStateException("balance conservation check failed");
+        }
+    }
+
+    private long[] createWallets(int round) throws Exception {
+        long[] ids = new long[options.wallets()];
+        try (ExecutorService pool = Executors.newFixedThreadPool(Math.min(options.threads(), 32))) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                int index = i;
+                tasks.add(pool.submit(() -> {
+                    String name = "load-" + round + "-" + index;
+                    JsonNode customer = post("/api/customers", Map.of("name", name, "email", name + "@example.com"), 201);
+                    JsonNode wallet = post("/api/wallets?customerId=" + customer.get("id").asLong(), null, 201);
+                    ids[index] = wallet.get("id").asLong();
+                    post("/api/wallets/" + ids[index] + "/deposit", Map.of("amount", options.initialBalance()), 201);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        walletsCreated += ids.length;
+        return ids;
+    }
+
+    // the pickers favour low indexes, so the first wallets are the hottest ones
+    private void enableHotMode(long[] walletIds, int shards) throws Exception {
+        if (shards <= 1) return;
+        for (int i = 0; i < Math.min(options.hotWallets(), walletIds.length); i++) {
+            post("/api/wallets/" + walletIds[i] + "/hot-mode?shards=" + shards, null, 200);
+        }
+    }
+
+    private Phase runPhase(long[] walletIds, Duration duration) throws Exception {
+        WalletPicker picker = "zipf".equals(options.distribution())
+                ? new ZipfPicker(walletIds.length, options.zipfExponent())
+                : (random, n) -> random.nextInt(n);
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Worker> workers = new ArrayList<>();
+        // one virtual thread per client, so --threads can go to 10k without 10k platform stacks
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < options.threads(); t++) {
+                Worker worker = new Worker(walletIds, picker, new SplittableRandom(options.seed() + t), deadline);
+                workers.add(worker);
+                tasks.add(pool.submit(worker));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        return Phase.merge(workers);
+    }
+
+    // uri template -> {requests, statements} recorded so far by StatementCountFilter
+    private Map<String, double[]> statementTotals() {
+        Map<String, double[]> totals = new TreeMap<>();
+        for (DistributionSummary summary : meterRegistry.find("miniwallet.db.statements").tag("method", "POST").summaries()) {
+            totals.merge(summary.getId().getTag("uri"), new double[]{summary.count(), summary.totalAmount()},
+                    (a, b) -> new double[]{a[0] + b[0], a[1] + b[1]});
+        }
+        return totals;
+    }
+
+    private static void printStatements(Map<String, double[]> before, Map<String, double[]> after) {
+        System.out.printf("%n%-32s %10s %16s%n", "uri", "requests", "statements/req");
+        after.forEach((uri, total) -> {
+            double[] start = before.getOrDefault(uri, new double[2]);
+            double requests = total[0] - start[0];
+            if (requests > 0) {
+                System.out.printf("%-32s %10.0f %16.2f%n", uri, requests, (total[1] - start[1]) / requests);
+            }
+        });
+    }
+
+    // requests the client gave up on may still be queued or running on the server, and the two sums
+    // below would then see different commits; wait until nothing is running and no rows arrive for a second
+    private void awaitQuiescence(JdbcTemplate jdbcTemplate) throws InterruptedException {
+        long last = -1;
+        while (true) {
+            long active = meterRegistry.find("http.server.requests.active").longTaskTimers().stream()
+                    .mapToLong(LongTaskTimer::activeTasks).sum();
+            long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class);
+            if (active == 0 && rows == last) return;
+            last = rows;
+            Thread.sleep(1000);
+        }
+    }
+
+    private boolean checkConservation(JdbcTemplate jdbcTemplate) {
+        BigDecimal stored = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(balance), 0) FROM wallets", BigDecimal.class)
+                .add(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM wallet_balance_shards", BigDecimal.class));
+        BigDecimal ledger = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END), 0) FROM transactions WHERE status = 'SUCCESS'",
+                BigDecimal.class);
+        Integer negative = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallets WHERE balance < 0", Integer.class);
+        BigDecimal expected = BigDecimal.valueOf(options.initialBalance() * walletsCreated + deposited.sum() - withdrawn.sum());
+
+        boolean ledgerMatches = stored.compareTo(ledger) == 0;
+        // requests that timed out on the client may or may not have committed, so the client-side total is then unknown
+        boolean clientKnown = uncertain.sum() == 0;
+        boolean clientMatches = !clientKnown || stored.compareTo(expected) == 0;
+        System.out.printf("%nconservation: stored=%s ledger=%s client-expected=%s negative-wallets=%d -> %s%n",
+                stored.toPlainString(), ledger.toPlainString(), clientKnown ? expected.toPlainString() : "n/a",
+                negative, ledgerMatches && clientMatches && negative == 0 ? "OK" : "FAILED");
+        return ledgerMatches && clientMatches && negative == 0;
+    }
+
+    private JsonNode post(String path, Object body, int expectedStatus) throws Exception {
+        HttpResponse<String> response = http.send(request(path, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException("POST " + path + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest request(String path, Object body) throws Exception {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private final class Worker implements Runnable {
+
+        private final long[] walletIds;
+        private final WalletPicker picker;
+        private final SplittableRandom random;
+        private final long deadline;
+        private final Map<Op, Samples> latencies = new EnumMap<>(Op.class);
+        private final Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+
+        Worker(long[] walletIds, WalletPicker picker, SplittableRandom random, long deadline) {
+            this.walletIds = walletIds;
+            this.picker = picker;
+            this.random = random;
+            this.deadline = deadline;
+            for (Op op : Op.values()) latencies.put(op, new Samples());
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < deadline) {
+                double roll = random.nextDouble();
+                Op op = roll < options.transferRatio() ? Op.TRANSFER
+                        : roll < options.transferRatio() + options.withdrawRatio() ? Op.WITHDRAW
+                        : Op.DEPOSIT;
+                long amount = 1 + random.nextInt(options.maxAmount());
+                int from = picker.pick(random, walletIds.length);
+                String path;
+                Map<String, Object> body;
+                if (op == Op.TRANSFER) {
+                    int to;
+                    do {
+                        to = picker.pick(random, walletIds.length);
+                    } while (to == from);
+                    path = "/api/wallets/transfer";
+                    body = Map.of("fromWalletId", walletIds[from], "toWalletId", walletIds[to], "amount", amount);
+                } else {
+                    path = "/api/wallets/" + walletIds[from] + (op == Op.DEPOSIT ? "/deposit" : "/withdraw");
+                    body = Map.of("amount", amount);
+                }
+
+                long start = System.nanoTime();
+                Outcome outcome = execute(path, body);
+                latencies.get(op).add(System.nanoTime() - start);
+                outcomes.merge(outcome, 1L, Long::sum);
+                if (outcome == Outcome.OK && op == Op.DEPOSIT) deposited.add(amount);
+                if (outcome == Outcome.OK && op == Op.WITHDRAW) withdrawn.add(amount);
+                if (outcome == Outcome.CLIENT_TIMEOUT || outcome == Outcome.ERROR) uncertain.increment();
+            }
+        }
+
+        private Outcome execute(String path, Map<String, Object> body) {
+            try {
+                HttpResponse<String> response = http.send(request(path, body), HttpResponse.BodyHandlers.ofString());
+                int status = response.statusCode();
+                // deposits and transfers answer 201, withdrawals 200
+                if (status == 200 || status == 201) return Outcome.OK;
+                if (status == 400 && response.body().contains("insufficient")) return Outcome.INSUFFICIENT_FUNDS;
+                if (status == 503 && response.body().contains("\"deadlock\"")) return Outcome.DEADLOCK;
+                if (status == 503 && response.body().contains("\"lock_timeout\"")) return Outcome.LOCK_TIMEOUT;
+                if (status == 503) return Outcome.BUSY;
+                return Outcome.ERROR;
+            } catch (HttpTimeoutException ex) {
+                return Outcome.CLIENT_TIMEOUT;
+            } catch (Exception ex) {
+                return Outcome.ERROR;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface WalletPicker {
+        int pick(SplittableRandom random, int n);
+    }
+
+    /** Rank i (0 = hottest wallet) is drawn with probability proportional to 1 / (i + 1)^s. */
+    static final class ZipfPicker implements WalletPicker {
+
+        private final double[] cdf;
+
+        ZipfPicker(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        @Override
+        public int pick(SplittableRandom random, int n) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+        }
+    }
+
+    /** Latencies in nanoseconds, appended without synchronization (one instance per worker). */
+    static final class Samples {
+
+        // small to start with: there is one instance per operation and worker, and workers can number 10k
+        private long[] values = new long[1 << 6];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) add(other.values[i]);
+        }
+
+        long percentile(double p) {
+            if (size == 0) return 0;
+            return values[(int) Math.min(size - 1, Math.max(0, Math.ceil(p * size) - 1))];
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+    }
+
+    record Phase(Map<Op, Samples> latencies, Map<Outcome, Long> outcomes) {
+
+        static Phase merge(List<Worker> workers) {
+            Map<Op, Samples> latencies = new EnumMap<>(Op.class);
+            Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+            for (Op op : Op.values()) latencies.put(op, new Samples());
+            for (Worker worker : workers) {
+                worker.latencies.forEach((op, samples) -> latencies.get(op).addAll(samples));
+                worker.outcomes.forEach((outcome, count) -> outcomes.merge(outcome, count, Long::sum));
+            }
+            latencies.values().forEach(Samples::sort);
+            return new Phase(latencies, outcomes);
+        }
+
+        long count(Outcome outcome) {
+            return outcomes.getOrDefault(outcome, 0L);
+        }
+
+        double rate(Op op, Duration duration) {
+            return latencies.get(op).size / (duration.toMillis() / 1000.0);
+        }
+
+        double totalRate(Duration duration) {
+            return outcomes.values().stream().mapToLong(Long::longValue).sum() / (duration.toMillis() / 1000.0);
+        }
+
+        void print(Duration duration) {
+            double seconds = duration.toMillis() / 1000.0;
+            long total = outcomes.values().stream().mapToLong(Long::longValue).sum();
+            System.out.printf("%n%-10s %10s %10s %10s %10s %10s%n", "operation", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+            latencies.forEach((op, samples) -> System.out.printf("%-10s %10d %10.1f %10.2f %10.2f %10.2f%n",
+                    op.name().toLowerCase(Locale.ROOT), samples.size, samples.size / seconds,
+                    samples.percentile(0.50) / 1e6, samples.percentile(0.99) / 1e6, samples.percentile(0.999) / 1e6));
+            System.out.printf("%-10s %10d %10.1f%n", "total", total, total / seconds);
+            System.out.printf("%noutcomes: ok=%d insufficient_funds=%d deadlocks=%d lock_timeouts=%d busy=%d client_timeouts=%d errors=%d%n",
+                    count(Outcome.OK), count(Outcome.INSUFFICIENT_FUNDS), count(Outcome.DEADLOCK), count(Outcome.LOCK_TIMEOUT),
+                    count(Outcome.BUSY), count(Outcome.CLIENT_TIMEOUT), count(Outcome.ERROR));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.miniwallet.loadtest;
+
+import com.example.miniwallet.MiniwalletApplication;
+import com.example.miniwallet.entity.ReconciliationRun;
+import com.example.miniwallet.service.ReconciliationService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reconciliation throughput on a generated dataset without a MySQL server: the application is booted
+ * in-process with the {@code loadtest} profile (H2 in MySQL mode) and seeded with the same shape as
+ * {@code loadtest/reconciliation-dataset.sql}, then a full run is timed, followed by an incremental run
+ * after touching every 1000th wallet.
+ *
+ * <pre>
+ *   ./mvnw -Ploadtest test-compile exec:java -Dloadtest.main=com.example.miniwallet.loadtest.ReconciliationLoadTest \
+ *       -Dexec.args="--wallets=1000000 --wallet.reconciliation.db-concurrency=4"
+ * </pre>
+ *
+ * Options: {@code --wallets --chunk (wallets seeded per statement)}; options with a dot are application
+ * properties and are passed through. A million wallets (~4M transaction rows) do not fit an in-memory H2
+ * next to the application in a few GB of heap; pass a file URL for those, e.g.
+ * {@code --spring.datasource.url=jdbc:h2:file:/tmp/recdb/miniwallet;MODE=MySQL;DATABASE_TO_LOWER=TRUE}.
+ * Fails if the report does not list exactly the skewed wallets (every 10000th).
+ */
+public final class ReconciliationLoadTest {
+
+    private ReconciliationLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long wallets = 1_000_000;
+        long chunk = 100_000;
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0"));
+        for (String arg : args) {
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.contains(".")) {
+                appArgs.add(arg);
+            } else if (name.equals("wallets")) {
+                wallets = Long.parseLong(value);
+            } else if (name.equals("chunk")) {
+                chunk = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+
+        SpringApplication app = new SpringApplication(MiniwalletApplication.class);
+        app.setAdditionalProfiles("loadtest");
+        try (ConfigurableApplicationContext context = app.run(appArgs.toArray(String[]::new))) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            ReconciliationService reconciliation = context.getBean(ReconciliationService.class);
+
+            long seedStart = System.nanoTime();
+            for (long lo = 1; lo <= wallets; lo += chunk) {
+                seed(jdbcTemplate, lo, Math.min(lo + chunk - 1, wallets));
+            }
+            long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class);
+            System.out.printf("seeded %d wallets, %d transaction rows in %.1fs%n",
+                    wallets, rows, (System.nanoTime() - seedStart) / 1e9);
+
+            ReconciliationRun full = runToCompletion(reconciliation, true);
+            long expected = wallets / 10_000;
+            if (full.getMismatches() != expected) {
+                throw new IllegalStateException("expected " + expected + " mismatches, got " + full.getMismatches());
+            }
+
+            jdbcTemplate.update("UPDATE wallets SET updated_at = CURRENT_TIMESTAMP WHERE MOD(id, 1000) = 0");
+            runToCompletion(reconciliation, false);
+        }
+    }
+
+    // same distribution as reconciliation-dataset.sql: an opening deposit, two to four alternating
+    // movements, a failed attempt on every 97th wallet, and every 10000th balance skewed by 0.01
+    private static void seed(JdbcTemplate jdbcTemplate, long lo, long hi) {
+        jdbcTemplate.update("INSERT INTO customers (id, name, email, created_at, updated_at) " +
+                "SELECT n, CONCAT('load-', n), CONCAT('load-', n, '@example.com'), NOW(), NOW() FROM SYSTEM_RANGE(?, ?) r (n)", lo, hi);
+        // a day old, so the incremental run only sees the wallets touched after the full one
+        jdbcTemplate.update("INSERT INTO wallets (id, customer_id, balance, version, created_at, updated_at) " +
+                "SELECT n, n, 0, 0, DATEADD('DAY', -1, NOW()), DATEADD('DAY', -1, NOW()) FROM SYSTEM_RANGE(?, ?) r (n)", lo, hi);
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) " +
+                "SELECT CAST(RANDOM_UUID() AS BINARY(16)), n, 1000.0000, 'CREDIT', 'SUCCESS', DATEADD('DAY', -30, NOW()) " +
+                "FROM SYSTEM_RANGE(?, ?) r (n)", lo, hi);
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) " +
+                "SELECT CAST(RANDOM_UUID() AS BINARY(16)), n, ROUND(MOD(n * 31 + k * 17, 5000) / 100.0, 4), " +
+                "CASE WHEN MOD(k, 2) = 1 THEN 'DEBIT' ELSE 'CREDIT' END, 'SUCCESS', DATEADD('DAY', k - 30, NOW()) " +
+                "FROM SYSTEM_RANGE(?, ?) r (n) JOIN SYSTEM_RANGE(1, 4) m (k) ON k <= MOD(n, 3) + 2", lo, hi);
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) " +
+                "SELECT CAST(RANDOM_UUID() AS BINARY(16)), n, 99999.0000, 'DEBIT', 'FAILED', DATEADD('DAY', -1, NOW()) " +
+                "FROM SYSTEM_RANGE(?, ?) r (n) WHERE MOD(n, 97) = 0", lo, hi);
+        jdbcTemplate.update("UPDATE wallets w SET balance = (SELECT SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) " +
+                "FROM transactions t WHERE t.wallet_id = w.id AND t.status = 'SUCCESS') WHERE w.id BETWEEN ? AND ?", lo, hi);
+        jdbcTemplate.update("UPDATE wallets SET balance = balance + 0.01 WHERE MOD(id, 10000) = 0 AND id BETWEEN ? AND ?", lo, hi);
+    }
+
+    private static ReconciliationRun runToCompletion(ReconciliationService reconciliation, boolean full) throws InterruptedException {
+        long runId = reconciliation.start(full).getRunId();
+        ReconciliationRun run = reconciliation.getRun(runId);
+        while (run.getStatus() == ReconciliationRun.Status.RUNNING) {
+            Thread.sleep(200);
+            run = reconciliation.getRun(runId);
+        }
+        if (run.getStatus() != ReconciliationRun.Status.COMPLETED) {
+            throw new IllegalStateException("reconciliation run " + runId + " ended " + run.getStatus());
+        }
+        double seconds = Math.max(Duration.between(run.getStartedAt(), run.getFinishedAt()).toMillis() / 1000.0, 0.001);
+        System.out.printf("%s run: %d wallets checked, %d mismatches in %.1fs -> %.0f wallets/s%n",
+                full ? "full" : "incremental", run.getWalletsChecked(), run.getMismatches(), seconds,
+                run.getWalletsChecked() / seconds);
+        return run;
+    }
+}
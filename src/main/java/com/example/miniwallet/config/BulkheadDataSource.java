@@ -0,0 +1,114 @@
+package com.example.miniwallet.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the number of connections in use with a fair semaphore sized to the pool. With virtual
+ * threads thousands of requests can reach the database layer at once; they now park cheaply on
+ * the semaphore, in arrival order, instead of all contending inside the connection pool.
+ * A permit is held from getConnection() until the connection is closed (returned to the pool).
+ *
+ * Every statement prepared on a returned connection is also counted for {@link StatementCounter},
+ * whether it comes from Hibernate or from JdbcTemplate. With {@code maxConcurrent} 0 there is no
+ * limit and connections are only wrapped for that count.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final Duration acquireTimeout;
+
+    public BulkheadDataSource(DataSource target, int maxConcurrent, Duration acquireTimeout) {
+        super(target);
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return guarded(super.getConnection());
+        } catch (SQLException | RuntimeException ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return guarded(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    public boolean isLimited() {
+        return permits != null;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getAvailablePermits() {
+        return permits != null ? permits.availablePermits() : 0;
+    }
+
+    public int getQueueLength() {
+        return permits != null ? permits.getQueueLength() : 0;
+    }
+
+    private void acquire() throws SQLException {
+        if (permits == null) return;
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("database bulkhead full: no connection within " + acquireTimeout);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted while waiting for a database connection", ex);
+        }
+    }
+
+    private void release() {
+        if (permits != null) permits.release();
+    }
+
+    // releases the permit exactly once, on the first close(); a JDBC batch is one prepared statement, so it counts once
+    private Connection guarded(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement", "prepareCall", "createStatement" -> StatementCounter.increment();
+                        default -> {
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.miniwallet.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Fans near-cache invalidations out to every application node over Redis pub/sub.
+ * Messages from this node are ignored on receipt since the local near cache was already updated.
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "miniwallet:cache-invalidation";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private volatile Consumer<Invalidation> handler = inv -> { };
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                RedisMessageListenerContainer container) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        container.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public void onInvalidation(Consumer<Invalidation> handler) {
+        this.handler = handler;
+    }
+
+    /** {@code key == null} clears the whole cache. */
+    public void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(new Invalidation(nodeId, cacheName, key)));
+        } catch (Exception ex) {
+            // other nodes fall back to their near-cache TTL
+            log.warn("cache invalidation publish failed for {}:{}: {}", cacheName, key, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Invalidation inv = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), Invalidation.class);
+            if (!nodeId.equals(inv.origin())) {
+                handler.accept(inv);
+            }
+        } catch (Exception ex) {
+            log.warn("ignoring malformed cache invalidation message: {}", ex.getMessage());
+        }
+    }
+
+    public record Invalidation(String origin, String cacheName, String key) {
+    }
+}
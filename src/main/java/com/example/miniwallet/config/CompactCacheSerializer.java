@@ -0,0 +1,292 @@
+package com.example.miniwallet.config;
+
+import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written binary codec for the cached entity types (Wallet, Customer, Transaction and pages of
+ * transactions). Every value starts with a magic byte, a type tag and a schema version so the layout
+ * can evolve; values of any other type are delegated to the JSON serializer under their own tag.
+ *
+ * Compared with default-typed JSON there are no class names, field names or decimal strings in the
+ * payload, and nested wallets of a transaction are reduced to their id.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xB1;
+
+    private static final byte TAG_JSON = 0;
+    private static final byte TAG_WALLET = 1;
+    private static final byte TAG_CUSTOMER = 2;
+    private static final byte TAG_TRANSACTION = 3;
+    private static final byte TAG_TRANSACTION_PAGE = 4;
+
+    private static final byte VERSION_1 = 1;
+    // transactions gained balanceAfter
+    private static final byte VERSION_2 = 2;
+
+    private final RedisSerializer<Object> fallback;
+
+    public CompactCacheSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) return null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(MAGIC);
+            if (value instanceof Wallet w) {
+                header(out, TAG_WALLET);
+                writeWallet(out, w);
+            } else if (value instanceof Customer c) {
+                header(out, TAG_CUSTOMER);
+                writeCustomer(out, c);
+            } else if (value instanceof Transaction t) {
+                header(out, TAG_TRANSACTION);
+                writeTransaction(out, t);
+            } else if (value instanceof Page<?> page && page.getContent().stream().allMatch(Transaction.class::isInstance)) {
+                header(out, TAG_TRANSACTION_PAGE);
+                writeTransactionPage(out, page);
+            } else {
+                header(out, TAG_JSON);
+                byte[] json = fallback.serialize(value);
+                out.writeInt(json.length);
+                out.write(json);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new SerializationException("cannot encode cache value of type " + value.getClass().getName(), ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) return null;
+        if (bytes[0] != MAGIC) {
+            // entries written by the JSON serializer before this codec was enabled
+            return fallback.deserialize(bytes);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            byte tag = in.readByte();
+            byte version = in.readByte();
+            if (version != VERSION_1 && version != VERSION_2) {
+                throw new SerializationException("unsupported cache schema version " + version + " for tag " + tag);
+            }
+            return switch (tag) {
+                case TAG_WALLET -> readWallet(in);
+                case TAG_CUSTOMER -> readCustomer(in);
+                case TAG_TRANSACTION -> readTransaction(in, version);
+                case TAG_TRANSACTION_PAGE -> readTransactionPage(in, version);
+                case TAG_JSON -> {
+                    byte[] json = new byte[in.readInt()];
+                    in.readFully(json);
+                    yield fallback.deserialize(json);
+                }
+                default -> throw new SerializationException("unknown cache value tag " + tag);
+            };
+        } catch (IOException ex) {
+            throw new SerializationException("cannot decode cache value", ex);
+        }
+    }
+
+    private static void header(DataOutputStream out, byte tag) throws IOException {
+        out.writeByte(tag);
+        out.writeByte(VERSION_2);
+    }
+
+    // --- entities ---
+
+    private static void writeCustomer(DataOutputStream out, Customer c) throws IOException {
+        writeLong(out, c.getCustomerId());
+        writeString(out, c.getName());
+        writeString(out, c.getEmail());
+        writeTime(out, c.getCreatedAt());
+        writeTime(out, c.getUpdatedAt());
+    }
+
+    private static Customer readCustomer(DataInputStream in) throws IOException {
+        return Customer.builder()
+                .customerId(readLong(in))
+                .name(readString(in))
+                .email(readString(in))
+                .createdAt(readTime(in))
+                .updatedAt(readTime(in))
+                .build();
+    }
+
+    // Money goes over the wire in the existing decimal encoding, so entries stay readable across the change
+    private static BigDecimal decimal(Money money) {
+        return money != null ? money.toBigDecimal() : null;
+    }
+
+    private static void writeWallet(DataOutputStream out, Wallet w) throws IOException {
+        writeLong(out, w.getWalletId());
+        out.writeBoolean(w.getCustomer() != null);
+        if (w.getCustomer() != null) writeCustomer(out, w.getCustomer());
+        writeDecimal(out, decimal(w.getBalance()));
+        writeInt(out, w.getVersion());
+        writeInt(out, w.getShardCount());
+        writeTime(out, w.getCreatedAt());
+        writeTime(out, w.getUpdatedAt());
+    }
+
+    private static Wallet readWallet(DataInputStream in) throws IOException {
+        return Wallet.builder()
+                .walletId(readLong(in))
+                .customer(in.readBoolean() ? readCustomer(in) : null)
+                .balance(Money.ofNullable(readDecimal(in)))
+                .version(readInt(in))
+                .shardCount(readInt(in))
+                .createdAt(readTime(in))
+                .updatedAt(readTime(in))
+                .build();
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction t) throws IOException {
+        writeString(out, t.getTransactionId());
+        writeLong(out, t.getWallet() != null ? t.getWallet().getWalletId() : t.getWalletId());
+        writeDecimal(out, decimal(t.getAmount()));
+        writeString(out, t.getType() != null ? t.getType().name() : null);
+        writeString(out, t.getStatus() != null ? t.getStatus().name() : null);
+        writeString(out, t.getTransferId());
+        writeLong(out, t.getRelatedWallet() != null ? t.getRelatedWallet().getWalletId() : null);
+        writeString(out, t.getReference());
+        writeTime(out, t.getCreatedAt());
+        writeDecimal(out, decimal(t.getBalanceAfter()));
+    }
+
+    private static Transaction readTransaction(DataInputStream in, byte version) throws IOException {
+        String id = readString(in);
+        Long walletId = readLong(in);
+        BigDecimal amount = readDecimal(in);
+        String type = readString(in);
+        String status = readString(in);
+        String transferId = readString(in);
+        Long relatedWalletId = readLong(in);
+        String reference = readString(in);
+        LocalDateTime createdAt = readTime(in);
+        BigDecimal balanceAfter = version >= VERSION_2 ? readDecimal(in) : null;
+        return Transaction.builder()
+                .transactionId(id)
+                .walletId(walletId)
+                // only the id of the owning/related wallet is cached; readers map nothing else from them
+                .wallet(walletId != null ? Wallet.builder().walletId(walletId).build() : null)
+                .amount(Money.ofNullable(amount))
+                .type(type != null ? Transaction.TransactionType.valueOf(type) : null)
+                .status(status != null ? Transaction.TransactionStatus.valueOf(status) : null)
+                .transferId(transferId)
+                .relatedWallet(relatedWalletId != null ? Wallet.builder().walletId(relatedWalletId).build() : null)
+                .reference(reference)
+                .createdAt(createdAt)
+                .balanceAfter(Money.ofNullable(balanceAfter))
+                .build();
+    }
+
+    private static void writeTransactionPage(DataOutputStream out, Page<?> page) throws IOException {
+        Pageable pageable = page.getPageable();
+        out.writeInt(pageable.isPaged() ? pageable.getPageNumber() : 0);
+        out.writeInt(pageable.isPaged() ? pageable.getPageSize() : page.getContent().size());
+        out.writeLong(page.getTotalElements());
+        out.writeInt(page.getContent().size());
+        for (Object t : page.getContent()) {
+            writeTransaction(out, (Transaction) t);
+        }
+    }
+
+    private static Page<Transaction> readTransactionPage(DataInputStream in, byte version) throws IOException {
+        int number = in.readInt();
+        int size = in.readInt();
+        long total = in.readLong();
+        int count = in.readInt();
+        List<Transaction> content = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            content.add(readTransaction(in, version));
+        }
+        return new PageImpl<>(content, PageRequest.of(number, Math.max(size, 1)), total);
+    }
+
+    // --- primitives (every reference type is prefixed with a presence flag) ---
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) out.writeLong(v);
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInt(DataOutputStream out, Integer v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) out.writeInt(v);
+    }
+
+    private static Integer readInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v == null) return;
+        byte[] unscaled = v.unscaledValue().toByteArray();
+        out.writeByte(v.scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        int scale = in.readByte();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v == null) return;
+        out.writeLong(v.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(v.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
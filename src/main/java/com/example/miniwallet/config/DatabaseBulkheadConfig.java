@@ -0,0 +1,52 @@
+package com.example.miniwallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Wraps the application DataSource in a {@link BulkheadDataSource}, which counts the statements of
+ * every request. The connection limit, sized to the Hikari pool, is enabled together with virtual
+ * threads by default (see application.properties).
+ */
+@Configuration
+public class DatabaseBulkheadConfig {
+
+    @Bean
+    public static BeanPostProcessor databaseBulkheadPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                boolean limited = environment.getProperty("wallet.db.bulkhead.enabled", Boolean.class, false);
+                Duration timeout = environment.getProperty("wallet.db.bulkhead.acquire-timeout", Duration.class,
+                        Duration.ofMillis(hikari.getConnectionTimeout()));
+                return new BulkheadDataSource(hikari, limited ? hikari.getMaximumPoolSize() : 0, timeout);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder databaseBulkheadMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof BulkheadDataSource bulkhead) || !bulkhead.isLimited()) return;
+            Gauge.builder("miniwallet.db.bulkhead.available", bulkhead, BulkheadDataSource::getAvailablePermits)
+                    .description("Free connection permits")
+                    .register(registry);
+            Gauge.builder("miniwallet.db.bulkhead.queued", bulkhead, BulkheadDataSource::getQueueLength)
+                    .description("Callers waiting for a connection permit")
+                    .register(registry);
+            Gauge.builder("miniwallet.db.bulkhead.max", bulkhead, BulkheadDataSource::getMaxConcurrent)
+                    .register(registry);
+        };
+    }
+}
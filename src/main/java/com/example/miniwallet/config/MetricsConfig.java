@@ -0,0 +1,125 @@
+package com.example.miniwallet.config;
+
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.example.miniwallet.exception.InsufficientFundsException;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.WalletBalanceShardRepository;
+import com.example.miniwallet.repository.WalletRepository;
+import com.example.miniwallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Hot-path timers: time spent acquiring wallet row locks, end-to-end latency of the balance-changing
+ * {@link WalletService} operations by outcome, and JDBC statements per HTTP request. All tags come
+ * from fixed sets (method names, outcomes, URI templates), never from wallet ids.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final Set<String> WALLET_OPERATIONS = Set.of(
+            "deposit", "withdraw", "transfer", "transferBatch", "initiateTransfer", "settleInitiatedTransfers");
+
+    @Bean
+    public static BeanPostProcessor hotPathMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof WalletRepository || bean instanceof WalletBalanceShardRepository) {
+                    return withInterceptor(bean, lockWaitInterceptor(meterRegistry));
+                }
+                if (bean instanceof WalletService) {
+                    return withInterceptor(bean, operationInterceptor(meterRegistry));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(MeterRegistry meterRegistry) {
+        return new FilterRegistrationBean<>(new StatementCountFilter(meterRegistry));
+    }
+
+    // the SELECT ... FOR UPDATE returns once the row lock is granted, so its duration is the lock wait
+    // (for the guarded conditional UPDATEs it is the lock wait plus the single-row write)
+    private static MethodInterceptor lockWaitInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return invocation -> {
+            String method = invocation.getMethod().getName();
+            if (!method.endsWith("WithLock") && !method.startsWith("conditional")) {
+                return invocation.proceed();
+            }
+            MeterRegistry registry = meterRegistry.getObject();
+            Timer.Sample sample = Timer.start(registry);
+            try {
+                return invocation.proceed();
+            } finally {
+                sample.stop(Timer.builder("miniwallet.wallet.lock.wait")
+                        .description("Time to acquire wallet row or shard locks")
+                        .tag("query", method)
+                        .publishPercentileHistogram()
+                        .maximumExpectedValue(Duration.ofSeconds(60))
+                        .register(registry));
+            }
+        };
+    }
+
+    // added in front of the transaction interceptor, so the time includes the commit
+    private static MethodInterceptor operationInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return invocation -> {
+            String operation = invocation.getMethod().getName();
+            if (!WALLET_OPERATIONS.contains(operation)) {
+                return invocation.proceed();
+            }
+            MeterRegistry registry = meterRegistry.getObject();
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "success";
+            try {
+                return invocation.proceed();
+            } catch (Throwable ex) {
+                outcome = outcome(ex);
+                throw ex;
+            } finally {
+                sample.stop(Timer.builder("miniwallet.wallet.operation")
+                        .description("End-to-end latency of balance-changing wallet operations")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .maximumExpectedValue(Duration.ofSeconds(60))
+                        .register(registry));
+            }
+        };
+    }
+
+    private static String outcome(Throwable ex) {
+        if (ex instanceof InsufficientFundsException) return "insufficient_funds";
+        if (ex instanceof DuplicateResourceException) return "duplicate";
+        if (ex instanceof BadRequestException) return "rejected";
+        if (ex instanceof ResourceNotFoundException) return "not_found";
+        if (ex instanceof PessimisticLockingFailureException) return "lock_conflict";
+        return "error";
+    }
+
+    private static Object withInterceptor(Object bean, MethodInterceptor interceptor) {
+        if (bean instanceof Advised advised && !advised.isFrozen()) {
+            advised.addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.addAdvice(interceptor);
+        return factory.getProxy();
+    }
+}
@@ -5,19 +5,43 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.cache.interceptor.LoggingCacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.*;
 import java.time.Duration;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
-public class RedisCacheConfig {
+public class RedisCacheConfig implements CachingConfigurer {
 
     @Bean
-    public RedisCacheConfiguration cacheConfiguration() {
+    public RedisCacheConfiguration cacheConfiguration(@Value("${wallet.cache.ttl:10m}") Duration ttl) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(ttl)
+                .disableCachingNullValues()
+                .serializeValuesWith(
+                        RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer())
+                );
+    }
+
+    // also used by CompactCacheSerializerTest and the cache serializer benchmarks
+    static GenericJackson2JsonRedisSerializer jsonSerializer() {
         // Create ObjectMapper with LocalDateTime support
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -31,13 +55,96 @@ public class RedisCacheConfig {
         );
 
         // Use the customized serializer
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
 
-        return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10))
-                .disableCachingNullValues()
-                .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(serializer)
-                );
+    // a cache entry that cannot be read (e.g. written by a newer schema) is logged and treated as a miss
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new LoggingCacheErrorHandler();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.cache.store", havingValue = "redis", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.cache.store", havingValue = "redis", matchIfMissing = true)
+    public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                                     RedisMessageListenerContainer container) {
+        return new CacheInvalidationBus(redisTemplate, objectMapper, container);
+    }
+
+    // Redis stays the shared tier; an in-heap near cache in front of it serves repeat reads without a round trip
+    @Bean
+    @ConditionalOnProperty(name = "wallet.cache.store", havingValue = "redis", matchIfMissing = true)
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     RedisCacheConfiguration cacheConfiguration,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${wallet.cache.near.enabled:true}") boolean nearEnabled,
+                                     @Value("${wallet.cache.near.max-size:10000}") long nearMaxSize,
+                                     @Value("${wallet.cache.near.ttl.default:30s}") Duration defaultNearTtl,
+                                     @Value("${wallet.cache.near.ttl.wallets:30s}") Duration walletsNearTtl,
+                                     @Value("${wallet.cache.near.ttl.customers:10m}") Duration customersNearTtl,
+                                     @Value("${wallet.cache.near.ttl.transactions:30s}") Duration transactionsNearTtl,
+                                     @Value("${wallet.cache.codec.wallets:binary}") String walletsCodec,
+                                     @Value("${wallet.cache.codec.customers:binary}") String customersCodec,
+                                     @Value("${wallet.cache.codec.transactions:binary}") String transactionsCodec) {
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(cacheConfiguration)
+                .withCacheConfiguration("wallets", withCodec(cacheConfiguration, walletsCodec))
+                .withCacheConfiguration("customers", withCodec(cacheConfiguration, customersCodec))
+                .withCacheConfiguration("transactions", withCodec(cacheConfiguration, transactionsCodec))
+                // hit/miss statistics for the Redis-only setup (bound as cache.gets by the actuator)
+                .enableStatistics()
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        if (!nearEnabled) {
+            return redisCacheManager;
+        }
+        return new TwoLevelCacheManager(redisCacheManager, cacheInvalidationBus, nearMaxSize, defaultNearTtl, Map.of(
+                "wallets", walletsNearTtl,
+                "customers", customersNearTtl,
+                "transactions", transactionsNearTtl
+        ), meterRegistry);
+    }
+
+    // wallet.cache.store=local: single-node, in-process caches only (no Redis needed, e.g. the load-test harness)
+    @Bean
+    @ConditionalOnProperty(name = "wallet.cache.store", havingValue = "local")
+    public CacheManager localCacheManager(@Value("${wallet.cache.near.max-size:10000}") long maxSize,
+                                          @Value("${wallet.cache.ttl:10m}") Duration ttl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("wallets", "customers", "transactions");
+        // recordStats: the actuator binds hit/miss/eviction counts of these caches as cache.gets / cache.evictions
+        cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats());
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+
+    @Bean
+    public VersionedCacheWriter versionedCacheWriter(CacheManager cacheManager, RedisConnectionFactory connectionFactory) {
+        return new VersionedCacheWriter(cacheManager, connectionFactory);
+    }
+
+    @Bean
+    public SingleFlightCacheLoader singleFlightCacheLoader(CacheManager cacheManager, MeterRegistry meterRegistry,
+                                                           @Value("${wallet.cache.ttl:10m}") Duration ttl,
+                                                           @Value("${wallet.cache.early-refresh.enabled:true}") boolean earlyRefresh,
+                                                           @Value("${wallet.cache.early-refresh.beta:1.0}") double beta) {
+        return new SingleFlightCacheLoader(cacheManager, meterRegistry, ttl, earlyRefresh, beta);
+    }
+
+    // "binary" selects the compact codec for a cache, anything else keeps default-typed JSON
+    private static RedisCacheConfiguration withCodec(RedisCacheConfiguration base, String codec) {
+        if (!"binary".equalsIgnoreCase(codec)) {
+            return base;
+        }
+        return base.serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                new CompactCacheSerializer(jsonSerializer())));
     }
 }
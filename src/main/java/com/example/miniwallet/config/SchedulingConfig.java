@@ -0,0 +1,12 @@
+package com.example.miniwallet.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// background jobs (daily balance snapshots); can be switched off on nodes that should only serve requests
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "wallet.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,169 @@
+package com.example.miniwallet.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces cache-miss loads: per node only one caller runs the loader for a key, concurrent callers
+ * for the same key wait on its result instead of all hitting the database when a hot entry expires.
+ *
+ * Keys this node loaded are also refreshed in the background a little before their Redis TTL runs
+ * out, with the probabilistic "XFetch" rule: the closer the expiry and the slower the last load, the
+ * more likely a hit triggers the refresh.
+ */
+@Slf4j
+public class SingleFlightCacheLoader implements AutoCloseable {
+
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final boolean earlyRefresh;
+    private final double beta;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final com.github.benmanes.caffeine.cache.Cache<String, LoadStats> lastLoads;
+    private final ThreadPoolExecutor refresher;
+
+    public SingleFlightCacheLoader(CacheManager cacheManager, MeterRegistry meterRegistry, Duration ttl,
+                                   boolean earlyRefresh, double beta) {
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.earlyRefresh = earlyRefresh;
+        this.beta = beta;
+        this.lastLoads = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(ttl)
+                .build();
+        // refreshes are best effort: a full queue simply drops them and the entry expires normally
+        this.refresher = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread t = new Thread(r, "cache-refresh");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /** Cache lookup, falling back to a coalesced {@code loader} whose result is put into the cache. */
+    public <T> T get(String cacheName, String key, Class<T> type, Supplier<T> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        Supplier<T> loadAndStore = () -> {
+            T value = loader.get();
+            store(cache, key, value);
+            return value;
+        };
+        T cached = lookup(cache, key, type);
+        if (cached != null) {
+            maybeRefresh(cacheName, key, loadAndStore);
+            return cached;
+        }
+        return load(cacheName, key, loadAndStore);
+    }
+
+    /**
+     * Run {@code loader} unless a load for the same key is already running on this node, in which
+     * case wait for that one. Exceptions thrown by the loader reach every waiting caller.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String cacheName, String key, Supplier<T> loader) {
+        String flightKey = cacheName + "::" + key;
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, mine);
+        if (running != null) {
+            counter(cacheName, "coalesced").increment();
+            try {
+                return (T) running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) throw cause;
+                throw ex;
+            }
+        }
+
+        counter(cacheName, "loaded").increment();
+        long start = System.nanoTime();
+        try {
+            T value = loader.get();
+            lastLoads.put(flightKey, new LoadStats(System.currentTimeMillis(), System.nanoTime() - start));
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    /** Called on a cache hit; may schedule a background reload of the entry shortly before it expires. */
+    public void maybeRefresh(String cacheName, String key, Supplier<?> loader) {
+        if (!earlyRefresh) return;
+        String flightKey = cacheName + "::" + key;
+        LoadStats stats = lastLoads.getIfPresent(flightKey);
+        if (stats == null || inFlight.containsKey(flightKey)) return;
+
+        // XFetch: refresh once now - delta * beta * ln(rand) reaches the expiry
+        double headStartMillis = -(stats.durationNanos() / 1_000_000.0) * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.currentTimeMillis() + headStartMillis < stats.loadedAt() + ttl.toMillis()) return;
+
+        // one refresh per load; the reload records fresh stats
+        lastLoads.invalidate(flightKey);
+        counter(cacheName, "early_refresh").increment();
+        refresher.execute(() -> {
+            try {
+                load(cacheName, key, loader);
+            } catch (RuntimeException ex) {
+                log.debug("early refresh of {} failed: {}", flightKey, ex.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private <T> T lookup(Cache cache, String key, Class<T> type) {
+        if (cache == null) return null;
+        try {
+            return cache.get(key, type);
+        } catch (RuntimeException ex) {
+            log.warn("cache read failed for {}::{}: {}", cache.getName(), key, ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void store(Cache cache, String key, Object value) {
+        if (cache == null || value == null) return;
+        try {
+            cache.put(key, value);
+        } catch (RuntimeException ex) {
+            log.warn("cache write failed for {}::{}: {}", cache.getName(), key, ex.getMessage());
+        }
+    }
+
+    private Counter counter(String cacheName, String outcome) {
+        return Counter.builder("miniwallet.cache.loads")
+                .description("Cache-miss loads by outcome: loaded (ran the loader), coalesced (waited on another caller), early_refresh")
+                .tag("cache", cacheName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record LoadStats(long loadedAt, long durationNanos) {
+    }
+}
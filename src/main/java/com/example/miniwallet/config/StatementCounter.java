@@ -0,0 +1,29 @@
+package com.example.miniwallet.config;
+
+/**
+ * Counts the SQL statements prepared on the current thread, for the per-request statement metric.
+ * Incremented by {@link BulkheadDataSource} connections, so Hibernate and JdbcTemplate statements
+ * are both included; a JDBC batch counts once.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) count[0]++;
+    }
+
+    static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count[0] : 0;
+    }
+}
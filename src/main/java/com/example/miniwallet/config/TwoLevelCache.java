@@ -0,0 +1,170 @@
+package com.example.miniwallet.config;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A size-bounded, TTL-aware in-heap near cache in front of a Redis cache. Reads try the near
+ * cache first; writes and evictions go to both tiers and are broadcast so other nodes drop their
+ * near copy.
+ *
+ * Lookups are counted under {@code miniwallet.cache.gets} (near_hit, remote_hit, miss) and removals
+ * under {@code miniwallet.cache.evictions} by cause.
+ */
+public class TwoLevelCache implements Cache {
+
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> near;
+    private final CacheInvalidationBus bus;
+    private final MeterRegistry meterRegistry;
+    private final Counter nearHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+
+    public TwoLevelCache(Cache remote, com.github.benmanes.caffeine.cache.Cache<String, Object> near,
+                         CacheInvalidationBus bus, MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.near = near;
+        this.bus = bus;
+        this.meterRegistry = meterRegistry;
+        this.nearHits = gets("near_hit");
+        this.remoteHits = gets("remote_hit");
+        this.misses = gets("miss");
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = near.getIfPresent(nearKey(key));
+        if (value != null) {
+            nearHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            remoteHits.increment();
+            near.put(nearKey(key), wrapper.get());
+        } else {
+            misses.increment();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = near.getIfPresent(nearKey(key));
+        if (value != null) {
+            nearHits.increment();
+            return (T) value;
+        }
+        boolean[] ranLoader = new boolean[1];
+        T loaded = remote.get(key, () -> {
+            ranLoader[0] = true;
+            return valueLoader.call();
+        });
+        (ranLoader[0] ? misses : remoteHits).increment();
+        if (loaded != null) {
+            near.put(nearKey(key), loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            near.put(nearKey(key), value);
+        }
+        bus.publish(getName(), nearKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        evictions("explicit").increment();
+        remote.evict(key);
+        near.invalidate(nearKey(key));
+        bus.publish(getName(), nearKey(key));
+    }
+
+    @Override
+    public void clear() {
+        evictions("clear").increment();
+        remote.clear();
+        near.invalidateAll();
+        bus.publish(getName(), null);
+    }
+
+    Cache getRemote() {
+        return remote;
+    }
+
+    /** Refresh the near copy after Redis was written directly, and drop it on the other nodes. */
+    void refreshNear(Object key, Object value) {
+        near.put(nearKey(key), value);
+        bus.publish(getName(), nearKey(key));
+    }
+
+    /** Apply an invalidation received from another node; Redis was already updated by the sender. */
+    void invalidateNear(String key) {
+        evictions("invalidated").increment();
+        if (key == null) {
+            near.invalidateAll();
+        } else {
+            near.invalidate(key);
+        }
+    }
+
+    /** Near-tier removals decided by Caffeine itself (size bound, TTL); wired as its removal listener. */
+    void onNearRemoval(RemovalCause cause) {
+        if (cause.wasEvicted()) {
+            evictions(cause == RemovalCause.EXPIRED ? "near_expired" : "near_size").increment();
+        }
+    }
+
+    private Counter gets(String result) {
+        return Counter.builder("miniwallet.cache.gets")
+                .description("Cache lookups by result: near_hit, remote_hit (Redis), miss")
+                .tag("cache", getName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter evictions(String cause) {
+        return Counter.builder("miniwallet.cache.evictions")
+                .description("Cache removals by cause: explicit, clear, invalidated (by another node), near_size, near_expired")
+                .tag("cache", getName())
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    // cache keys in this application are SpEL-built strings
+    private static String nearKey(Object key) {
+        return String.valueOf(key);
+    }
+}
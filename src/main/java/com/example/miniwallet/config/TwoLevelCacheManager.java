@@ -0,0 +1,64 @@
+package com.example.miniwallet.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the Redis cache manager so every cache gets an in-process near tier. Near TTLs are set per
+ * cache name; near-immutable data such as customers can keep a long TTL because changes are also
+ * pushed through the {@link CacheInvalidationBus}.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager remote;
+    private final CacheInvalidationBus bus;
+    private final long nearMaxSize;
+    private final Duration defaultNearTtl;
+    private final Map<String, Duration> nearTtls;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, CacheInvalidationBus bus, long nearMaxSize,
+                                Duration defaultNearTtl, Map<String, Duration> nearTtls, MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.bus = bus;
+        this.nearMaxSize = nearMaxSize;
+        this.defaultNearTtl = defaultNearTtl;
+        this.nearTtls = nearTtls;
+        this.meterRegistry = meterRegistry;
+        bus.onInvalidation(inv -> {
+            TwoLevelCache cache = caches.get(inv.cacheName());
+            if (cache != null) cache.invalidateNear(inv.key());
+        });
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> {
+            Cache remoteCache = remote.getCache(n);
+            if (remoteCache == null) return null;
+            return new TwoLevelCache(remoteCache,
+                    Caffeine.newBuilder()
+                            .maximumSize(nearMaxSize)
+                            .expireAfterWrite(nearTtls.getOrDefault(n, defaultNearTtl))
+                            .removalListener((key, value, cause) -> {
+                                TwoLevelCache cache = caches.get(n);
+                                if (cache != null) cache.onNearRemoval(cause);
+                            })
+                            .build(),
+                    bus, meterRegistry);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.miniwallet.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Writes cache entries only when they are at least as new as the entry already in Redis.
+ * The version is kept in a companion key next to the entry and compared inside a Lua script,
+ * so a writer holding an older snapshot can never overwrite a newer one.
+ */
+public class VersionedCacheWriter {
+
+    static final String VERSION_SUFFIX = "#version";
+
+    // KEYS: entry, version  ARGV: version, value, ttl millis (0 = no expiry)
+    private static final RedisScript<Long> PUT_IF_NEWER = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[2]) " +
+            "if current and tonumber(current) > tonumber(ARGV[1]) then return 0 end " +
+            "local ttl = tonumber(ARGV[3]) " +
+            "if ttl > 0 then " +
+            // the version outlives the entry so a late writer cannot resurrect an old value right after expiry
+            "  redis.call('SET', KEYS[1], ARGV[2], 'PX', ttl) " +
+            "  redis.call('SET', KEYS[2], ARGV[1], 'PX', 2 * ttl) " +
+            "else " +
+            "  redis.call('SET', KEYS[1], ARGV[2]) " +
+            "  redis.call('SET', KEYS[2], ARGV[1]) " +
+            "end " +
+            "return 1", Long.class);
+
+    private final CacheManager cacheManager;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    public VersionedCacheWriter(CacheManager cacheManager, RedisConnectionFactory connectionFactory) {
+        this.cacheManager = cacheManager;
+        this.redisTemplate = new RedisTemplate<>();
+        this.redisTemplate.setConnectionFactory(connectionFactory);
+        this.redisTemplate.setKeySerializer(RedisSerializer.string());
+        this.redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        this.redisTemplate.afterPropertiesSet();
+    }
+
+    /** @return false when the cache already holds a newer version */
+    public boolean putIfNewer(String cacheName, String key, Object value, long version) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return false;
+        }
+        Cache remote = cache instanceof TwoLevelCache twoLevel ? twoLevel.getRemote() : cache;
+        if (!(remote instanceof RedisCache redisCache)) {
+            // no shared store to compare against
+            cache.put(key, value);
+            return true;
+        }
+
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        String redisKey = config.usePrefix() ? config.getKeyPrefixFor(cacheName) + key : key;
+        byte[] payload = ByteUtils.getBytes(config.getValueSerializationPair().write(value));
+        Duration ttl = config.getTtlFunction().getTimeToLive(key, value);
+        Long applied = redisTemplate.execute(PUT_IF_NEWER, List.of(redisKey, redisKey + VERSION_SUFFIX),
+                bytes(version), payload, bytes(Math.max(ttl.toMillis(), 0)));
+        if (applied == null || applied == 0) {
+            return false;
+        }
+        if (cache instanceof TwoLevelCache twoLevel) {
+            twoLevel.refreshNear(key, value);
+        }
+        return true;
+    }
+
+    private static byte[] bytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.miniwallet.controller;
+
+import com.example.miniwallet.dto.DisbursementRequestDto;
+import com.example.miniwallet.dto.DisbursementResponseDto;
+import com.example.miniwallet.entity.Disbursement;
+import com.example.miniwallet.service.DisbursementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@RestController
+@RequestMapping("/api/disbursements")
+@RequiredArgsConstructor
+@Validated
+public class DisbursementController {
+
+    private final DisbursementService disbursementService;
+
+    // registers the campaign and pays it in the background; poll the Location for progress
+    @PostMapping
+    public ResponseEntity<DisbursementResponseDto> create(@RequestBody @Validated DisbursementRequestDto req) {
+        Disbursement d = disbursementService.create(req.getCampaignId(), req.getSourceWalletId(), req.getReference(), req.getItems());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(UriComponentsBuilder.fromPath("/api/disbursements/{id}").buildAndExpand(d.getCampaignId()).toUri())
+                .body(toDto(d));
+    }
+
+    @GetMapping("/{campaignId}")
+    public ResponseEntity<DisbursementResponseDto> getById(@PathVariable String campaignId) {
+        return ResponseEntity.ok(toDto(disbursementService.get(campaignId)));
+    }
+
+    // continue a paused campaign; items already paid are never paid again
+    @PostMapping("/{campaignId}/resume")
+    public ResponseEntity<DisbursementResponseDto> resume(@PathVariable String campaignId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(toDto(disbursementService.resume(campaignId)));
+    }
+
+    private DisbursementResponseDto toDto(Disbursement d) {
+        return DisbursementResponseDto.builder()
+                .campaignId(d.getCampaignId())
+                .sourceWalletId(d.getSourceWalletId())
+                .reference(d.getReference())
+                .status(d.getStatus().name())
+                .totalItems(d.getTotalItems())
+                .paidItems(d.getPaidItems())
+                .failedItems(d.getFailedItems())
+                .totalAmount(d.getTotalAmount())
+                .amountPaid(d.getAmountPaid())
+                .itemsPerSecond(DisbursementService.throughput(d))
+                .lastError(d.getLastError())
+                .createdAt(d.getCreatedAt())
+                .finishedAt(d.getFinishedAt())
+                .build();
+    }
+}
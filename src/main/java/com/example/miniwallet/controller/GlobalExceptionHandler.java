@@ -1,11 +1,17 @@
 package com.example.miniwallet.controller;
 
 import com.example.miniwallet.exception.*;
+import com.example.miniwallet.service.BalanceUpdatePolicy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.http.*;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +29,40 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
     }
 
+    // a value the column cannot hold (SQLState class 22: too long, out of range) that validation let through;
+    // every other violation (foreign key, NOT NULL, unexpected duplicates) is a server bug and goes to the fallback.
+    // Concurrent idempotency claims are turned into DuplicateResourceException where they are inserted.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> integrity(DataIntegrityViolationException ex) {
+        if (ex.getMostSpecificCause() instanceof SQLException sql
+                && sql.getSQLState() != null && sql.getSQLState().startsWith("22")) {
+            log.warn("value rejected by the database: {}", sql.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "request value out of range for its field"));
+        }
+        return fallback(ex);
+    }
+
+    // no database connection in time (connection pool or bulkhead exhausted); safe for the client to retry
+    @ExceptionHandler({CannotCreateTransactionException.class, TransientDataAccessResourceException.class})
+    public ResponseEntity<?> databaseBusy(Exception ex) {
+        log.warn("database busy: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "service busy, retry later"));
+    }
+
+    // lost a deadlock or waited too long for a row lock; the transaction was rolled back, so a retry is safe
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    public ResponseEntity<?> lockConflict(PessimisticLockingFailureException ex) {
+        Throwable cause = ex.getMostSpecificCause();
+        boolean deadlock = BalanceUpdatePolicy.isDeadlock(ex);
+        log.warn("lock conflict ({}): {}", deadlock ? "deadlock" : "lock timeout", cause.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "concurrent update conflict, retry later",
+                        "reason", deadlock ? "deadlock" : "lock_timeout"));
+    }
+
     @ExceptionHandler(InsufficientFundsException.class)
     public ResponseEntity<?> insufficient(InsufficientFundsException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", ex.getMessage()));
@@ -0,0 +1,65 @@
+package com.example.miniwallet.controller;
+
+import com.example.miniwallet.dto.ReconciliationMismatchResponseDto;
+import com.example.miniwallet.dto.ReconciliationRunResponseDto;
+import com.example.miniwallet.entity.ReconciliationMismatch;
+import com.example.miniwallet.entity.ReconciliationRun;
+import com.example.miniwallet.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/reconciliation/runs")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    // resumes an unfinished run, otherwise starts a new one (incremental unless full=true); runs in the background
+    @PostMapping
+    public ResponseEntity<ReconciliationRunResponseDto> start(@RequestParam(defaultValue = "false") boolean full) {
+        ReconciliationRun run = reconciliationService.start(full);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(toDto(run));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ReconciliationRunResponseDto> getById(@PathVariable Long id) {
+        return ResponseEntity.ok(toDto(reconciliationService.getRun(id)));
+    }
+
+    @GetMapping("/{id}/mismatches")
+    public ResponseEntity<Page<ReconciliationMismatchResponseDto>> mismatches(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        Page<ReconciliationMismatch> result = reconciliationService.getMismatches(id, PageRequest.of(page, size));
+        return ResponseEntity.ok(result.map(this::toDto));
+    }
+
+    private ReconciliationRunResponseDto toDto(ReconciliationRun r) {
+        return ReconciliationRunResponseDto.builder()
+                .id(r.getRunId())
+                .status(r.getStatus().name())
+                .startedAt(r.getStartedAt())
+                .finishedAt(r.getFinishedAt())
+                .changedSince(r.getChangedSince())
+                .rangeSize(r.getRangeSize())
+                .walletsChecked(r.getWalletsChecked())
+                .mismatches(r.getMismatches())
+                .build();
+    }
+
+    private ReconciliationMismatchResponseDto toDto(ReconciliationMismatch m) {
+        return ReconciliationMismatchResponseDto.builder()
+                .walletId(m.getWalletId())
+                .walletBalance(m.getWalletBalance())
+                .ledgerBalance(m.getLedgerBalance())
+                .difference(m.getDifference())
+                .detectedAt(m.getDetectedAt())
+                .build();
+    }
+}
@@ -1,15 +1,22 @@
 package com.example.miniwallet.controller;
 
+import com.example.miniwallet.dto.TransactionCursorPageDto;
 import com.example.miniwallet.dto.TransactionResponseDto;
 import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.service.TransactionCursor;
+import com.example.miniwallet.service.TransactionExportService;
 import com.example.miniwallet.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
@@ -17,7 +24,10 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
     private final TransactionService transactionService;
+    private final TransactionExportService exportService;
 
     @GetMapping("/{id}")
     public ResponseEntity<TransactionResponseDto> getById(@PathVariable String id) {
@@ -52,6 +62,59 @@ public class TransactionController {
         return ResponseEntity.ok(dtoPage);
     }
 
+    // cursor-based variant of listByWallet: constant cost per page however deep the client scrolls
+    @GetMapping("/by-wallet/{walletId}/cursor")
+    public ResponseEntity<TransactionCursorPageDto> listByWalletCursor(
+            @PathVariable Long walletId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Transaction.TransactionStatus status,
+            @RequestParam(required = false) Transaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        Slice<Transaction> slice = transactionService.getByWalletIdAfter(
+                walletId, TransactionCursor.decode(cursor), pageSize, status, type, start, end);
+
+        List<Transaction> rows = slice.getContent();
+        String nextCursor = slice.hasNext() && !rows.isEmpty()
+                ? TransactionCursor.after(rows.get(rows.size() - 1)).encode()
+                : null;
+        return ResponseEntity.ok(TransactionCursorPageDto.builder()
+                .content(rows.stream().map(this::toDto).collect(Collectors.toList()))
+                .size(rows.size())
+                .hasNext(slice.hasNext())
+                .nextCursor(nextCursor)
+                .build());
+    }
+
+    // full statement download, streamed row by row (ndjson or csv, optionally gzip-encoded)
+    @GetMapping("/by-wallet/{walletId}/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable Long walletId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        TransactionExportService.Format fmt = TransactionExportService.parseFormat(format);
+        exportService.ensureWalletExists(walletId);
+
+        String extension = fmt == TransactionExportService.Format.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(fmt == TransactionExportService.Format.CSV
+                        ? new MediaType("text", "csv")
+                        : new MediaType("application", "x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"wallet-" + walletId + "-transactions." + extension + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        StreamingResponseBody body = out -> exportService.export(walletId, start, end, fmt, gzip, out);
+        return response.body(body);
+    }
+
     @GetMapping("/by-reference/{reference}")
     public ResponseEntity<java.util.List<TransactionResponseDto>> getByReference(@PathVariable String reference) {
         java.util.List<Transaction> transactions = transactionService.findByReference(reference);
@@ -86,6 +149,7 @@ public class TransactionController {
                 .id(t.getTransactionId())
                 .walletId(t.getWallet().getWalletId())
                 .amount(t.getAmount())
+                .balanceAfter(t.getBalanceAfter())
                 .type(t.getType().name())
                 .status(t.getStatus().name())
                 .transferId(t.getTransferId())
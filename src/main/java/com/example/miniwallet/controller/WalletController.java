@@ -3,12 +3,22 @@ package com.example.miniwallet.controller;
 import com.example.miniwallet.dto.*;
 import com.example.miniwallet.entity.Transaction;
 import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.service.AsyncTransferService;
+import com.example.miniwallet.service.BalanceUpdatePolicy;
+import com.example.miniwallet.service.BalanceSnapshotService;
+import com.example.miniwallet.service.BatchTransferOutcome;
+import com.example.miniwallet.service.IdempotencyService;
 import com.example.miniwallet.service.WalletService;
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,7 +28,14 @@ import java.util.stream.Collectors;
 @Validated
 public class WalletController {
 
+    private static final TypeReference<TransactionResponseDto> TX_DTO = new TypeReference<>() {};
+    private static final TypeReference<List<TransactionResponseDto>> TX_DTO_LIST = new TypeReference<>() {};
+
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final AsyncTransferService asyncTransferService;
+    private final BalanceUpdatePolicy balanceUpdatePolicy;
 
     // create wallet for customer
     @PostMapping
@@ -33,6 +50,20 @@ public class WalletController {
         return ResponseEntity.ok(toDto(w));
     }
 
+    // historical balance: nearest end-of-day snapshot plus the transactions after it (defaults to now)
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<BalanceAsOfResponseDto> balanceAsOf(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        BalanceSnapshotService.BalanceAsOf result = balanceSnapshotService.balanceAsOf(id, asOf != null ? asOf : LocalDateTime.now());
+        return ResponseEntity.ok(BalanceAsOfResponseDto.builder()
+                .walletId(result.walletId())
+                .asOf(result.asOf())
+                .balance(result.balance())
+                .snapshotDate(result.snapshotDate())
+                .build());
+    }
+
     @GetMapping("/by-customer/{customerId}")
     public ResponseEntity<WalletResponseDto> getByCustomer(@PathVariable Long customerId) {
         return walletService.findByCustomerId(customerId)
@@ -42,32 +73,85 @@ public class WalletController {
 
     @PostMapping("/{id}/deposit")
     public ResponseEntity<TransactionResponseDto> deposit(@PathVariable Long id,
+                                                          @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                                           @RequestBody @Validated DepositWithdrawRequestDto req) {
-        Transaction tx = walletService.deposit(id, req.getAmount(), req.getReference());
-        return ResponseEntity.status(HttpStatus.CREATED).body(toTxDto(tx));
+        // retried around the idempotent execution, whose transaction the deposit joins when a key is sent
+        return balanceUpdatePolicy.withRetry(() -> idempotencyService.execute(idempotencyKey, "DEPOSIT:" + id, req, HttpStatus.CREATED, TX_DTO,
+                () -> toTxDto(walletService.deposit(id, req.getAmount(), req.getReference()))));
     }
 
     @PostMapping("/{id}/withdraw")
     public ResponseEntity<TransactionResponseDto> withdraw(@PathVariable Long id,
+                                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                                            @RequestBody @Validated DepositWithdrawRequestDto req) {
-        Transaction tx = walletService.withdraw(id, req.getAmount(), req.getReference());
-        return ResponseEntity.ok(toTxDto(tx));
+        return balanceUpdatePolicy.withRetry(() -> idempotencyService.execute(idempotencyKey, "WITHDRAW:" + id, req, HttpStatus.OK, TX_DTO,
+                () -> toTxDto(walletService.withdraw(id, req.getAmount(), req.getReference()))));
     }
 
+    // in async mode the transfer is only recorded (INITIATED) and answered with 202 and a status URL
     @PostMapping("/transfer")
-    public ResponseEntity<List<TransactionResponseDto>> transfer(@RequestBody @Validated TransferRequestDto req) {
-        List<Transaction> txs = walletService.transfer(
-                req.getFromWalletId(),
-                req.getToWalletId(),
-                req.getAmount(),
-                req.getTransferId(),
-                req.getReference()
-        );
-        List<TransactionResponseDto> dtos = txs.stream().map(this::toTxDto).collect(Collectors.toList());
-        return ResponseEntity.status(HttpStatus.CREATED).body(dtos);
+    public ResponseEntity<List<TransactionResponseDto>> transfer(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                                 @RequestBody @Validated TransferRequestDto req) {
+        if (asyncTransferService.isEnabled()) {
+            ResponseEntity<List<TransactionResponseDto>> accepted = idempotencyService.execute(idempotencyKey, "TRANSFER", req,
+                    HttpStatus.ACCEPTED, TX_DTO_LIST, () -> asyncTransferService.submit(
+                            req.getFromWalletId(),
+                            req.getToWalletId(),
+                            req.getAmount(),
+                            req.getTransferId(),
+                            req.getReference()
+                    ).stream().map(this::toTxDto).collect(Collectors.toList()));
+            URI status = UriComponentsBuilder.fromPath("/api/transactions/by-transfer/{transferId}")
+                    .buildAndExpand(accepted.getBody().get(0).getTransferId())
+                    .toUri();
+            return ResponseEntity.status(accepted.getStatusCode())
+                    .headers(accepted.getHeaders())
+                    .location(status)
+                    .body(accepted.getBody());
+        }
+        return balanceUpdatePolicy.withRetry(() -> idempotencyService.execute(idempotencyKey, "TRANSFER", req, HttpStatus.CREATED, TX_DTO_LIST, () -> {
+            List<Transaction> txs = walletService.transfer(
+                    req.getFromWalletId(),
+                    req.getToWalletId(),
+                    req.getAmount(),
+                    req.getTransferId(),
+                    req.getReference()
+            );
+            return txs.stream().map(this::toTxDto).collect(Collectors.toList());
+        }));
+    }
+
+    // many transfers in one DB transaction; each item reports its own success or failure
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<BatchTransferResponseDto> transferBatch(@RequestBody @Validated BatchTransferRequestDto req) {
+        List<BatchTransferOutcome> outcomes = balanceUpdatePolicy.withRetry(() -> walletService.transferBatch(req.getTransfers()));
+        List<BatchTransferItemResultDto> results = outcomes.stream()
+                .map(o -> BatchTransferItemResultDto.builder()
+                        .index(o.getIndex())
+                        .transferId(o.getTransferId())
+                        .status(o.isSuccess() ? "SUCCESS" : "FAILED")
+                        .error(o.getError())
+                        .transactions(o.getTransactions().stream().map(this::toTxDto).collect(Collectors.toList()))
+                        .build())
+                .collect(Collectors.toList());
+        int succeeded = (int) outcomes.stream().filter(BatchTransferOutcome::isSuccess).count();
+        return ResponseEntity.ok(BatchTransferResponseDto.builder()
+                .succeeded(succeeded)
+                .failed(outcomes.size() - succeeded)
+                .results(results)
+                .build());
+    }
+
+    // opt-in hot wallet mode: spread the balance over N shard rows to absorb high credit rates
+    @PostMapping("/{id}/hot-mode")
+    public ResponseEntity<WalletResponseDto> enableHotMode(@PathVariable Long id,
+                                                           @RequestParam(defaultValue = "8") int shards) {
+        Wallet w = walletService.enableHotMode(id, shards);
+        return ResponseEntity.ok(toDto(w));
     }
 
-    private WalletResponseDto toDto(Wallet w) {
+    // mappers are package-private for the DTO mapping benchmarks
+    WalletResponseDto toDto(Wallet w) {
         return WalletResponseDto.builder()
                 .id(w.getWalletId())
                 .customerId(w.getCustomer().getCustomerId())
@@ -78,11 +162,12 @@ public class WalletController {
                 .build();
     }
 
-    private TransactionResponseDto toTxDto(Transaction t) {
+    TransactionResponseDto toTxDto(Transaction t) {
         return TransactionResponseDto.builder()
                 .id(t.getTransactionId())
                 .walletId(t.getWallet().getWalletId())
                 .amount(t.getAmount())
+                .balanceAfter(t.getBalanceAfter())
                 .type(t.getType().name())
                 .status(t.getStatus().name())
                 .transferId(t.getTransferId())
@@ -0,0 +1,18 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceAsOfResponseDto {
+    private Long walletId;
+    private LocalDateTime asOf;
+    private BigDecimal balance;
+    private LocalDate snapshotDate; // closing balance the result was built from; null if none existed yet
+}
@@ -0,0 +1,17 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferItemResultDto {
+    private int index;
+    private String transferId;
+    private String status; // SUCCESS / FAILED
+    private String error;
+    private List<TransactionResponseDto> transactions;
+}
@@ -0,0 +1,17 @@
+package com.example.miniwallet.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferRequestDto {
+    @NotEmpty
+    @Size(max = 1000)
+    // items are checked by the service, which reports a bad item in its own result instead of failing the batch
+    private List<TransferRequestDto> transfers;
+}
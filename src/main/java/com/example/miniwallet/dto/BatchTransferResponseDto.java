@@ -0,0 +1,15 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferResponseDto {
+    private int succeeded;
+    private int failed;
+    private List<BatchTransferItemResultDto> results;
+}
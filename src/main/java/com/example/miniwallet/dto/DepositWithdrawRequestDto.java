@@ -14,5 +14,6 @@ public class DepositWithdrawRequestDto {
     @DecimalMin(value = "0.0001", inclusive = true)
     private BigDecimal amount;
 
+    @Size(max = 255)
     private String reference;
 }
@@ -0,0 +1,19 @@
+package com.example.miniwallet.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DisbursementItemDto {
+    @NotNull
+    private Long walletId;
+
+    @NotNull
+    @DecimalMin(value = "0.0001", inclusive = true)
+    private BigDecimal amount;
+}
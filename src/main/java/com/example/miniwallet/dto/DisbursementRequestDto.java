@@ -0,0 +1,27 @@
+package com.example.miniwallet.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DisbursementRequestDto {
+    // optional; generated when missing. Reusing an id is rejected, so a retried request cannot pay twice
+    @Size(max = 36)
+    private String campaignId;
+
+    @NotNull
+    private Long sourceWalletId;
+
+    @Size(max = 255)
+    private String reference;
+
+    @NotEmpty
+    @Size(max = 100000)
+    private List<@Valid @NotNull DisbursementItemDto> items;
+}
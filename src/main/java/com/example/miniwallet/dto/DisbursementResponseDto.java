@@ -0,0 +1,26 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DisbursementResponseDto {
+    private String campaignId;
+    private Long sourceWalletId;
+    private String reference;
+    private String status;
+    private Integer totalItems;
+    private Integer paidItems;
+    private Integer failedItems;
+    private BigDecimal totalAmount;
+    private BigDecimal amountPaid;
+    private Double itemsPerSecond; // processed items over the campaign's run time so far
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,18 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationMismatchResponseDto {
+    private Long walletId;
+    private BigDecimal walletBalance;
+    private BigDecimal ledgerBalance;
+    private BigDecimal difference;
+    private LocalDateTime detectedAt;
+}
@@ -0,0 +1,20 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRunResponseDto {
+    private Long id;
+    private String status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime changedSince; // null for a full run
+    private Integer rangeSize;
+    private Long walletsChecked;
+    private Long mismatches;
+}
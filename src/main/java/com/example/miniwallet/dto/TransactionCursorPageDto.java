@@ -0,0 +1,16 @@
+package com.example.miniwallet.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionCursorPageDto {
+    private List<TransactionResponseDto> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor; // pass back as ?cursor= to get the following page; null on the last page
+}
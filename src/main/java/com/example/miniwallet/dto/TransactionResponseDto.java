@@ -1,8 +1,8 @@
 package com.example.miniwallet.dto;
 
+import com.example.miniwallet.entity.Money;
 import lombok.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 public class TransactionResponseDto {
     private String id;
     private Long walletId;
-    private BigDecimal amount;
+    private Money amount;
+    private Money balanceAfter;
     private String type; // CREDIT / DEBIT
     private String status;
     private String transferId;
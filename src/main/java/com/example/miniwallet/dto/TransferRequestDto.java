@@ -24,5 +24,6 @@ public class TransferRequestDto {
     @Size(max = 36)
     private String transferId;
 
+    @Size(max = 255)
     private String reference;
 }
@@ -1,8 +1,8 @@
 package com.example.miniwallet.dto;
 
+import com.example.miniwallet.entity.Money;
 import lombok.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
 public class WalletResponseDto {
     private Long id;
     private Long customerId;
-    private BigDecimal balance;
+    private Money balance;
     private Integer version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -0,0 +1,29 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/** Single row recording the last day for which wallet_daily_balances is complete. */
+@Entity
+@Table(name = "balance_snapshot_progress")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshotProgress {
+
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    private Integer id;
+
+    // null until the historical backfill has run
+    @Column(name = "closed_through")
+    private LocalDate closedThrough;
+}
@@ -0,0 +1,77 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A one-to-many payout campaign from a single source wallet. Its id is written as the transferId of
+ * every transactions row it creates; progress counters are updated with each paid chunk.
+ */
+@Entity
+@Table(name = "disbursements")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Disbursement {
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false, length = 36)
+    private String campaignId;
+
+    @Column(name = "source_wallet_id", nullable = false, updatable = false)
+    private Long sourceWalletId;
+
+    @Column(name = "reference", length = 255, updatable = false)
+    private String reference;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 9)
+    private Status status;
+
+    @Column(name = "total_items", nullable = false, updatable = false)
+    private Integer totalItems;
+
+    @Column(name = "total_amount", nullable = false, updatable = false, precision = 19, scale = 4)
+    private BigDecimal totalAmount;
+
+    @Column(name = "paid_items", nullable = false)
+    private Integer paidItems;
+
+    @Column(name = "failed_items", nullable = false)
+    private Integer failedItems;
+
+    @Column(name = "amount_paid", nullable = false, precision = 19, scale = 4)
+    private BigDecimal amountPaid;
+
+    // why the campaign paused or failed
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // last (re)start, and items already processed at that point, for the throughput figure
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "processed_at_start", nullable = false)
+    private Integer processedAtStart;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public int getProcessedItems() {
+        return paidItems + failedItems;
+    }
+
+    public enum Status {
+        RUNNING, PAUSED, COMPLETED, FAILED
+    }
+}
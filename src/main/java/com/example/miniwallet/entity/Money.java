@@ -0,0 +1,145 @@
+package com.example.miniwallet.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money as a whole number of 1/10000 units, the scale of the DECIMAL(19,4) columns.
+ * Arithmetic is plain {@code long} math and throws {@link ArithmeticException} on overflow instead of
+ * wrapping. The range is about +-922 trillion, a little less than DECIMAL(19,4) allows.
+ *
+ * In JSON it is written as the same scale-4 number a {@code BigDecimal} produced (e.g. {@code 12.5000}).
+ */
+@Schema(type = "number", example = "12.5000")
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 4;
+    private static final long UNIT = 10_000L;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long units;
+
+    private Money(long units) {
+        this.units = units;
+    }
+
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /** Rounds half up to four decimal places; throws {@link ArithmeticException} when out of range. */
+    public static Money of(BigDecimal amount) {
+        return ofUnits(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static Money ofNullable(BigDecimal amount) {
+        return amount == null ? null : of(amount);
+    }
+
+    public long units() {
+        return units;
+    }
+
+    public Money plus(Money other) {
+        return other.units == 0 ? this : ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return other.units == 0 ? this : ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public Money negate() {
+        return ofUnits(Math.negateExact(units));
+    }
+
+    public Money min(Money other) {
+        return units <= other.units ? this : other;
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isLessThan(Money other) {
+        return units < other.units;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && units == other.units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    /** Plain scale-4 form, e.g. {@code -0.0500}, built without going through BigDecimal. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(24);
+        // Long.MIN_VALUE cannot be negated; its digits are taken from the unsigned value
+        String digits = units < 0 ? Long.toUnsignedString(-units) : Long.toString(units);
+        if (units < 0) sb.append('-');
+        if (digits.length() <= SCALE) {
+            sb.append("0.");
+            for (int i = digits.length(); i < SCALE; i++) sb.append('0');
+            sb.append(digits);
+        } else {
+            sb.append(digits, 0, digits.length() - SCALE).append('.').append(digits, digits.length() - SCALE, digits.length());
+        }
+        return sb.toString();
+    }
+
+    public static final class Serializer extends StdScalarSerializer<Money> {
+
+        public Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    public static final class Deserializer extends StdScalarDeserializer<Money> {
+
+        public Deserializer() {
+            super(Money.class);
+        }
+
+        // numbers and numeric strings, as BigDecimal fields accepted them
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_STRING) {
+                return of(new BigDecimal(p.getText().trim()));
+            }
+            return of(p.getDecimalValue());
+        }
+    }
+}
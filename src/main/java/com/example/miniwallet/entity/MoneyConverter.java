@@ -0,0 +1,26 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * Maps {@link Money} onto the existing DECIMAL(19,4) columns; the schema is unchanged. Marked immutable
+ * so Hibernate compares snapshots with equals instead of copying values for dirty checking.
+ */
+@Immutable
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money attribute) {
+        return attribute == null ? null : attribute.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal dbData) {
+        return Money.ofNullable(dbData);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** A wallet whose stored balance differs from the net of its successful transactions. */
+@Entity
+@Table(name = "reconciliation_mismatches", indexes = {
+    @Index(name = "idx_recon_mismatch_run", columnList = "run_id, wallet_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationMismatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long mismatchId;
+
+    @Column(name = "run_id", nullable = false, updatable = false)
+    private Long runId;
+
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private Long walletId;
+
+    // wallets row plus hot-wallet shards
+    @Column(name = "wallet_balance", nullable = false, precision = 19, scale = 4)
+    private BigDecimal walletBalance;
+
+    @Column(name = "ledger_balance", nullable = false, precision = 19, scale = 4)
+    private BigDecimal ledgerBalance;
+
+    @Column(name = "difference", nullable = false, precision = 19, scale = 4)
+    private BigDecimal difference;
+
+    @Column(name = "detected_at", nullable = false)
+    private LocalDateTime detectedAt;
+}
@@ -0,0 +1,47 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/** Checkpoint of one wallet id range within a reconciliation run. */
+@Entity
+@Table(name = "reconciliation_ranges", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_recon_range", columnNames = {"run_id", "range_start"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long rangeId;
+
+    @Column(name = "run_id", nullable = false, updatable = false)
+    private Long runId;
+
+    @Column(name = "range_start", nullable = false, updatable = false)
+    private Long rangeStart;
+
+    @Column(name = "range_end", nullable = false, updatable = false)
+    private Long rangeEnd;
+
+    @Column(name = "done", nullable = false)
+    private boolean done;
+
+    @Column(name = "wallets_checked")
+    private Integer walletsChecked;
+
+    @Column(name = "mismatches")
+    private Integer mismatches;
+
+    @Column(name = "checked_at")
+    private LocalDateTime checkedAt;
+}
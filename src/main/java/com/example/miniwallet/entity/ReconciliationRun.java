@@ -0,0 +1,54 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the balance reconciliation job. Its ranges are checkpointed individually, so a run
+ * interrupted by a restart resumes with the ranges it had not finished.
+ */
+@Entity
+@Table(name = "reconciliation_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long runId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 9)
+    private Status status;
+
+    @Column(name = "started_at", nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // only wallets updated at or after this instant are checked; null for a full run
+    @Column(name = "changed_since", updatable = false)
+    private LocalDateTime changedSince;
+
+    @Column(name = "range_size", nullable = false, updatable = false)
+    private Integer rangeSize;
+
+    @Column(name = "wallets_checked", nullable = false)
+    private Long walletsChecked;
+
+    @Column(name = "mismatches", nullable = false)
+    private Long mismatches;
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.miniwallet.entity;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUIDv7-style identifiers: 48 bits of unix milliseconds, then a 12-bit counter and random bits.
+ * Ids generated by one JVM are strictly increasing, so new rows append to the right edge of the
+ * clustered index instead of landing on random pages.
+ */
+public final class TimeOrderedUuid {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // (unix millis << 12) | counter of the last id handed out
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TimeOrderedUuid() {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long state = LAST.updateAndGet(last -> Math.max(now, last + 1));
+
+        long millis = state >>> 12;
+        long counter = state & 0xFFFL;
+        long msb = (millis << 16) | 0x7000L | counter;                            // version 7
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        return new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.miniwallet.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/** Hibernate id generator producing {@link TimeOrderedUuid} values in their string form. */
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return TimeOrderedUuid.next().toString();
+    }
+}
@@ -7,8 +7,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -23,10 +23,12 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
 
+    // time-ordered UUID kept as a string in Java, stored as BINARY(16) (a user type: @Convert does not apply to ids)
     @Id
-    @GeneratedValue(generator = "uuid")
-    @GenericGenerator(name = "uuid", strategy = "org.hibernate.id.UUIDGenerator")
-    @Column(name = "id", nullable = false, length = 36, updatable = false)
+    @GeneratedValue(generator = "uuid7")
+    @GenericGenerator(name = "uuid7", type = TimeOrderedUuidGenerator.class)
+    @Type(UuidBinaryType.class)
+    @Column(name = "id", nullable = false, updatable = false, columnDefinition = "BINARY(16)")
     private String transactionId;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -37,8 +39,14 @@ public class Transaction {
     @Column(name = "wallet_id", nullable = false, insertable = false, updatable = false)
     private Long walletId;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(name = "amount", nullable = false, precision = 19, scale = 4)
-    private BigDecimal amount;
+    private Money amount;
+
+    // wallet balance right after this entry; null until backfilled for rows written without the wallet fully locked (hot wallets)
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "balance_after", precision = 19, scale = 4)
+    private Money balanceAfter;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "type", nullable = false, length = 6)
@@ -58,8 +66,9 @@ public class Transaction {
     @Column(name = "reference", length = 255)
     private String reference;
 
+    // the ordering key of a wallet's history; async transfer legs are restamped when they settle, as that is when balance_after is taken
     @CreationTimestamp
-    @Column(name = "created_at", nullable = false, updatable = false, columnDefinition = "DATETIME(6)")
+    @Column(name = "created_at", nullable = false, columnDefinition = "DATETIME(6)")
     private LocalDateTime createdAt;
 
     public enum TransactionType {
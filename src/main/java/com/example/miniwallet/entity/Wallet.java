@@ -8,7 +8,6 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -28,13 +27,18 @@ public class Wallet {
     @JoinColumn(name = "customer_id", nullable = false, unique = true, foreignKey = @ForeignKey(name = "fk_wallet_customer"))
     private Customer customer;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(name = "balance", nullable = false, precision = 19, scale = 4)
-    private BigDecimal balance = BigDecimal.ZERO;
+    private Money balance = Money.ZERO;
 
     @Version
     @Column(name = "version", nullable = false)
     private Integer version = 0;
 
+    // null for a regular wallet; N > 1 when the balance is split across N wallet_balance_shards rows
+    @Column(name = "shard_count")
+    private Integer shardCount;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,51 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One slice of a hot wallet's balance. A wallet in hot mode keeps its balance spread
+ * across N shard rows so concurrent credits lock different rows instead of the single wallets row.
+ */
+@Entity
+@Table(name = "wallet_balance_shards", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_shard_wallet_no", columnNames = {"wallet_id", "shard_no"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletBalanceShard {
+
+    // pooled table ids instead of IDENTITY so the N shard inserts of enableHotMode can be batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "shard_ids")
+    @TableGenerator(name = "shard_ids", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "wallet_balance_shards", allocationSize = 100)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long shardId;
+
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private Long walletId;
+
+    @Column(name = "shard_no", nullable = false, updatable = false)
+    private Integer shardNo;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    private Money balance;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version = 0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,48 @@
+package com.example.miniwallet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * End-of-day balance of a wallet, written once the day is closed. Only days on which the wallet
+ * had transactions get a row; the balance on any later day is the latest row plus what followed it.
+ */
+@Entity
+@Table(name = "wallet_daily_balances")
+@IdClass(WalletDailyBalance.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletDailyBalance {
+
+    @Id
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private Long walletId;
+
+    @Id
+    @Column(name = "balance_date", nullable = false, updatable = false)
+    private LocalDate balanceDate;
+
+    // sum of the day's successful credits minus debits
+    @Column(name = "net_change", nullable = false, precision = 19, scale = 4)
+    private BigDecimal netChange;
+
+    @Column(name = "closing_balance", nullable = false, precision = 19, scale = 4)
+    private BigDecimal closingBalance;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long walletId;
+        private LocalDate balanceDate;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.BalanceSnapshotProgress;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotProgressRepository extends JpaRepository<BalanceSnapshotProgress, Integer> {
+
+    // serializes day closing across application nodes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM BalanceSnapshotProgress p WHERE p.id = :id")
+    Optional<BalanceSnapshotProgress> findByIdWithLock(@Param("id") Integer id);
+}
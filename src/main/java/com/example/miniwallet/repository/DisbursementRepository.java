@@ -0,0 +1,23 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.Disbursement;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DisbursementRepository extends JpaRepository<Disbursement, String> {
+
+    // one chunk of a campaign at a time, across application nodes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Disbursement d WHERE d.campaignId = :campaignId")
+    Optional<Disbursement> findByIdWithLock(@Param("campaignId") String campaignId);
+
+    List<Disbursement> findByStatus(Disbursement.Status status);
+}
@@ -0,0 +1,26 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Atomically claim a key. Returns 1 when this transaction now owns the key and 0 when it already exists.
+     * A concurrent claim of the same key waits on the unique index until the owner commits or rolls back.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO idempotency_keys (idem_key, operation, request_hash, created_at) " +
+                   "VALUES (:key, :operation, :requestHash, CURRENT_TIMESTAMP(6))", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("operation") String operation, @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.responseStatus = :status, r.responseBody = :body " +
+           "WHERE r.idempotencyKey = :key")
+    int complete(@Param("key") String key, @Param("status") Integer status, @Param("body") String body);
+}
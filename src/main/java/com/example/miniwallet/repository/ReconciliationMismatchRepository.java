@@ -0,0 +1,13 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.ReconciliationMismatch;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, Long> {
+
+    Page<ReconciliationMismatch> findByRunIdOrderByWalletId(Long runId, Pageable pageable);
+}
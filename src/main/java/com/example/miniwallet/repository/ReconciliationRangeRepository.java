@@ -0,0 +1,21 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.ReconciliationRange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationRangeRepository extends JpaRepository<ReconciliationRange, Long> {
+
+    List<ReconciliationRange> findByRunIdAndDoneFalseOrderByRangeStart(Long runId);
+
+    @Query("SELECT COALESCE(SUM(r.walletsChecked), 0) FROM ReconciliationRange r WHERE r.runId = :runId AND r.done = true")
+    long sumWalletsChecked(@Param("runId") Long runId);
+
+    @Query("SELECT COALESCE(SUM(r.mismatches), 0) FROM ReconciliationRange r WHERE r.runId = :runId AND r.done = true")
+    long sumMismatches(@Param("runId") Long runId);
+}
@@ -0,0 +1,15 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.ReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, Long> {
+
+    Optional<ReconciliationRun> findFirstByOrderByRunIdDesc();
+
+    Optional<ReconciliationRun> findFirstByStatusOrderByRunIdDesc(ReconciliationRun.Status status);
+}
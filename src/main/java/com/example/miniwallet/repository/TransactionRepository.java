@@ -1,14 +1,19 @@
 package com.example.miniwallet.repository;
 
 import com.example.miniwallet.entity.Transaction;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,6 +24,20 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
     List<Transaction> findByWalletIdOrderByCreatedAtDesc(Long walletId);
     
     List<Transaction> findByTransferId(String transferId);
+
+    List<Transaction> findByTransferIdInAndStatus(Collection<String> transferIds, Transaction.TransactionStatus status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaction t WHERE t.transferId IN :transferIds AND t.status = :status")
+    List<Transaction> findByTransferIdInAndStatusWithLock(@Param("transferIds") Collection<String> transferIds,
+                                                         @Param("status") Transaction.TransactionStatus status);
+
+    // debit legs of async transfers not yet settled, oldest first (the credit leg shares the transferId)
+    List<Transaction> findTop1000ByStatusAndTypeAndCreatedAtBeforeOrderByCreatedAt(
+        Transaction.TransactionStatus status,
+        Transaction.TransactionType type,
+        LocalDateTime createdBefore
+    );
     
     Page<Transaction> findByWalletIdAndStatusOrderByCreatedAtDesc(
         Long walletId,
@@ -45,4 +64,63 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
     );
     
     List<Transaction> findByReference(String reference);
+
+    // net effect of a wallet's successful transactions in [from, to], a bounded range scan on idx_tx_wallet_created;
+    // native because amount is a converted (Money) attribute, which JPQL arithmetic does not apply to
+    @Query(value = "SELECT COALESCE(SUM(CASE WHEN t.type = 'CREDIT' THEN t.amount ELSE -t.amount END), 0) " +
+           "FROM transactions t WHERE t.wallet_id = :walletId AND t.status = 'SUCCESS' " +
+           "AND t.created_at >= :from AND t.created_at <= :to", nativeQuery = true)
+    BigDecimal sumNetChange(
+        @Param("walletId") Long walletId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+
+    // Keyset (seek) variants: rows strictly after the (createdAt, id) cursor in newest-first order.
+    // They walk idx_tx_wallet_created (InnoDB appends the primary key to it) and return a Slice, so no COUNT(*) runs.
+
+    @Query("SELECT t FROM Transaction t WHERE t.walletId = :walletId " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.transactionId < :id)) " +
+           "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    Slice<Transaction> findByWalletIdBefore(
+        @Param("walletId") Long walletId,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable
+    );
+
+    @Query("SELECT t FROM Transaction t WHERE t.walletId = :walletId AND t.status = :status " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.transactionId < :id)) " +
+           "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    Slice<Transaction> findByWalletIdAndStatusBefore(
+        @Param("walletId") Long walletId,
+        @Param("status") Transaction.TransactionStatus status,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable
+    );
+
+    @Query("SELECT t FROM Transaction t WHERE t.walletId = :walletId AND t.type = :type " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.transactionId < :id)) " +
+           "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    Slice<Transaction> findByWalletIdAndTypeBefore(
+        @Param("walletId") Long walletId,
+        @Param("type") Transaction.TransactionType type,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable
+    );
+
+    @Query("SELECT t FROM Transaction t WHERE t.walletId = :walletId " +
+           "AND t.createdAt BETWEEN :startDate AND :endDate " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.transactionId < :id)) " +
+           "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    Slice<Transaction> findByWalletIdAndDateRangeBefore(
+        @Param("walletId") Long walletId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable
+    );
 }
@@ -0,0 +1,31 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.WalletBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletBalanceShardRepository extends JpaRepository<WalletBalanceShard, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM WalletBalanceShard s WHERE s.walletId = :walletId AND s.shardNo = :shardNo")
+    Optional<WalletBalanceShard> findByWalletIdAndShardNoWithLock(@Param("walletId") Long walletId,
+                                                                  @Param("shardNo") Integer shardNo);
+
+    // rows are locked in shard_no order so concurrent debits never deadlock on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM WalletBalanceShard s WHERE s.walletId = :walletId ORDER BY s.shardNo")
+    List<WalletBalanceShard> findAllByWalletIdWithLock(@Param("walletId") Long walletId);
+
+    // native so the sum comes back as the column's DECIMAL, not through the Money converter
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM wallet_balance_shards WHERE wallet_id = :walletId", nativeQuery = true)
+    BigDecimal sumBalanceByWalletId(@Param("walletId") Long walletId);
+}
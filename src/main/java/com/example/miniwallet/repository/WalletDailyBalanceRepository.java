@@ -0,0 +1,15 @@
+package com.example.miniwallet.repository;
+
+import com.example.miniwallet.entity.WalletDailyBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface WalletDailyBalanceRepository extends JpaRepository<WalletDailyBalance, WalletDailyBalance.Key> {
+
+    // one descending probe of the primary key (wallet_id, balance_date)
+    Optional<WalletDailyBalance> findFirstByWalletIdAndBalanceDateLessThanOrderByBalanceDateDesc(Long walletId, LocalDate date);
+}
@@ -4,10 +4,14 @@ import com.example.miniwallet.entity.Wallet;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -20,6 +24,48 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     @Query("SELECT w FROM Wallet w WHERE w.id = :id")
     Optional<Wallet> findByIdWithLock(@Param("id") Long id);
     
+    // locks rows in primary key order so batch callers follow the same smaller-id-first rule as transfer
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.id IN :ids ORDER BY w.id")
+    List<Wallet> findAllByIdInWithLock(@Param("ids") Collection<Long> ids);
+    
+    // guarded balance changes for regular wallets: the row lock is taken by the UPDATE itself and the row count
+    // is the check (0 = missing, hot, or short of funds); the version bump keeps the balance cache guard working.
+    // The persistence context is left alone: a wallet already loaded there still holds the old balance until patched.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE wallets SET balance = balance - :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP(6) " +
+            "WHERE id = :id AND balance >= :amount AND (shard_count IS NULL OR shard_count <= 1)", nativeQuery = true)
+    int conditionalDebit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE wallets SET balance = balance + :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP(6) " +
+            "WHERE id = :id AND (shard_count IS NULL OR shard_count <= 1)", nativeQuery = true)
+    int conditionalCredit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    @Query("SELECT COALESCE(w.shardCount, 0) FROM Wallet w WHERE w.id = :id")
+    Optional<Integer> findShardCountById(@Param("id") Long id);
+    
+    // plain read without loading entities, so a later locking query still returns fresh rows
+    @Query("SELECT w.id AS id, COALESCE(w.shardCount, 0) AS shardCount FROM Wallet w WHERE w.id IN :ids")
+    List<ShardCount> findShardCountsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // one statement, so balance and version come from the same committed snapshot even for hot wallets
+    @Query(value = "SELECT w.balance + COALESCE(SUM(s.balance), 0) AS balance, w.version + COALESCE(SUM(s.version), 0) AS version " +
+            "FROM wallets w LEFT JOIN wallet_balance_shards s ON s.wallet_id = w.id " +
+            "WHERE w.id = :id GROUP BY w.id, w.balance, w.version", nativeQuery = true)
+    Optional<BalanceSnapshot> findBalanceSnapshot(@Param("id") Long id);
+    
     @Query("SELECT COUNT(w) > 0 FROM Wallet w WHERE w.customer.customerId = :customerId")
     boolean existsByCustomerId(@Param("customerId") Long customerId);
+
+    interface ShardCount {
+        Long getId();
+        Integer getShardCount();
+    }
+
+    /** Total balance of a wallet (row plus shards) and a version that grows with every committed change to it. */
+    interface BalanceSnapshot {
+        BigDecimal getBalance();
+        Number getVersion();
+    }
 }
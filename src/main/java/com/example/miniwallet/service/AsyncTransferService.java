@@ -0,0 +1,199 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.service.ledger.LedgerEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Asynchronous transfer mode. A request is recorded as a pair of INITIATED legs and answered right
+ * away; the money moves later on a worker lane, so API latency no longer includes lock waits on hot
+ * wallets.
+ *
+ * Transfers are routed to lanes by source wallet, and each lane settles its queue in order, so
+ * transfers out of one wallet accepted by this node execute in the order they were accepted (credits
+ * commute, so the destination does not need the same guarantee). A lane takes whatever has queued up
+ * behind the first item, up to {@code batch-size}, and settles it in one DB transaction. A batch that
+ * keeps failing is settled item by item instead, so one bad transfer only holds back later transfers
+ * out of its own source wallet: those wait behind it until it settles. INITIATED rows left behind by a
+ * restart or a failed batch are picked up again by a periodic sweep.
+ */
+@Slf4j
+@Service
+public class AsyncTransferService implements AutoCloseable {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final WalletService walletService;
+    private final TransactionRepository transactionRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration requeueAfter;
+    private final List<BlockingQueue<Queued>> lanes = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // transfers sitting in a lane, so the sweep does not queue them twice
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    private record Queued(String transferId, Long fromWalletId) {
+    }
+
+    public AsyncTransferService(WalletService walletService,
+                                TransactionRepository transactionRepository,
+                                ObjectProvider<LedgerEngine> ledgerEngine,
+                                @Value("${wallet.transfer.async.enabled:false}") boolean enabled,
+                                @Value("${wallet.transfer.async.lanes:8}") int laneCount,
+                                @Value("${wallet.transfer.async.batch-size:50}") int batchSize,
+                                @Value("${wallet.transfer.async.requeue-after:PT1M}") Duration requeueAfter) {
+        this.walletService = walletService;
+        this.transactionRepository = transactionRepository;
+        this.batchSize = batchSize;
+        this.requeueAfter = requeueAfter;
+        if (enabled && ledgerEngine.getIfAvailable() != null) {
+            // the ledger engine already takes lock waits off the request path
+            log.warn("wallet.transfer.async.enabled is ignored with wallet.engine=ledger");
+            enabled = false;
+        }
+        this.enabled = enabled;
+        if (!enabled) return;
+
+        for (int i = 0; i < laneCount; i++) {
+            BlockingQueue<Queued> lane = new LinkedBlockingQueue<>();
+            lanes.add(lane);
+            workers.add(Thread.ofPlatform().name("transfer-lane-" + i).daemon().start(() -> runLane(lane)));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Record the transfer as INITIATED and queue it; returns the two INITIATED legs. */
+    public List<Transaction> submit(Long fromWalletId, Long toWalletId, BigDecimal amount, String transferId, String reference) {
+        List<Transaction> legs = walletService.initiateTransfer(fromWalletId, toWalletId, amount, transferId, reference);
+        // initiateTransfer has committed at this point, so the worker will find the rows
+        enqueue(fromWalletId, legs.get(0).getTransferId());
+        return legs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        if (enabled) requeue(LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.transfer.async.requeue-after:PT1M}")
+    public void requeueStale() {
+        if (enabled) requeue(LocalDateTime.now().minus(requeueAfter));
+    }
+
+    // oldest first, so per-wallet order is kept as far as the rows allow
+    private void requeue(LocalDateTime createdBefore) {
+        List<Transaction> debits = transactionRepository.findTop1000ByStatusAndTypeAndCreatedAtBeforeOrderByCreatedAt(
+                Transaction.TransactionStatus.INITIATED, Transaction.TransactionType.DEBIT, createdBefore);
+        debits.forEach(t -> enqueue(t.getWalletId(), t.getTransferId()));
+        if (!debits.isEmpty()) {
+            log.info("requeued {} initiated transfers", debits.size());
+        }
+    }
+
+    private void enqueue(Long fromWalletId, String transferId) {
+        if (queued.add(transferId)) {
+            lanes.get(Math.floorMod(fromWalletId.hashCode(), lanes.size())).add(new Queued(transferId, fromWalletId));
+        }
+    }
+
+    private void runLane(BlockingQueue<Queued> lane) {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        // source wallet -> its oldest transfer that could not be settled; later transfers out of it wait
+        Map<Long, String> stuck = new HashMap<>();
+        while (running) {
+            try {
+                batch.add(lane.take());
+                lane.drainTo(batch, batchSize - 1);
+                settle(batch, stuck);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.forEach(q -> queued.remove(q.transferId()));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Settle the batch as a whole, retried so that later transfers of the lane cannot overtake it. If it
+     * still fails, settle item by item. Transfers skipped here stay INITIATED, and the sweep queues them again
+     * behind the stuck transfer, oldest first.
+     */
+    private void settle(List<Queued> batch, Map<Long, String> stuck) throws InterruptedException {
+        List<Queued> ready = new ArrayList<>();
+        Set<String> readyIds = new HashSet<>();
+        for (Queued q : batch) {
+            String blocker = stuck.get(q.fromWalletId());
+            if (blocker == null || blocker.equals(q.transferId()) || readyIds.contains(blocker)) {
+                ready.add(q);
+                readyIds.add(q.transferId());
+            }
+        }
+        if (ready.isEmpty()) return;
+        if (settleWithRetries(ready.stream().map(Queued::transferId).toList())) {
+            stuck.values().removeAll(readyIds);
+            return;
+        }
+
+        log.warn("settling {} transfers failed, settling them one by one", ready.size());
+        for (Queued q : ready) {
+            String blocker = stuck.get(q.fromWalletId());
+            if (blocker != null && !blocker.equals(q.transferId())) continue;
+            if (settleWithRetries(List.of(q.transferId()))) {
+                stuck.remove(q.fromWalletId());
+            } else {
+                log.error("transfer {} could not be settled; later transfers from wallet {} wait behind it",
+                        q.transferId(), q.fromWalletId());
+                stuck.put(q.fromWalletId(), q.transferId());
+            }
+        }
+    }
+
+    private boolean settleWithRetries(List<String> transferIds) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                walletService.settleInitiatedTransfers(transferIds);
+                return true;
+            } catch (RuntimeException ex) {
+                if (attempt == MAX_ATTEMPTS) {
+                    log.warn("settling {} transfers failed after {} attempts", transferIds.size(), attempt, ex);
+                    return false;
+                }
+                log.warn("settling {} transfers failed (attempt {}): {}", transferIds.size(), attempt, ex.getMessage());
+                Thread.sleep(100L * attempt);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.BalanceSnapshotProgress;
+import com.example.miniwallet.entity.WalletDailyBalance;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.BalanceSnapshotProgressRepository;
+import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.repository.WalletDailyBalanceRepository;
+import com.example.miniwallet.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-of-day balance snapshots. Once a day is over, its per-wallet net change is added to each
+ * wallet's previous closing balance, so closing a day only reads that day's transactions.
+ * A balance as of any instant is then the nearest earlier snapshot plus a range scan of the
+ * transactions after it, never a sum over the wallet's whole history.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceSnapshotService {
+
+    // lower bound of the range scan for wallets without any snapshot yet
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String NET_BY_WALLET_AND_DAY =
+            "SELECT wallet_id, DATE(created_at) AS balance_date, " +
+            "SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) AS net " +
+            "FROM transactions WHERE wallet_id BETWEEN ? AND ? AND status = 'SUCCESS' AND created_at < ? " +
+            "GROUP BY wallet_id, DATE(created_at) ORDER BY wallet_id, balance_date";
+
+    private static final String UPSERT_SNAPSHOT =
+            "INSERT INTO wallet_daily_balances (wallet_id, balance_date, net_change, closing_balance) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE net_change = VALUES(net_change), closing_balance = VALUES(closing_balance)";
+
+    // previous closing balance + the day's net change, for every wallet active that day
+    private static final String CLOSE_DAY =
+            "INSERT INTO wallet_daily_balances (wallet_id, balance_date, net_change, closing_balance) " +
+            "SELECT d.wallet_id, ?, d.net, d.net + COALESCE((SELECT s.closing_balance FROM wallet_daily_balances s " +
+            "  WHERE s.wallet_id = d.wallet_id AND s.balance_date < ? ORDER BY s.balance_date DESC LIMIT 1), 0) " +
+            "FROM (SELECT wallet_id, SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) AS net " +
+            "      FROM transactions WHERE status = 'SUCCESS' AND created_at >= ? AND created_at < ? " +
+            "      GROUP BY wallet_id) d " +
+            "ON DUPLICATE KEY UPDATE net_change = VALUES(net_change), closing_balance = VALUES(closing_balance)";
+
+    // async transfers count on the day they were created once they settle
+    private static final String OLDEST_INITIATED =
+            "SELECT MIN(created_at) FROM transactions WHERE status = 'INITIATED' AND created_at < ?";
+
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final WalletDailyBalanceRepository dailyBalanceRepository;
+    private final BalanceSnapshotProgressRepository progressRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wallet.snapshots.backfill-threads:4}")
+    private int backfillThreads;
+
+    @Value("${wallet.snapshots.backfill-chunk-size:500}")
+    private int backfillChunkSize;
+
+    public record BalanceAsOf(Long walletId, LocalDateTime asOf, BigDecimal balance, LocalDate snapshotDate) {
+    }
+
+    /** Balance including every successful transaction created at or before {@code asOf}. */
+    public BalanceAsOf balanceAsOf(Long walletId, LocalDateTime asOf) {
+        if (!walletRepository.existsById(walletId)) {
+            throw new ResourceNotFoundException("Wallet not found: " + walletId);
+        }
+        WalletDailyBalance snapshot = dailyBalanceRepository
+                .findFirstByWalletIdAndBalanceDateLessThanOrderByBalanceDateDesc(walletId, asOf.toLocalDate())
+                .orElse(null);
+        BigDecimal base = snapshot != null ? snapshot.getClosingBalance() : BigDecimal.ZERO;
+        LocalDateTime from = snapshot != null ? snapshot.getBalanceDate().plusDays(1).atStartOfDay() : BEGINNING;
+
+        BigDecimal delta = transactionRepository.sumNetChange(walletId, from, asOf);
+        return new BalanceAsOf(walletId, asOf, base.add(delta), snapshot != null ? snapshot.getBalanceDate() : null);
+    }
+
+    /**
+     * Close every finished day not yet closed. The first run backfills the whole history instead.
+     * Runs a few minutes after midnight so late writers (ledger flush) have landed. A day with async
+     * transfers still INITIATED stays open, as do the days after it, until a later run finds them settled.
+     */
+    @Scheduled(cron = "${wallet.snapshots.close-cron:0 5 0 * * *}")
+    public void closeFinishedDays() {
+        LocalDate finished = LocalDate.now().minusDays(1);
+        Timestamp oldestInitiated = jdbcTemplate.queryForObject(OLDEST_INITIATED, Timestamp.class,
+                Timestamp.valueOf(finished.plusDays(1).atStartOfDay()));
+        LocalDate lastFinishedDay = oldestInitiated == null ? finished
+                : oldestInitiated.toLocalDateTime().toLocalDate().minusDays(1);
+        if (lastFinishedDay.isBefore(finished)) {
+            log.info("balances from {} stay open until their initiated transfers settle", lastFinishedDay.plusDays(1));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            BalanceSnapshotProgress progress = progressRepository.findByIdWithLock(BalanceSnapshotProgress.ID)
+                    .orElseGet(() -> progressRepository.save(new BalanceSnapshotProgress(BalanceSnapshotProgress.ID, null)));
+            LocalDate closedThrough = progress.getClosedThrough();
+            if (closedThrough != null && !closedThrough.isBefore(lastFinishedDay)) {
+                return;
+            }
+            if (closedThrough == null) {
+                backfill(lastFinishedDay);
+            } else {
+                for (LocalDate day = closedThrough.plusDays(1); !day.isAfter(lastFinishedDay); day = day.plusDays(1)) {
+                    int wallets = jdbcTemplate.update(CLOSE_DAY, Date.valueOf(day), Date.valueOf(day),
+                            Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+                    log.info("closed balances of {} for {} wallets", day, wallets);
+                }
+            }
+            progress.setClosedThrough(lastFinishedDay);
+            progressRepository.save(progress);
+        });
+    }
+
+    /**
+     * Build snapshots for all history up to and including {@code through}. Wallets are split into id
+     * ranges processed in parallel; each range is one grouped scan of idx_tx_wallet_created whose daily
+     * nets are accumulated in order. Upserts make a re-run after a failure safe.
+     */
+    private void backfill(LocalDate through) {
+        Long maxWalletId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+        if (maxWalletId == null) {
+            return;
+        }
+        Timestamp end = Timestamp.valueOf(through.plusDays(1).atStartOfDay());
+        ExecutorService workers = Executors.newFixedThreadPool(backfillThreads);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long lo = 1; lo <= maxWalletId; lo += backfillChunkSize) {
+                long from = lo;
+                long to = Math.min(lo + backfillChunkSize - 1, maxWalletId);
+                chunks.add(workers.submit(() -> backfillRange(from, to, end)));
+            }
+            int rows = 0;
+            for (Future<Integer> chunk : chunks) {
+                rows += chunk.get();
+            }
+            log.info("backfilled {} daily balance rows through {}", rows, through);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("balance snapshot backfill interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("balance snapshot backfill failed", ex.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private int backfillRange(long fromWalletId, long toWalletId, Timestamp end) {
+        List<Object[]> rows = new ArrayList<>();
+        long[] currentWallet = {-1};
+        BigDecimal[] running = {BigDecimal.ZERO};
+        jdbcTemplate.query(NET_BY_WALLET_AND_DAY, rs -> {
+            long walletId = rs.getLong("wallet_id");
+            if (walletId != currentWallet[0]) {
+                currentWallet[0] = walletId;
+                running[0] = BigDecimal.ZERO;
+            }
+            BigDecimal net = rs.getBigDecimal("net");
+            running[0] = running[0].add(net);
+            rows.add(new Object[]{walletId, rs.getDate("balance_date"), net, running[0]});
+        }, fromWalletId, toWalletId, end);
+        jdbcTemplate.batchUpdate(UPSERT_SNAPSHOT, rows);
+        return rows.size();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.miniwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * How regular wallets are debited and credited, and what happens on a lock conflict.
+ *
+ * With {@code wallet.balance-update.mode=conditional} each change is one guarded UPDATE instead of
+ * SELECT ... FOR UPDATE followed by an UPDATE. When deadlocks and lock wait timeouts reach
+ * {@code fallback.conflict-rate} of the balance updates in a window, the policy switches to pessimistic
+ * row locks for {@code fallback.duration} and then tries conditional updates again.
+ *
+ * {@link #withRetry} re-runs a whole operation after a conflict with jittered exponential backoff.
+ */
+@Slf4j
+@Component
+public class BalanceUpdatePolicy {
+
+    private final boolean conditionalConfigured;
+    private final double fallbackConflictRate;
+    private final long fallbackMinSamples;
+    private final long windowNanos;
+    private final Duration fallbackDuration;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final MeterRegistry meterRegistry;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private volatile long windowStart = System.nanoTime();
+    private volatile boolean fallback;
+    private volatile long fallbackUntil;
+
+    public BalanceUpdatePolicy(@Value("${wallet.balance-update.mode:pessimistic}") String mode,
+                               @Value("${wallet.balance-update.fallback.conflict-rate:0.05}") double fallbackConflictRate,
+                               @Value("${wallet.balance-update.fallback.min-samples:100}") long fallbackMinSamples,
+                               @Value("${wallet.balance-update.fallback.window:PT10S}") Duration window,
+                               @Value("${wallet.balance-update.fallback.duration:PT1M}") Duration fallbackDuration,
+                               @Value("${wallet.balance-update.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${wallet.balance-update.retry.backoff:PT0.02S}") Duration backoff,
+                               @Value("${wallet.balance-update.retry.max-backoff:PT0.5S}") Duration maxBackoff,
+                               MeterRegistry meterRegistry) {
+        this.conditionalConfigured = "conditional".equalsIgnoreCase(mode);
+        this.fallbackConflictRate = fallbackConflictRate;
+        this.fallbackMinSamples = fallbackMinSamples;
+        this.windowNanos = window.toNanos();
+        this.fallbackDuration = fallbackDuration;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("miniwallet.wallet.balance_update.conditional", this, p -> p.useConditional() ? 1 : 0)
+                .description("1 while balance changes use guarded UPDATEs, 0 while they take row locks first")
+                .register(meterRegistry);
+    }
+
+    /** Whether the operation starting now should use the guarded UPDATE. */
+    public boolean useConditional() {
+        if (!conditionalConfigured) return false;
+        if (fallback && System.nanoTime() - fallbackUntil >= 0) {
+            fallback = false;
+            log.info("lock contention fallback over; balance changes use conditional updates again");
+        }
+        return !fallback;
+    }
+
+    /**
+     * Run {@code action}, re-running it after a deadlock or lock wait timeout. Only the outermost caller
+     * can retry: inside an existing transaction the conflict has already doomed it, so it is rethrown.
+     */
+    public <T> T withRetry(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            boolean conflict = false;
+            try {
+                return action.get();
+            } catch (PessimisticLockingFailureException ex) {
+                conflict = true;
+                Counter.builder("miniwallet.wallet.lock.conflicts")
+                        .description("Deadlocks and lock wait timeouts seen by wallet operations")
+                        .tag("reason", isDeadlock(ex) ? "deadlock" : "lock_timeout")
+                        .register(meterRegistry)
+                        .increment();
+                if (attempt >= maxAttempts) throw ex;
+                log.debug("lock conflict on attempt {} of {}, retrying: {}", attempt, maxAttempts, ex.getMostSpecificCause().getMessage());
+                if (!sleep(attempt)) throw ex;
+            } finally {
+                record(conflict);
+            }
+        }
+    }
+
+    /** MySQL reports a lost deadlock with SQLState 40001; anything else here is a lock wait timeout. */
+    public static boolean isDeadlock(PessimisticLockingFailureException ex) {
+        return ex.getMostSpecificCause() instanceof SQLException sql && "40001".equals(sql.getSQLState());
+    }
+
+    // "equal jitter": half the exponential delay fixed, half random, so retries of one collision spread out
+    private boolean sleep(int attempt) {
+        long cap = Math.min(maxBackoff.toMillis(), backoff.toMillis() << Math.min(attempt - 1, 20));
+        long delay = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void record(boolean conflict) {
+        attempts.increment();
+        if (conflict) conflicts.increment();
+        if (System.nanoTime() - windowStart >= windowNanos) {
+            closeWindow();
+        }
+    }
+
+    private synchronized void closeWindow() {
+        long now = System.nanoTime();
+        if (now - windowStart < windowNanos) return;
+        long total = attempts.sumThenReset();
+        long failed = conflicts.sumThenReset();
+        windowStart = now;
+        if (conditionalConfigured && !fallback && total >= fallbackMinSamples
+                && (double) failed / total >= fallbackConflictRate) {
+            fallbackUntil = now + fallbackDuration.toNanos();
+            fallback = true;
+            log.warn("lock conflicts on {} of {} balance updates; using pessimistic row locks for {}", failed, total, fallbackDuration);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Result of one item of {@link WalletService#transferBatch}: either the debit/credit pair
+ * that was written, or the reason the item was rejected.
+ */
+@Getter
+@AllArgsConstructor
+public class BatchTransferOutcome {
+
+    private final int index;
+    private final String transferId;
+    private final List<Transaction> transactions;
+    private final String error;
+
+    public static BatchTransferOutcome success(int index, String transferId, List<Transaction> transactions) {
+        return new BatchTransferOutcome(index, transferId, transactions, null);
+    }
+
+    public static BatchTransferOutcome failure(int index, String transferId, String error) {
+        return new BatchTransferOutcome(index, transferId, List.of(), error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -1,6 +1,7 @@
 // package com.example.miniwallet.service;
 package com.example.miniwallet.service;
 
+import com.example.miniwallet.config.SingleFlightCacheLoader;
 import com.example.miniwallet.entity.Customer;
 import com.example.miniwallet.exception.DuplicateResourceException;
 import com.example.miniwallet.exception.ResourceNotFoundException;
@@ -19,6 +20,7 @@ import java.util.Optional;
 public class CustomerService {
 
     private final CustomerRepository customerRepository;
+    private final SingleFlightCacheLoader cacheLoader;
 
     public Customer createCustomer(Customer customer) {
         if (customer.getEmail() == null || customer.getEmail().isBlank()) {
@@ -32,10 +34,9 @@ public class CustomerService {
         return customerRepository.save(customer);
     }
 
-    @Cacheable(value = "customers", key = "'customer_' + #id")
+    // concurrent misses for the same customer share one database load
     public Customer getById(Long id) {
-        return customerRepository.findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
+        return cacheLoader.get("customers", "customer_" + id, Customer.class, () -> load(id));
     }
 
     @Cacheable(value = "customers", key = "'customer_email_' + #email")
@@ -46,7 +47,7 @@ public class CustomerService {
     @Transactional
     @CachePut(value = "customers", key = "'customer_' + #id")
     public Customer updateCustomer(Long id, Customer incoming) {
-        Customer existing = getById(id);
+        Customer existing = load(id);
         if (incoming.getName() != null) existing.setName(incoming.getName());
         if (incoming.getEmail() != null && !incoming.getEmail().equals(existing.getEmail())) {
             if (customerRepository.existsByEmail(incoming.getEmail())) {
@@ -60,7 +61,12 @@ public class CustomerService {
     @Transactional
     @CacheEvict(value = "customers", key = "'customer_' + #id")
     public void deleteCustomer(Long id) {
-        Customer c = getById(id);
+        Customer c = load(id);
         customerRepository.delete(c);
     }
+
+    private Customer load(Long id) {
+        return customerRepository.findById(id)
+            .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
+    }
 }
@@ -0,0 +1,335 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.dto.DisbursementItemDto;
+import com.example.miniwallet.entity.Disbursement;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.DisbursementRepository;
+import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.repository.WalletRepository;
+import com.example.miniwallet.service.ledger.LedgerEngine;
+import com.example.miniwallet.service.outbox.OutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One-to-many payouts (cashback, campaigns) from a single source wallet.
+ *
+ * Items are paid in chunks in wallet id order. Each chunk is one DB transaction: the campaign row is
+ * locked, then the source and the chunk's destinations are locked together smaller id first (the same
+ * rule as every other path, so no deadlocks with concurrent transfers). The source is debited once with
+ * the chunk total, destinations are credited with batched inserts, and the chunk's items are marked
+ * PAID in the same transaction, which is what makes a resumed campaign never pay an item twice. A chunk
+ * that loses a deadlock or lock wait is retried like any other balance change before the campaign pauses.
+ *
+ * The campaign id is the transferId of every row it writes, so it is claimed in the same namespace as
+ * transfer ids: a campaign cannot reuse a processed transferId, and a later transfer cannot reuse it.
+ */
+@Slf4j
+@Service
+public class DisbursementService implements AutoCloseable {
+
+    private static final String INSERT_ITEM =
+            "INSERT INTO disbursement_items (campaign_id, wallet_id, amount, status) VALUES (?, ?, ?, 'PENDING')";
+
+    private static final String NEXT_CHUNK =
+            "SELECT id, wallet_id, amount FROM disbursement_items WHERE campaign_id = ? AND status = 'PENDING' " +
+            "ORDER BY wallet_id LIMIT ?";
+
+    private final WalletService walletService;
+    private final BalanceUpdatePolicy balanceUpdatePolicy;
+    private final IdempotencyService idempotencyService;
+    private final DisbursementRepository disbursementRepository;
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final RecentTransactionsService recentTransactions;
+    private final WalletBalanceCache balanceCache;
+    private final OutboxService outbox;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    private final int chunkSize;
+    private final ExecutorService workers;
+    // campaigns being paid on this node
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    public DisbursementService(WalletService walletService, BalanceUpdatePolicy balanceUpdatePolicy,
+                               IdempotencyService idempotencyService, DisbursementRepository disbursementRepository,
+                               WalletRepository walletRepository, TransactionRepository transactionRepository,
+                               RecentTransactionsService recentTransactions, WalletBalanceCache balanceCache,
+                               OutboxService outbox, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               ObjectProvider<LedgerEngine> ledgerEngine,
+                               @Value("${wallet.disbursement.chunk-size:500}") int chunkSize,
+                               @Value("${wallet.disbursement.workers:2}") int workers) {
+        this.walletService = walletService;
+        this.balanceUpdatePolicy = balanceUpdatePolicy;
+        this.idempotencyService = idempotencyService;
+        this.disbursementRepository = disbursementRepository;
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.recentTransactions = recentTransactions;
+        this.balanceCache = balanceCache;
+        this.outbox = outbox;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ledgerEngine = ledgerEngine;
+        this.chunkSize = chunkSize;
+        this.workers = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("disbursement-", 0).daemon().factory());
+    }
+
+    private record Item(long id, long walletId, Money amount) {
+    }
+
+    /** Register a campaign with all its items and start paying it in the background. */
+    public Disbursement create(String campaignId, Long sourceWalletId, String reference, List<DisbursementItemDto> items) {
+        if (ledgerEngine.getIfAvailable() != null) {
+            throw new BadRequestException("disbursements are not available with wallet.engine=ledger");
+        }
+        String id = campaignId == null || campaignId.isBlank() ? UUID.randomUUID().toString() : campaignId;
+        List<Item> normalized = new ArrayList<>(items.size());
+        Set<Long> destinations = new HashSet<>();
+        Money total = Money.ZERO;
+        for (DisbursementItemDto item : items) {
+            if (item.getWalletId().equals(sourceWalletId)) {
+                throw new BadRequestException("source wallet cannot be a destination: " + sourceWalletId);
+            }
+            if (!destinations.add(item.getWalletId())) {
+                throw new BadRequestException("wallet listed twice in campaign: " + item.getWalletId());
+            }
+            Money amt = WalletService.normalizeAmount(item.getAmount());
+            normalized.add(new Item(0, item.getWalletId(), amt));
+            total = total.plus(amt);
+        }
+        BigDecimal totalAmount = total.toBigDecimal();
+
+        Disbursement campaign = transactionTemplate.execute(status -> {
+            if (!walletRepository.existsById(sourceWalletId)) {
+                throw new ResourceNotFoundException("Wallet not found: " + sourceWalletId);
+            }
+            if (disbursementRepository.existsById(id)) {
+                throw new DuplicateResourceException("campaign already exists: " + id);
+            }
+            if (!idempotencyService.claim(IdempotencyService.transferKey(id), "DISBURSEMENT")) {
+                throw new DuplicateResourceException("transferId already processed: " + id);
+            }
+            Disbursement saved = disbursementRepository.save(Disbursement.builder()
+                    .campaignId(id)
+                    .sourceWalletId(sourceWalletId)
+                    .reference(reference)
+                    .status(Disbursement.Status.RUNNING)
+                    .totalItems(normalized.size())
+                    .totalAmount(totalAmount)
+                    .paidItems(0)
+                    .failedItems(0)
+                    .amountPaid(BigDecimal.ZERO)
+                    .processedAtStart(0)
+                    .createdAt(LocalDateTime.now())
+                    .startedAt(LocalDateTime.now())
+                    .build());
+            disbursementRepository.flush();
+            jdbcTemplate.batchUpdate(INSERT_ITEM, normalized, 1000, (ps, item) -> {
+                ps.setString(1, id);
+                ps.setLong(2, item.walletId());
+                ps.setBigDecimal(3, item.amount().toBigDecimal());
+            });
+            return saved;
+        });
+        launch(id);
+        return campaign;
+    }
+
+    /** Continue a paused campaign (e.g. after the source wallet was topped up) or one interrupted by a restart. */
+    public Disbursement resume(String campaignId) {
+        Disbursement campaign = transactionTemplate.execute(status -> {
+            Disbursement d = disbursementRepository.findByIdWithLock(campaignId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Campaign not found: " + campaignId));
+            if (d.getStatus() == Disbursement.Status.COMPLETED || d.getStatus() == Disbursement.Status.FAILED) {
+                throw new BadRequestException("campaign is already " + d.getStatus() + ": " + campaignId);
+            }
+            d.setStatus(Disbursement.Status.RUNNING);
+            d.setLastError(null);
+            d.setStartedAt(LocalDateTime.now());
+            d.setProcessedAtStart(d.getProcessedItems());
+            return disbursementRepository.save(d);
+        });
+        launch(campaignId);
+        return campaign;
+    }
+
+    public Disbursement get(String campaignId) {
+        return disbursementRepository.findById(campaignId)
+                .orElseThrow(() -> new ResourceNotFoundException("Campaign not found: " + campaignId));
+    }
+
+    /** Items processed per second since the campaign was last (re)started. */
+    public static Double throughput(Disbursement d) {
+        if (d.getStartedAt() == null) return null;
+        LocalDateTime end = d.getFinishedAt() != null ? d.getFinishedAt() : LocalDateTime.now();
+        double seconds = Math.max(Duration.between(d.getStartedAt(), end).toMillis() / 1000.0, 0.001);
+        return (d.getProcessedItems() - d.getProcessedAtStart()) / seconds;
+    }
+
+    // campaigns that were RUNNING when the node stopped carry on where their last chunk committed
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        disbursementRepository.findByStatus(Disbursement.Status.RUNNING).forEach(d -> launch(d.getCampaignId()));
+    }
+
+    private void launch(String campaignId) {
+        if (!active.add(campaignId)) return;
+        workers.submit(() -> {
+            try {
+                // chunk after chunk until the campaign completes or pauses
+                boolean more;
+                do {
+                    more = balanceUpdatePolicy.withRetry(() -> payChunk(campaignId));
+                } while (more);
+            } catch (RuntimeException ex) {
+                // retries are exhausted or the error is not a lock conflict; nothing of the chunk was committed
+                // and resume retries it
+                log.error("disbursement {} stopped", campaignId, ex);
+                pause(campaignId, "chunk failed: " + ex.getMessage());
+            } finally {
+                active.remove(campaignId);
+            }
+        });
+    }
+
+    /** Pay the next chunk; returns false once the campaign is no longer running. */
+    private boolean payChunk(String campaignId) {
+        Boolean more = transactionTemplate.execute(status -> {
+            Disbursement campaign = disbursementRepository.findByIdWithLock(campaignId).orElse(null);
+            if (campaign == null || campaign.getStatus() != Disbursement.Status.RUNNING) return false;
+
+            List<Item> items = jdbcTemplate.query(NEXT_CHUNK,
+                    (rs, i) -> new Item(rs.getLong(1), rs.getLong(2), Money.of(rs.getBigDecimal(3))), campaignId, chunkSize);
+            if (items.isEmpty()) {
+                campaign.setStatus(Disbursement.Status.COMPLETED);
+                campaign.setFinishedAt(LocalDateTime.now());
+                disbursementRepository.save(campaign);
+                log.info("disbursement {} completed: {} paid, {} failed, {} items/s", campaignId,
+                        campaign.getPaidItems(), campaign.getFailedItems(), String.format("%.0f", throughput(campaign)));
+                return false;
+            }
+
+            Long sourceId = campaign.getSourceWalletId();
+            SortedSet<Long> walletIds = new TreeSet<>();
+            walletIds.add(sourceId);
+            items.forEach(item -> walletIds.add(item.walletId()));
+            WalletService.LockedWallets locked = walletService.lockAll(walletIds);
+            Wallet source = locked.wallets().get(sourceId);
+            if (source == null) {
+                campaign.setStatus(Disbursement.Status.FAILED);
+                campaign.setLastError("source wallet no longer exists: " + sourceId);
+                campaign.setFinishedAt(LocalDateTime.now());
+                disbursementRepository.save(campaign);
+                return false;
+            }
+
+            List<Transaction> credits = new ArrayList<>();
+            List<Long> paid = new ArrayList<>();
+            List<Long> failed = new ArrayList<>();
+            Money chunkTotal = Money.ZERO;
+            boolean outOfFunds = false;
+            for (Item item : items) {
+                Wallet destination = locked.wallets().get(item.walletId());
+                if (destination == null) {
+                    failed.add(item.id());
+                    continue;
+                }
+                if (locked.balances().get(sourceId).isLessThan(item.amount())) {
+                    outOfFunds = true;
+                    break;
+                }
+                locked.balances().merge(sourceId, item.amount(), Money::minus);
+                locked.balances().merge(destination.getWalletId(), item.amount(), Money::plus);
+                chunkTotal = chunkTotal.plus(item.amount());
+                credits.add(WalletService.transferLeg(destination, source, Transaction.TransactionType.CREDIT, item.amount(),
+                        campaignId, campaign.getReference(),
+                        WalletService.isHot(destination) ? null : locked.balances().get(destination.getWalletId())));
+                paid.add(item.id());
+            }
+
+            if (!credits.isEmpty()) {
+                // one aggregate debit on the source for the whole chunk
+                List<Transaction> rows = new ArrayList<>(credits.size() + 1);
+                rows.add(WalletService.transferLeg(source, null, Transaction.TransactionType.DEBIT, chunkTotal,
+                        campaignId, campaign.getReference(),
+                        WalletService.isHot(source) ? null : locked.balances().get(sourceId)));
+                rows.addAll(credits);
+                walletService.writeBack(locked);
+                transactionRepository.saveAll(rows);
+                outbox.append(rows);
+                recentTransactions.recordAfterCommit(rows);
+                balanceCache.publishAfterCommit(locked.wallets().values());
+            }
+            markItems(paid, "PAID");
+            markItems(failed, "FAILED");
+
+            campaign.setPaidItems(campaign.getPaidItems() + paid.size());
+            campaign.setFailedItems(campaign.getFailedItems() + failed.size());
+            campaign.setAmountPaid(campaign.getAmountPaid().add(chunkTotal.toBigDecimal()));
+            if (outOfFunds) {
+                campaign.setStatus(Disbursement.Status.PAUSED);
+                campaign.setLastError("insufficient funds in source wallet: " + sourceId);
+            }
+            disbursementRepository.save(campaign);
+            log.debug("disbursement {}: {}/{} items processed, {} items/s", campaignId, campaign.getProcessedItems(),
+                    campaign.getTotalItems(), String.format("%.0f", throughput(campaign)));
+            return !outOfFunds;
+        });
+        return Boolean.TRUE.equals(more);
+    }
+
+    private void markItems(List<Long> itemIds, String status) {
+        if (itemIds.isEmpty()) return;
+        String placeholders = String.join(",", Collections.nCopies(itemIds.size(), "?"));
+        List<Object> args = new ArrayList<>(itemIds.size() + 1);
+        args.add(status);
+        args.addAll(itemIds);
+        jdbcTemplate.update("UPDATE disbursement_items SET status = ? WHERE id IN (" + placeholders + ")", args.toArray());
+    }
+
+    private void pause(String campaignId, String reason) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> disbursementRepository.findByIdWithLock(campaignId).ifPresent(d -> {
+                if (d.getStatus() != Disbursement.Status.RUNNING) return;
+                d.setStatus(Disbursement.Status.PAUSED);
+                d.setLastError(reason.length() > 255 ? reason.substring(0, 255) : reason);
+                disbursementRepository.save(d);
+            }));
+        } catch (RuntimeException ex) {
+            log.warn("could not pause disbursement {}: {}", campaignId, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
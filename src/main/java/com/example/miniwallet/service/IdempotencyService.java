@@ -0,0 +1,235 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.IdempotencyRecord;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.example.miniwallet.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Idempotency keys for money-moving calls.
+ *
+ * The first request with a key claims it with an INSERT IGNORE in the same DB transaction as the
+ * operation and stores the serialized response; retries replay that response without touching
+ * wallet rows. Completed responses are also kept in a small in-process map and in Redis so most
+ * retries never reach MySQL.
+ *
+ * Client keys and service claims share the table, so each kind keeps to its own prefix: header keys
+ * are stored as {@code hdr:<key>} and transfer ids as {@code transfer:<id>}. A client key can
+ * therefore never collide with a transfer claim; header keys that look like one are refused outright.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final String HEADER_KEY_PREFIX = "hdr:";
+    private static final String TRANSFER_KEY_PREFIX = "transfer:";
+
+    private static final String REDIS_PREFIX = "idem:";
+    private static final Duration REDIS_TTL = Duration.ofHours(24);
+    private static final int LOCAL_CAPACITY = 10_000;
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    // the Redis tier is skipped with a local cache store
+    @Value("${wallet.cache.store:redis}")
+    private String cacheStore;
+
+    private final Map<String, StoredResponse> local = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                    return size() > LOCAL_CAPACITY;
+                }
+            });
+
+    /**
+     * Run {@code action} at most once per key. Without a key the action simply runs.
+     */
+    public <T> ResponseEntity<T> execute(String key, String operation, Object request, HttpStatus status,
+                                         TypeReference<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return ResponseEntity.status(status).body(action.get());
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        if (key.startsWith(TRANSFER_KEY_PREFIX)) {
+            throw new BadRequestException(HEADER + " must not start with the reserved prefix " + TRANSFER_KEY_PREFIX);
+        }
+        String storedKey = HEADER_KEY_PREFIX + key;
+        String requestHash = hash(operation, request);
+
+        StoredResponse cached = lookupFront(storedKey);
+        if (cached != null) {
+            return replay(key, cached, operation, requestHash, responseType);
+        }
+
+        return transactionTemplate.execute(tx -> {
+            if (repository.claim(storedKey, operation, requestHash) == 0) {
+                IdempotencyRecord existing = repository.findById(storedKey)
+                        .orElseThrow(() -> new IllegalStateException("idempotency key vanished: " + key));
+                StoredResponse stored = new StoredResponse(existing.getOperation(), existing.getRequestHash(),
+                        existing.getResponseStatus(), existing.getResponseBody());
+                remember(storedKey, stored);
+                return replay(key, stored, operation, requestHash, responseType);
+            }
+
+            T body = action.get();
+            String json = write(body);
+            repository.complete(storedKey, status.value(), json);
+            StoredResponse stored = new StoredResponse(operation, requestHash, status.value(), json);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(storedKey, stored);
+                }
+            });
+            return ResponseEntity.status(status).body(body);
+        });
+    }
+
+    /** The claim key of a transfer id; header keys can never take this form. */
+    public static String transferKey(String transferId) {
+        return TRANSFER_KEY_PREFIX + transferId;
+    }
+
+    /** The transfer id a {@link #transferKey} was built from. */
+    public static String transferId(String transferKey) {
+        return transferKey.substring(TRANSFER_KEY_PREFIX.length());
+    }
+
+    /**
+     * Claim a key inside the caller's transaction; false when it was already claimed.
+     * Used for service-level keys such as transfer ids where there is no response to replay.
+     */
+    public boolean claim(String key, String operation) {
+        return repository.claim(key, operation, null) == 1;
+    }
+
+    /** Keys among {@code keys} that are already claimed. */
+    public Set<String> findClaimed(Collection<String> keys) {
+        if (keys.isEmpty()) return Set.of();
+        return repository.findAllById(keys).stream()
+                .map(IdempotencyRecord::getIdempotencyKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Claim several keys with one JDBC batch inside the caller's transaction. Any key that is
+     * already taken fails the insert, so callers check {@link #findClaimed} first; a key claimed by
+     * another request in between surfaces as a {@link DuplicateResourceException}.
+     */
+    public void claimAll(List<String> keys, String operation) {
+        if (keys.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO idempotency_keys (idem_key, operation, created_at) VALUES (?, ?, CURRENT_TIMESTAMP(6))",
+                    keys, keys.size(), (ps, key) -> {
+                        ps.setString(1, key);
+                        ps.setString(2, operation);
+                    });
+        } catch (DuplicateKeyException ex) {
+            throw new DuplicateResourceException("conflicting concurrent request");
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(String key, StoredResponse stored, String operation, String requestHash,
+                                         TypeReference<T> responseType) {
+        if (!operation.equals(stored.operation()) || !requestHash.equals(stored.requestHash())) {
+            throw new BadRequestException(HEADER + " was already used for a different request: " + key);
+        }
+        try {
+            T body = objectMapper.readValue(stored.body(), responseType);
+            return ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("stored idempotent response is unreadable: " + key, ex);
+        }
+    }
+
+    private StoredResponse lookupFront(String key) {
+        StoredResponse stored = local.get(key);
+        if (stored != null || !"redis".equalsIgnoreCase(cacheStore)) return stored;
+        try {
+            String json = redisTemplate.opsForValue().get(REDIS_PREFIX + key);
+            if (json == null) return null;
+            stored = objectMapper.readValue(json, StoredResponse.class);
+            local.put(key, stored);
+            return stored;
+        } catch (Exception ex) {
+            // the DB claim is authoritative; a cache failure only costs the fast path
+            log.warn("idempotency cache lookup failed for key {}: {}", key, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void remember(String key, StoredResponse stored) {
+        if (stored.body() == null) return;
+        local.put(key, stored);
+        if (!"redis".equalsIgnoreCase(cacheStore)) return;
+        try {
+            redisTemplate.opsForValue().set(REDIS_PREFIX + key, objectMapper.writeValueAsString(stored), REDIS_TTL);
+        } catch (Exception ex) {
+            log.warn("idempotency cache write failed for key {}: {}", key, ex.getMessage());
+        }
+    }
+
+    private String write(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("cannot serialize idempotent response", ex);
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException ex) {
+            throw new IllegalStateException("cannot fingerprint request", ex);
+        }
+    }
+
+    record StoredResponse(String operation, String requestHash, Integer status, String body) {
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.config.CompactCacheSerializer;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-wallet "recent activity" window: the newest {@value #WINDOW} transactions of a wallet kept in a
+ * Redis list (shared by all nodes) together with the wallet's total transaction count.
+ *
+ * Write paths append new rows after their DB transaction commits, so the first pages of history are
+ * always current and are served without touching MySQL. A missing window is rebuilt from the DB; a
+ * generation counter bumped by every append stops a rebuild from overwriting rows committed meanwhile.
+ * A rebuild can still read a row that committed but whose append has not run yet, so the window keeps
+ * the ids of its rows alongside it and an append skips rows that are already there.
+ */
+@Slf4j
+@Service
+public class RecentTransactionsService {
+
+    static final int WINDOW = 200;
+    private static final long TTL_SECONDS = 3600;
+
+    // KEYS: list, count, gen, ids  ARGV: window, ttl, then id/entry pairs (oldest first)
+    private static final RedisScript<Long> APPEND = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[3]) " +
+            "redis.call('EXPIRE', KEYS[3], ARGV[2]) " +
+            "if redis.call('EXISTS', KEYS[2]) == 0 then return 0 end " +
+            "local present = {} " +
+            "for _, id in ipairs(redis.call('LRANGE', KEYS[4], 0, -1)) do present[id] = true end " +
+            "local added = 0 " +
+            "for i = 3, #ARGV, 2 do " +
+            "  if not present[ARGV[i]] then " +
+            "    present[ARGV[i]] = true " +
+            "    redis.call('LPUSH', KEYS[4], ARGV[i]) " +
+            "    redis.call('LPUSH', KEYS[1], ARGV[i + 1]) " +
+            "    added = added + 1 " +
+            "  end " +
+            "end " +
+            "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[1]) - 1) " +
+            "redis.call('LTRIM', KEYS[4], 0, tonumber(ARGV[1]) - 1) " +
+            "redis.call('INCRBY', KEYS[2], added) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[4], ARGV[2]) " +
+            "return added", Long.class);
+
+    // KEYS: list, count, gen, ids  ARGV: expected gen, ttl, total count, then id/entry pairs (newest first)
+    private static final RedisScript<Long> POPULATE = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[3]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('DEL', KEYS[1], KEYS[4]) " +
+            "for i = 4, #ARGV, 2 do " +
+            "  redis.call('RPUSH', KEYS[4], ARGV[i]) " +
+            "  redis.call('RPUSH', KEYS[1], ARGV[i + 1]) " +
+            "end " +
+            "if #ARGV > 3 then " +
+            "  redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "  redis.call('EXPIRE', KEYS[4], ARGV[2]) " +
+            "end " +
+            "redis.call('SET', KEYS[2], ARGV[3], 'EX', ARGV[2]) " +
+            "return 1", Long.class);
+
+    // KEYS: list, count, gen, ids  ARGV: ttl
+    private static final RedisScript<Long> INVALIDATE = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[3]) " +
+            "redis.call('EXPIRE', KEYS[3], ARGV[1]) " +
+            "redis.call('DEL', KEYS[1], KEYS[2], KEYS[4]) " +
+            "return 1", Long.class);
+
+    private final TransactionRepository transactionRepository;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final CompactCacheSerializer codec = new CompactCacheSerializer(new GenericJackson2JsonRedisSerializer());
+    private final boolean enabled;
+
+    public RecentTransactionsService(TransactionRepository transactionRepository, RedisConnectionFactory connectionFactory,
+                                     @Value("${wallet.cache.store:redis}") String cacheStore) {
+        this.transactionRepository = transactionRepository;
+        // the window lives in Redis only; with a local cache store every read goes to the DB
+        this.enabled = "redis".equalsIgnoreCase(cacheStore);
+        this.redisTemplate = new RedisTemplate<>();
+        this.redisTemplate.setConnectionFactory(connectionFactory);
+        this.redisTemplate.setKeySerializer(RedisSerializer.string());
+        this.redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        this.redisTemplate.afterPropertiesSet();
+    }
+
+    /**
+     * Newest-first page served from the window, or empty when the page reaches beyond it
+     * (or Redis is unavailable) and the caller should query the DB.
+     */
+    public Optional<Page<Transaction>> findPage(Long walletId, Pageable pageable) {
+        if (!enabled || pageable.getOffset() + pageable.getPageSize() > WINDOW) {
+            return Optional.empty();
+        }
+        try {
+            byte[] count = redisTemplate.opsForValue().get(countKey(walletId));
+            if (count == null) {
+                return Optional.of(rebuild(walletId, pageable));
+            }
+            List<byte[]> raw = redisTemplate.opsForList()
+                    .range(listKey(walletId), pageable.getOffset(), pageable.getOffset() + pageable.getPageSize() - 1);
+            List<Transaction> content = new ArrayList<>();
+            if (raw != null) {
+                raw.forEach(bytes -> content.add((Transaction) codec.deserialize(bytes)));
+            }
+            // hot wallets commit on different shard rows, so appends can land slightly out of order
+            content.sort(Comparator.comparing(Transaction::getCreatedAt).reversed());
+            long total = Long.parseLong(new String(count, StandardCharsets.UTF_8));
+            return Optional.of(new PageImpl<>(content, pageable, total));
+        } catch (RuntimeException ex) {
+            log.warn("recent transactions window unavailable for wallet {}: {}", walletId, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Append the given rows to their wallets' windows once the surrounding DB transaction commits. */
+    public void recordAfterCommit(Collection<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) return;
+        List<Transaction> rows = List.copyOf(transactions);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(rows);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(rows);
+            }
+        });
+    }
+
+    /**
+     * Drop the windows of the given wallets once the surrounding DB transaction commits, for changes
+     * to rows already in them (status flips). The generation bump also voids rebuilds already in flight.
+     */
+    public void invalidateAfterCommit(Collection<Long> walletIds) {
+        if (!enabled || walletIds.isEmpty()) return;
+        List<Long> ids = List.copyOf(walletIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(ids);
+            }
+        });
+    }
+
+    private void invalidate(List<Long> walletIds) {
+        for (Long walletId : walletIds) {
+            try {
+                redisTemplate.execute(INVALIDATE, keys(walletId), bytes(TTL_SECONDS));
+            } catch (RuntimeException ex) {
+                log.warn("recent transactions invalidation failed for wallet {}: {}", walletId, ex.getMessage());
+            }
+        }
+    }
+
+    private void append(List<Transaction> rows) {
+        Map<Long, List<byte[]>> byWallet = new LinkedHashMap<>();
+        for (Transaction t : rows) {
+            List<byte[]> entries = byWallet.computeIfAbsent(t.getWallet().getWalletId(), id -> new ArrayList<>());
+            entries.add(t.getTransactionId().getBytes(StandardCharsets.UTF_8));
+            entries.add(codec.serialize(t));
+        }
+        byWallet.forEach((walletId, entries) -> {
+            try {
+                List<byte[]> args = new ArrayList<>(entries.size() + 2);
+                args.add(bytes(WINDOW));
+                args.add(bytes(TTL_SECONDS));
+                args.addAll(entries);
+                redisTemplate.execute(APPEND, keys(walletId), args.toArray());
+            } catch (RuntimeException ex) {
+                // drop the window so it is rebuilt from the DB instead of serving a gap
+                log.warn("recent transactions append failed for wallet {}: {}", walletId, ex.getMessage());
+                try {
+                    redisTemplate.delete(countKey(walletId));
+                } catch (RuntimeException ignored) {
+                    // Redis is down; readers fall back to the DB anyway
+                }
+            }
+        });
+    }
+
+    private Page<Transaction> rebuild(Long walletId, Pageable pageable) {
+        byte[] gen = redisTemplate.opsForValue().get(genKey(walletId));
+        Page<Transaction> newest = transactionRepository.findByWalletIdOrderByCreatedAtDesc(walletId, PageRequest.of(0, WINDOW));
+
+        List<byte[]> args = new ArrayList<>(2 * newest.getNumberOfElements() + 3);
+        args.add(gen != null ? gen : bytes(0));
+        args.add(bytes(TTL_SECONDS));
+        args.add(bytes(newest.getTotalElements()));
+        for (Transaction t : newest.getContent()) {
+            args.add(t.getTransactionId().getBytes(StandardCharsets.UTF_8));
+            args.add(codec.serialize(t));
+        }
+        redisTemplate.execute(POPULATE, keys(walletId), args.toArray());
+
+        List<Transaction> content = newest.getContent();
+        int from = (int) Math.min(pageable.getOffset(), content.size());
+        int to = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), content.size());
+        return new PageImpl<>(content.subList(from, to), pageable, newest.getTotalElements());
+    }
+
+    private static List<String> keys(Long walletId) {
+        return List.of(listKey(walletId), countKey(walletId), genKey(walletId), idsKey(walletId));
+    }
+
+    private static String listKey(Long walletId) {
+        return "recent-tx:{" + walletId + "}:list";
+    }
+
+    private static String countKey(Long walletId) {
+        return "recent-tx:{" + walletId + "}:count";
+    }
+
+    private static String genKey(Long walletId) {
+        return "recent-tx:{" + walletId + "}:gen";
+    }
+
+    private static String idsKey(Long walletId) {
+        return "recent-tx:{" + walletId + "}:ids";
+    }
+
+    private static byte[] bytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
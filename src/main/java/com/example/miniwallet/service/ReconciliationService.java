@@ -0,0 +1,281 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.ReconciliationMismatch;
+import com.example.miniwallet.entity.ReconciliationRange;
+import com.example.miniwallet.entity.ReconciliationRun;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.ReconciliationMismatchRepository;
+import com.example.miniwallet.repository.ReconciliationRangeRepository;
+import com.example.miniwallet.repository.ReconciliationRunRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Proves that every wallet's stored balance (row plus hot shards) equals the net of its successful
+ * CREDIT/DEBIT rows. The wallet id space is cut into ranges that are verified concurrently on
+ * virtual threads, with a semaphore bounding how many hit the database at once. Each range is one
+ * snapshot read of two index range scans instead of a full-table GROUP BY, and is checkpointed when
+ * done, so an interrupted run resumes where it stopped.
+ *
+ * Incremental runs only look at wallets updated since the previous completed run started (hot
+ * wallets always, since credits to them only touch shard rows).
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+
+    // updated_at is written by the application clock and by MySQL's; tolerate some skew between them
+    private static final Duration CLOCK_SKEW_MARGIN = Duration.ofMinutes(5);
+
+    private static final String WALLET_BALANCES =
+            "SELECT w.id, w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_balance_shards s WHERE s.wallet_id = w.id), 0) " +
+            "FROM wallets w WHERE w.id BETWEEN ? AND ?";
+
+    private static final String CHANGED_ONLY = " AND (w.updated_at >= ? OR w.shard_count > 1)";
+
+    // pinned to the wallet index: status has three values, and a planner that picks idx_tx_status instead
+    // reads every SUCCESS row once per range (H2 does, and the full run turns quadratic)
+    private static final String LEDGER_NET =
+            "SELECT wallet_id, SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) " +
+            "FROM transactions USE INDEX (idx_tx_wallet_created) WHERE status = 'SUCCESS' AND wallet_id ";
+
+    private static final String INSERT_RANGE =
+            "INSERT INTO reconciliation_ranges (run_id, range_start, range_end, done) VALUES (?, ?, ?, false)";
+
+    private final ReconciliationRunRepository runRepository;
+    private final ReconciliationRangeRepository rangeRepository;
+    private final ReconciliationMismatchRepository mismatchRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final TransactionTemplate snapshotRead;
+    private final AtomicBoolean active = new AtomicBoolean();
+
+    @Value("${wallet.reconciliation.range-size:1000}")
+    private int rangeSize;
+
+    @Value("${wallet.reconciliation.db-concurrency:4}")
+    private int dbConcurrency;
+
+    public ReconciliationService(ReconciliationRunRepository runRepository, ReconciliationRangeRepository rangeRepository,
+                                 ReconciliationMismatchRepository mismatchRepository, JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager) {
+        this.runRepository = runRepository;
+        this.rangeRepository = rangeRepository;
+        this.mismatchRepository = mismatchRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        // wallet balances and transaction sums of a range must come from the same consistent snapshot
+        this.snapshotRead = new TransactionTemplate(transactionManager);
+        this.snapshotRead.setReadOnly(true);
+        this.snapshotRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    private record RangeResult(int walletsChecked, List<ReconciliationMismatch> mismatches) {
+    }
+
+    /**
+     * Resume the latest run if it did not complete, otherwise start a new one ({@code full} checks
+     * every wallet instead of the changed ones). The work continues in the background.
+     */
+    public ReconciliationRun start(boolean full) {
+        if (!active.compareAndSet(false, true)) {
+            throw new DuplicateResourceException("a reconciliation run is already in progress");
+        }
+        try {
+            ReconciliationRun run = runRepository.findFirstByOrderByRunIdDesc()
+                    .filter(r -> r.getStatus() != ReconciliationRun.Status.COMPLETED)
+                    .orElseGet(() -> createRun(full));
+            Thread.ofPlatform().name("reconciliation-" + run.getRunId()).start(() -> {
+                try {
+                    execute(run);
+                } finally {
+                    active.set(false);
+                }
+            });
+            return run;
+        } catch (RuntimeException ex) {
+            active.set(false);
+            throw ex;
+        }
+    }
+
+    @Scheduled(cron = "${wallet.reconciliation.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        try {
+            start(false);
+        } catch (DuplicateResourceException ex) {
+            log.info("scheduled reconciliation skipped: {}", ex.getMessage());
+        }
+    }
+
+    public ReconciliationRun getRun(Long runId) {
+        return runRepository.findById(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reconciliation run not found: " + runId));
+    }
+
+    public Page<ReconciliationMismatch> getMismatches(Long runId, Pageable pageable) {
+        getRun(runId);
+        return mismatchRepository.findByRunIdOrderByWalletId(runId, pageable);
+    }
+
+    private ReconciliationRun createRun(boolean full) {
+        LocalDateTime changedSince = full ? null : runRepository
+                .findFirstByStatusOrderByRunIdDesc(ReconciliationRun.Status.COMPLETED)
+                .map(r -> r.getStartedAt().minus(CLOCK_SKEW_MARGIN))
+                .orElse(null);
+        Long maxWalletId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+
+        return writeTemplate.execute(status -> {
+            ReconciliationRun run = runRepository.save(ReconciliationRun.builder()
+                    .status(ReconciliationRun.Status.RUNNING)
+                    .startedAt(LocalDateTime.now())
+                    .changedSince(changedSince)
+                    .rangeSize(rangeSize)
+                    .walletsChecked(0L)
+                    .mismatches(0L)
+                    .build());
+            List<Object[]> ranges = new ArrayList<>();
+            long last = maxWalletId != null ? maxWalletId : 0;
+            for (long lo = 1; lo <= last; lo += rangeSize) {
+                ranges.add(new Object[]{run.getRunId(), lo, Math.min(lo + rangeSize - 1, last)});
+            }
+            jdbcTemplate.batchUpdate(INSERT_RANGE, ranges);
+            return run;
+        });
+    }
+
+    private void execute(ReconciliationRun run) {
+        List<ReconciliationRange> pending = rangeRepository.findByRunIdAndDoneFalseOrderByRangeStart(run.getRunId());
+        log.info("reconciliation run {} checking {} ranges ({})", run.getRunId(), pending.size(),
+                run.getChangedSince() == null ? "full" : "wallets changed since " + run.getChangedSince());
+
+        // virtual threads are cheap to park; the semaphore is what bounds load on the database
+        Semaphore dbPermits = new Semaphore(dbConcurrency);
+        long started = System.nanoTime();
+        boolean failed = false;
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (ReconciliationRange range : pending) {
+                tasks.add(pool.submit(() -> {
+                    dbPermits.acquireUninterruptibly();
+                    try {
+                        checkRange(run, range);
+                    } finally {
+                        dbPermits.release();
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException ex) {
+                    failed = true;
+                    log.error("reconciliation run {} range failed", run.getRunId(), ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+
+        long checked = rangeRepository.sumWalletsChecked(run.getRunId());
+        long mismatches = rangeRepository.sumMismatches(run.getRunId());
+        run.setStatus(failed ? ReconciliationRun.Status.FAILED : ReconciliationRun.Status.COMPLETED);
+        run.setFinishedAt(failed ? null : LocalDateTime.now());
+        run.setWalletsChecked(checked);
+        run.setMismatches(mismatches);
+        runRepository.save(run);
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 0.001);
+        log.info("reconciliation run {} {}: {} wallets checked, {} mismatches, {} ranges in {}s",
+                run.getRunId(), run.getStatus(), checked, mismatches, pending.size(), String.format("%.1f", seconds));
+    }
+
+    private void checkRange(ReconciliationRun run, ReconciliationRange range) {
+        RangeResult result = snapshotRead.execute(status -> {
+            Map<Long, BigDecimal> balances = new LinkedHashMap<>();
+            List<Object> args = new ArrayList<>(List.of(range.getRangeStart(), range.getRangeEnd()));
+            String walletSql = WALLET_BALANCES;
+            if (run.getChangedSince() != null) {
+                walletSql += CHANGED_ONLY;
+                args.add(run.getChangedSince());
+            }
+            jdbcTemplate.query(walletSql, rs -> {
+                balances.put(rs.getLong(1), rs.getBigDecimal(2));
+            }, args.toArray());
+            if (balances.isEmpty()) {
+                return new RangeResult(0, List.of());
+            }
+
+            // a full run scans the whole id range; an incremental one only the wallets that changed
+            Map<Long, BigDecimal> ledger = new HashMap<>();
+            if (run.getChangedSince() == null) {
+                jdbcTemplate.query(LEDGER_NET + "BETWEEN ? AND ? GROUP BY wallet_id",
+                        rs -> {
+                            ledger.put(rs.getLong(1), rs.getBigDecimal(2));
+                        }, range.getRangeStart(), range.getRangeEnd());
+            } else {
+                String placeholders = String.join(",", Collections.nCopies(balances.size(), "?"));
+                jdbcTemplate.query(LEDGER_NET + "IN (" + placeholders + ") GROUP BY wallet_id",
+                        rs -> {
+                            ledger.put(rs.getLong(1), rs.getBigDecimal(2));
+                        }, balances.keySet().toArray());
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<ReconciliationMismatch> mismatches = new ArrayList<>();
+            balances.forEach((walletId, balance) -> {
+                BigDecimal net = ledger.getOrDefault(walletId, BigDecimal.ZERO);
+                if (balance.compareTo(net) != 0) {
+                    mismatches.add(ReconciliationMismatch.builder()
+                            .runId(run.getRunId())
+                            .walletId(walletId)
+                            .walletBalance(balance)
+                            .ledgerBalance(net)
+                            .difference(balance.subtract(net))
+                            .detectedAt(now)
+                            .build());
+                }
+            });
+            return new RangeResult(balances.size(), mismatches);
+        });
+
+        writeTemplate.executeWithoutResult(status -> {
+            mismatchRepository.saveAll(result.mismatches());
+            range.setDone(true);
+            range.setWalletsChecked(result.walletsChecked());
+            range.setMismatches(result.mismatches().size());
+            range.setCheckedAt(LocalDateTime.now());
+            rangeRepository.save(range);
+        });
+        if (!result.mismatches().isEmpty()) {
+            log.warn("reconciliation run {}: {} mismatches in wallets {}-{}", run.getRunId(),
+                    result.mismatches().size(), range.getRangeStart(), range.getRangeEnd());
+        }
+    }
+}
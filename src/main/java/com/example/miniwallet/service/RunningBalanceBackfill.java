@@ -0,0 +1,261 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.entity.WalletBalanceShard;
+import com.example.miniwallet.repository.WalletBalanceShardRepository;
+import com.example.miniwallet.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fills {@code transactions.balance_after} where it is missing: rows written before the column
+ * existed, and hot-wallet rows, whose writers only lock one balance shard.
+ *
+ * A wallet's rows are walked newest first from the current balance, subtracting each successful
+ * entry, which keeps the result consistent with the stored balance even where the opening balance was
+ * seeded without transaction rows. Only the first page is read under the locks a balance change takes
+ * (wallet row, then all its shards): rows committed after it are newer than anything the walk visits,
+ * so the remaining pages run in short transactions of their own without locks. The startup pass
+ * checkpoints each page in {@code balance_after_backfill} and the wallet ids it has scanned in
+ * {@code balance_after_backfill_state}, so a restart resumes instead of starting over.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RunningBalanceBackfill {
+
+    private static final String WALLETS_WITH_GAPS =
+            "SELECT DISTINCT wallet_id FROM transactions WHERE wallet_id BETWEEN ? AND ? AND balance_after IS NULL";
+
+    private static final String NEWEST_FIRST =
+            "SELECT id, amount, type, status, balance_after, created_at FROM transactions WHERE wallet_id = ? ";
+
+    private static final String KEYSET =
+            "AND (created_at < ? OR (created_at = ? AND id < ?)) ";
+
+    private static final String ORDER =
+            "ORDER BY created_at DESC, id DESC LIMIT ?";
+
+    private static final String UPDATE_BALANCE_AFTER = "UPDATE transactions SET balance_after = ? WHERE id = ?";
+
+    private static final String LOAD_PROGRESS =
+            "SELECT before_created_at, before_id, balance FROM balance_after_backfill WHERE wallet_id = ?";
+
+    private static final String SAVE_PROGRESS =
+            "INSERT INTO balance_after_backfill (wallet_id, before_created_at, before_id, balance) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE before_created_at = VALUES(before_created_at), before_id = VALUES(before_id), " +
+            "balance = VALUES(balance)";
+
+    private static final String SAVE_SCANNED_THROUGH =
+            "INSERT INTO balance_after_backfill_state (id, scanned_through) VALUES (1, ?) " +
+            "ON DUPLICATE KEY UPDATE scanned_through = VALUES(scanned_through)";
+
+    private final WalletRepository walletRepository;
+    private final WalletBalanceShardRepository shardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wallet.balance-after.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${wallet.balance-after.backfill-threads:4}")
+    private int backfillThreads;
+
+    @Value("${wallet.balance-after.backfill-chunk-size:500}")
+    private int backfillChunkSize;
+
+    @Value("${wallet.balance-after.page-size:1000}")
+    private int pageSize;
+
+    private record Row(byte[] id, BigDecimal amount, String type, String status, BigDecimal balanceAfter, Timestamp createdAt) {
+
+        BigDecimal delta() {
+            if (!"SUCCESS".equals(status)) return BigDecimal.ZERO;
+            return "CREDIT".equals(type) ? amount : amount.negate();
+        }
+    }
+
+    /** Where a walk stands: the rows older than (createdAt, id) are next, the newest of them ends at {@code balance}. */
+    private record Cursor(Timestamp createdAt, byte[] id, BigDecimal balance) {
+    }
+
+    private record Step(int written, Cursor next) {
+    }
+
+    // runs off the startup thread; wallets are locked one page at a time, so traffic keeps flowing meanwhile
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!backfillOnStartup) return;
+        Thread.ofPlatform().name("balance-after-backfill").daemon().start(() -> {
+            try {
+                backfillAll();
+            } catch (RuntimeException ex) {
+                log.error("balance_after backfill failed", ex);
+            }
+        });
+    }
+
+    /** Hot wallets accumulate rows without balance_after; fill the newest ones periodically. */
+    @Scheduled(fixedDelayString = "${wallet.balance-after.hot-wallet-interval:PT1M}")
+    public void fillHotWallets() {
+        List<Long> hotWallets = jdbcTemplate.queryForList("SELECT id FROM wallets WHERE shard_count > 1", Long.class);
+        for (Long walletId : hotWallets) {
+            try {
+                // missing values there are always the newest rows, so the walk stops at the first correct one
+                fillWallet(walletId, true, false);
+            } catch (RuntimeException ex) {
+                log.warn("balance_after fill failed for hot wallet {}: {}", walletId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wallet id ranges not scanned yet are scanned in parallel; each wallet with gaps is then rewritten
+     * in full. Walks a previous run left unfinished are completed first.
+     */
+    public void backfillAll() {
+        int rows = 0;
+        // their remaining rows may all be set already, so the gap scan would not find them again
+        for (Long walletId : jdbcTemplate.queryForList("SELECT wallet_id FROM balance_after_backfill", Long.class)) {
+            rows += fillWallet(walletId, false, true);
+        }
+
+        Long maxWalletId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+        List<Long> scanned = jdbcTemplate.queryForList("SELECT scanned_through FROM balance_after_backfill_state", Long.class);
+        long scannedThrough = scanned.isEmpty() ? 0 : scanned.get(0);
+        if (maxWalletId == null || scannedThrough >= maxWalletId) {
+            log.info("balance_after backfill updated {} transactions", rows);
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(backfillThreads);
+        try {
+            List<Long> rangeEnds = new ArrayList<>();
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long lo = scannedThrough + 1; lo <= maxWalletId; lo += backfillChunkSize) {
+                long from = lo;
+                long to = Math.min(lo + backfillChunkSize - 1, maxWalletId);
+                rangeEnds.add(to);
+                chunks.add(workers.submit(() -> {
+                    int written = 0;
+                    for (Long walletId : jdbcTemplate.queryForList(WALLETS_WITH_GAPS, Long.class, from, to)) {
+                        written += fillWallet(walletId, false, true);
+                    }
+                    return written;
+                }));
+            }
+            // ranges are checkpointed in order, so the stored id never skips one still running
+            for (int i = 0; i < chunks.size(); i++) {
+                rows += chunks.get(i).get();
+                jdbcTemplate.update(SAVE_SCANNED_THROUGH, rangeEnds.get(i));
+            }
+            log.info("balance_after backfill updated {} transactions", rows);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("balance_after backfill failed", ex.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Walk one wallet a page per transaction. With {@code resumable} the walk continues from and
+     * records its position in {@code balance_after_backfill}.
+     *
+     * @return number of rows whose balance_after was written
+     */
+    int fillWallet(Long walletId, boolean stopAtFirstMatch, boolean resumable) {
+        Cursor cursor = resumable ? loadProgress(walletId) : null;
+        int written = 0;
+        while (true) {
+            Cursor from = cursor;
+            Step step = transactionTemplate.execute(status -> fillPage(walletId, from, stopAtFirstMatch, resumable));
+            if (step == null) return written;
+            written += step.written();
+            if (step.next() == null) return written;
+            cursor = step.next();
+        }
+    }
+
+    private Step fillPage(Long walletId, Cursor from, boolean stopAtFirstMatch, boolean resumable) {
+        BigDecimal running;
+        List<Row> page;
+        if (from == null) {
+            // same lock order as a balance change: wallet row, then its shards in shard_no order
+            Wallet wallet = walletRepository.findByIdWithLock(walletId).orElse(null);
+            if (wallet == null) {
+                if (resumable) jdbcTemplate.update("DELETE FROM balance_after_backfill WHERE wallet_id = ?", walletId);
+                return null;
+            }
+            running = wallet.getBalance().toBigDecimal();
+            if (wallet.getShardCount() != null && wallet.getShardCount() > 1) {
+                for (WalletBalanceShard shard : shardRepository.findAllByWalletIdWithLock(walletId)) {
+                    running = running.add(shard.getBalance().toBigDecimal());
+                }
+            }
+            page = jdbcTemplate.query(NEWEST_FIRST + ORDER, this::mapRow, walletId, pageSize);
+        } else {
+            running = from.balance();
+            page = jdbcTemplate.query(NEWEST_FIRST + KEYSET + ORDER, this::mapRow,
+                    walletId, from.createdAt(), from.createdAt(), from.id(), pageSize);
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        boolean done = page.size() < pageSize;
+        for (Row row : page) {
+            boolean correct = row.balanceAfter() != null && row.balanceAfter().compareTo(running) == 0;
+            if (correct && stopAtFirstMatch) {
+                done = true;
+                break;
+            }
+            if (!correct) {
+                updates.add(new Object[]{running, row.id()});
+            }
+            running = running.subtract(row.delta());
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE_AFTER, updates);
+        }
+
+        Row last = done ? null : page.get(page.size() - 1);
+        Cursor next = last == null ? null : new Cursor(last.createdAt(), last.id(), running);
+        if (resumable) {
+            if (next == null) {
+                jdbcTemplate.update("DELETE FROM balance_after_backfill WHERE wallet_id = ?", walletId);
+            } else {
+                jdbcTemplate.update(SAVE_PROGRESS, walletId, next.createdAt(), next.id(), next.balance());
+            }
+        }
+        return new Step(updates.size(), next);
+    }
+
+    private Cursor loadProgress(Long walletId) {
+        List<Cursor> progress = jdbcTemplate.query(LOAD_PROGRESS, (rs, rowNum) -> new Cursor(
+                rs.getTimestamp("before_created_at"), rs.getBytes("before_id"), rs.getBigDecimal("balance")), walletId);
+        return progress.isEmpty() ? null : progress.get(0);
+    }
+
+    private Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Row(rs.getBytes("id"), rs.getBigDecimal("amount"), rs.getString("type"), rs.getString("status"),
+                rs.getBigDecimal("balance_after"), rs.getTimestamp("created_at"));
+    }
+}
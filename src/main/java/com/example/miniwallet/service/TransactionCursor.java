@@ -0,0 +1,43 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a wallet's newest-first transaction history: the (createdAt, id) of the last row
+ * returned. Exposed to clients only in its opaque encoded form.
+ */
+public record TransactionCursor(LocalDateTime createdAt, String id) {
+
+    /** Sorts after every real row, so the first page uses the same seek query as the others. */
+    public static final TransactionCursor START = new TransactionCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+            "ffffffff-ffff-ffff-ffff-ffffffffffff");
+
+    public static TransactionCursor after(Transaction t) {
+        return new TransactionCursor(t.getCreatedAt(), t.getTransactionId());
+    }
+
+    public static TransactionCursor decode(String encoded) {
+        if (encoded == null || encoded.isBlank()) return START;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) throw new IllegalArgumentException("missing separator");
+            String id = UUID.fromString(raw.substring(sep + 1)).toString();
+            return new TransactionCursor(LocalDateTime.parse(raw.substring(0, sep)), id);
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.WalletRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a wallet's full statement straight from a forward-only JDBC result set to the response.
+ * MySQL Connector/J streams rows one at a time when the fetch size is Integer.MIN_VALUE (the default of
+ * {@code wallet.export.fetch-size}), so memory stays constant no matter how many rows the wallet has.
+ */
+@Slf4j
+@Service
+public class TransactionExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String CSV_HEADER = "id,walletId,amount,type,status,transferId,relatedWalletId,reference,createdAt,balanceAfter";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final WalletRepository walletRepository;
+    private final ObjectMapper objectMapper;
+
+    // other drivers (H2 in tests) reject a negative fetch size and need a positive one
+    public TransactionExportService(DataSource dataSource, WalletRepository walletRepository, ObjectMapper objectMapper,
+                                    @Value("${wallet.export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.walletRepository = walletRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("unsupported export format: " + format);
+        }
+    }
+
+    // checked before the response is committed, so a missing wallet is still a clean 404
+    public void ensureWalletExists(Long walletId) {
+        if (!walletRepository.existsById(walletId)) {
+            throw new ResourceNotFoundException("Wallet not found: " + walletId);
+        }
+    }
+
+    /** Write every transaction of the wallet in [start, end), oldest first. Returns the number of rows written. */
+    public long export(Long walletId, LocalDateTime start, LocalDateTime end, Format format, boolean gzip,
+                       OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, wallet_id, amount, type, status, transfer_id, related_wallet_id, reference, created_at, balance_after " +
+                "FROM transactions WHERE wallet_id = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(walletId);
+        if (start != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(start));
+        }
+        if (end != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(end));
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = format == Format.NDJSON ? objectMapper.getFactory().createGenerator(writer) : null;
+        long[] rows = {0};
+
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try {
+            streamingJdbcTemplate.execute(sql.toString(), (PreparedStatementCallback<Void>) ps -> {
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        try {
+                            if (json != null) {
+                                writeJson(json, rs);
+                                json.flush();
+                                writer.write('\n');
+                            } else {
+                                writeCsv(writer, rs);
+                            }
+                            rows[0]++;
+                        } catch (IOException ex) {
+                            // client went away. Closing a streaming result set reads every remaining row first,
+                            // so have the server abort the query (KILL QUERY) before it is closed
+                            ps.cancel();
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        writer.flush();
+        if (target instanceof GZIPOutputStream gz) {
+            gz.finish();
+        }
+        log.debug("exported {} transactions for wallet {}", rows[0], walletId);
+        return rows[0];
+    }
+
+    private static void writeJson(JsonGenerator json, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeStringField("id", UuidBinaryConverter.fromBytes(rs.getBytes("id")));
+        json.writeNumberField("walletId", rs.getLong("wallet_id"));
+        json.writeNumberField("amount", rs.getBigDecimal("amount"));
+        json.writeStringField("type", rs.getString("type"));
+        json.writeStringField("status", rs.getString("status"));
+        json.writeStringField("transferId", rs.getString("transfer_id"));
+        long related = rs.getLong("related_wallet_id");
+        if (rs.wasNull()) json.writeNullField("relatedWalletId"); else json.writeNumberField("relatedWalletId", related);
+        json.writeStringField("reference", rs.getString("reference"));
+        json.writeStringField("createdAt", rs.getTimestamp("created_at").toLocalDateTime().toString());
+        BigDecimal balanceAfter = rs.getBigDecimal("balance_after");
+        if (balanceAfter == null) json.writeNullField("balanceAfter"); else json.writeNumberField("balanceAfter", balanceAfter);
+        json.writeEndObject();
+    }
+
+    private static void writeCsv(Writer w, ResultSet rs) throws IOException, SQLException {
+        w.write(UuidBinaryConverter.fromBytes(rs.getBytes("id")));
+        w.write(',');
+        w.write(Long.toString(rs.getLong("wallet_id")));
+        w.write(',');
+        BigDecimal amount = rs.getBigDecimal("amount");
+        w.write(amount.toPlainString());
+        w.write(',');
+        w.write(rs.getString("type"));
+        w.write(',');
+        w.write(rs.getString("status"));
+        w.write(',');
+        writeCsvField(w, rs.getString("transfer_id"));
+        w.write(',');
+        long related = rs.getLong("related_wallet_id");
+        if (!rs.wasNull()) w.write(Long.toString(related));
+        w.write(',');
+        writeCsvField(w, rs.getString("reference"));
+        w.write(',');
+        w.write(rs.getTimestamp("created_at").toLocalDateTime().toString());
+        w.write(',');
+        BigDecimal balanceAfter = rs.getBigDecimal("balance_after");
+        if (balanceAfter != null) w.write(balanceAfter.toPlainString());
+        w.write('\n');
+    }
+
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        if (value == null) return;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
@@ -7,27 +7,40 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final RecentTransactionsService recentTransactions;
 
-    @Cacheable(value = "transactions", key = "'transaction_' + #id")
+    // INITIATED rows of async transfers change status later, so only final rows are cached
+    @Cacheable(value = "transactions", key = "'transaction_' + #id",
+            unless = "#result.status == T(com.example.miniwallet.entity.Transaction.TransactionStatus).INITIATED")
     public Transaction getById(String id) {
+        // ids are stored as BINARY(16), so anything that is not a UUID cannot exist
+        try {
+            UUID.fromString(id);
+        } catch (IllegalArgumentException ex) {
+            throw new ResourceNotFoundException("Transaction not found: " + id);
+        }
         return transactionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found: " + id));
     }
 
-    @Cacheable(value = "transactions", key = "'transactions_wallet_' + #walletId + '_' + #pageable.pageNumber + '_' + #pageable.pageSize")
+    // first pages come from the per-wallet recent window, which write paths keep current after commit
     public Page<Transaction> getByWalletId(Long walletId, Pageable pageable) {
-        return transactionRepository.findByWalletIdOrderByCreatedAtDesc(walletId, pageable);
+        return recentTransactions.findPage(walletId, pageable)
+                .orElseGet(() -> transactionRepository.findByWalletIdOrderByCreatedAtDesc(walletId, pageable));
     }
 
     public Page<Transaction> getByWalletIdAndStatus(Long walletId, Transaction.TransactionStatus status, Pageable pageable) {
@@ -42,6 +55,25 @@ public class TransactionService {
         return transactionRepository.findByWalletIdAndType(walletId, type, pageable);
     }
 
+    /**
+     * Keyset-paginated history: the page of rows after {@code cursor}, newest first, without a count query.
+     * Filters follow the same precedence as the offset endpoint (status, then type, then date range).
+     */
+    public Slice<Transaction> getByWalletIdAfter(Long walletId, TransactionCursor cursor, int size,
+                                                 Transaction.TransactionStatus status,
+                                                 Transaction.TransactionType type,
+                                                 LocalDateTime start, LocalDateTime end) {
+        Pageable limit = PageRequest.of(0, size);
+        if (status != null) {
+            return transactionRepository.findByWalletIdAndStatusBefore(walletId, status, cursor.createdAt(), cursor.id(), limit);
+        } else if (type != null) {
+            return transactionRepository.findByWalletIdAndTypeBefore(walletId, type, cursor.createdAt(), cursor.id(), limit);
+        } else if (start != null && end != null) {
+            return transactionRepository.findByWalletIdAndDateRangeBefore(walletId, start, end, cursor.createdAt(), cursor.id(), limit);
+        }
+        return transactionRepository.findByWalletIdBefore(walletId, cursor.createdAt(), cursor.id(), limit);
+    }
+
     public List<Transaction> findByReference(String reference) {
         return transactionRepository.findByReference(reference);
     }
@@ -0,0 +1,151 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.config.VersionedCacheWriter;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code wallet_<id>} entries of the "wallets" cache. Money-moving methods publish the committed
+ * wallet state here after commit instead of evicting it, so a read that follows a write is a cache hit.
+ *
+ * Entries are versioned by the wallet row version plus the versions of its balance shards; both only
+ * grow with committed changes, so a write or a cache-miss load holding an older snapshot is dropped.
+ */
+@Slf4j
+@Component
+public class WalletBalanceCache {
+
+    static final String CACHE = "wallets";
+
+    private final CacheManager cacheManager;
+    private final VersionedCacheWriter writer;
+    private final WalletRepository walletRepository;
+    private final TransactionTemplate freshRead;
+
+    public WalletBalanceCache(CacheManager cacheManager, VersionedCacheWriter writer,
+                              WalletRepository walletRepository, PlatformTransactionManager transactionManager) {
+        this.cacheManager = cacheManager;
+        this.writer = writer;
+        this.walletRepository = walletRepository;
+        // after commit the caller's persistence context is still bound, so snapshots are read in their own transaction
+        this.freshRead = new TransactionTemplate(transactionManager);
+        this.freshRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.freshRead.setReadOnly(true);
+    }
+
+    public Wallet get(Long walletId) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE);
+            return cache != null ? cache.get(key(walletId), Wallet.class) : null;
+        } catch (RuntimeException ex) {
+            log.warn("wallet cache read failed for {}: {}", walletId, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cache a wallet that was just read outside a lock. Hot wallets are re-read as one snapshot of
+     * row and shards; the returned copy carries the total balance.
+     */
+    public Wallet load(Wallet wallet) {
+        Versioned current = committedState(wallet);
+        store(current);
+        return current.wallet();
+    }
+
+    /** Unversioned write, for balances that do not come from the database (ledger engine). */
+    public void put(Wallet wallet) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE);
+            if (cache != null) cache.put(key(wallet.getWalletId()), wallet);
+        } catch (RuntimeException ex) {
+            log.warn("wallet cache write failed for {}: {}", wallet.getWalletId(), ex.getMessage());
+        }
+    }
+
+    public void evict(Long walletId) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE);
+            if (cache != null) cache.evict(key(walletId));
+        } catch (RuntimeException ex) {
+            log.warn("wallet cache evict failed for {}: {}", walletId, ex.getMessage());
+        }
+    }
+
+    /** Write the state of wallets changed by the current transaction through to the cache once it commits. */
+    public void publishAfterCommit(Collection<Wallet> wallets) {
+        List<Wallet> changed = List.copyOf(wallets);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changed.forEach(this::load);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // the managed entities now hold the flushed balance and version. A hot wallet's total needs
+                // a fresh read, and the committing transaction still holds its connection here: borrowing a
+                // second one per request can exhaust the pool, so hot entries are evicted and reloaded on read
+                for (Wallet wallet : changed) {
+                    if (wallet.getShardCount() != null && wallet.getShardCount() > 1) {
+                        evict(wallet.getWalletId());
+                    } else {
+                        load(wallet);
+                    }
+                }
+            }
+        });
+    }
+
+    private Versioned committedState(Wallet wallet) {
+        if (wallet.getShardCount() == null || wallet.getShardCount() <= 1) {
+            return new Versioned(copyWithBalance(wallet, wallet.getBalance()), wallet.getVersion());
+        }
+        // other shards may have changed concurrently; sum row and shards in one statement
+        return freshRead.execute(status -> walletRepository.findBalanceSnapshot(wallet.getWalletId())
+                .map(snapshot -> new Versioned(copyWithBalance(wallet, Money.of(snapshot.getBalance())), snapshot.getVersion().longValue()))
+                .orElseGet(() -> new Versioned(copyWithBalance(wallet, wallet.getBalance()), wallet.getVersion())));
+    }
+
+    private void store(Versioned current) {
+        Long walletId = current.wallet().getWalletId();
+        try {
+            writer.putIfNewer(CACHE, key(walletId), current.wallet(), current.version());
+        } catch (RuntimeException ex) {
+            // never leave an entry behind that may be older than the database
+            log.warn("wallet cache write-through failed for {}: {}", walletId, ex.getMessage());
+            evict(walletId);
+        }
+    }
+
+    static Wallet copyWithBalance(Wallet wallet, Money balance) {
+        return Wallet.builder()
+                .walletId(wallet.getWalletId())
+                .customer(wallet.getCustomer())
+                .balance(balance)
+                .version(wallet.getVersion())
+                .shardCount(wallet.getShardCount())
+                .createdAt(wallet.getCreatedAt())
+                .updatedAt(wallet.getUpdatedAt())
+                .build();
+    }
+
+    static String key(Long walletId) {
+        return "wallet_" + walletId;
+    }
+
+    private record Versioned(Wallet wallet, long version) {
+    }
+}
@@ -1,27 +1,51 @@
 // package com.example.miniwallet.service;
 package com.example.miniwallet.service;
 
+import com.example.miniwallet.config.SingleFlightCacheLoader;
+import com.example.miniwallet.dto.TransferRequestDto;
 import com.example.miniwallet.entity.Transaction;
 import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.entity.WalletBalanceShard;
 import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Money;
 import com.example.miniwallet.exception.BadRequestException;
 import com.example.miniwallet.exception.InsufficientFundsException;
 import com.example.miniwallet.exception.ResourceNotFoundException;
 import com.example.miniwallet.exception.DuplicateResourceException;
 import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.repository.WalletBalanceShardRepository;
 import com.example.miniwallet.repository.WalletRepository;
 import com.example.miniwallet.repository.CustomerRepository;
+import com.example.miniwallet.service.ledger.LedgerEngine;
+import com.example.miniwallet.service.outbox.OutboxService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -30,11 +54,29 @@ public class WalletService {
     private final WalletRepository walletRepository;
     private final CustomerRepository customerRepository;
     private final TransactionRepository transactionRepository;
-
-    private static BigDecimal normalizeAmount(BigDecimal amount) {
+    private final WalletBalanceShardRepository shardRepository;
+    private final WalletBalanceCache balanceCache;
+    private final SingleFlightCacheLoader cacheLoader;
+    private final IdempotencyService idempotencyService;
+    private final RecentTransactionsService recentTransactions;
+    private final OutboxService outbox;
+    private final BalanceUpdatePolicy balanceUpdatePolicy;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    // present only when wallet.engine=ledger; otherwise balance changes go through row locks below
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+
+    private static final int MAX_SHARDS = 64;
+
+    static Money normalizeAmount(BigDecimal amount) {
         if (amount == null) throw new BadRequestException("amount is required");
-        BigDecimal scaled = amount.setScale(4, RoundingMode.HALF_UP);
-        if (scaled.compareTo(BigDecimal.ZERO) <= 0) {
+        Money scaled;
+        try {
+            scaled = Money.of(amount);
+        } catch (ArithmeticException ex) {
+            throw new BadRequestException("amount is out of range");
+        }
+        if (scaled.signum() <= 0) {
             throw new BadRequestException("amount must be > 0");
         }
         return scaled;
@@ -49,76 +91,104 @@ public class WalletService {
 
         Wallet wallet = Wallet.builder()
                 .customer(customer)
-                .balance(BigDecimal.ZERO.setScale(4, RoundingMode.HALF_UP))
+                .balance(Money.ZERO)
                 .build();
 
         return walletRepository.save(wallet);
     }
 
-    @Cacheable(value = "wallets", key = "'wallet_' + #id")
+    // cache-aside on wallet_<id>; loads go through the same version guard as the write-through after commit,
+    // and concurrent misses for the same wallet share one database load
     public Wallet getById(Long id) {
-        return walletRepository.findById(id)
+        String key = WalletBalanceCache.key(id);
+        Wallet cached = balanceCache.get(id);
+        if (cached != null) {
+            cacheLoader.maybeRefresh(WalletBalanceCache.CACHE, key, () -> loadWallet(id));
+            return cached;
+        }
+        return cacheLoader.load(WalletBalanceCache.CACHE, key, () -> loadWallet(id));
+    }
+
+    private Wallet loadWallet(Long id) {
+        Wallet wallet = walletRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + id));
+        if (ledgerEngine.getIfAvailable() != null) {
+            Wallet current = withCurrentBalance(wallet);
+            balanceCache.put(current);
+            return current;
+        }
+        return balanceCache.load(wallet);
     }
 
     @Cacheable(value = "wallets", key = "'wallet_customer_' + #customerId")
     public Optional<Wallet> findByCustomerId(Long customerId) {
-        return walletRepository.findByCustomerId(customerId);
+        return walletRepository.findByCustomerId(customerId).map(this::withCurrentBalance);
     }
 
     public List<Wallet> findAll() {
         return walletRepository.findAll();
     }
 
-    @Transactional
-    // Evict the wallet entry so subsequent getById fetches the updated balance from DB
-    @CacheEvict(value = "wallets", key = "'wallet_' + #walletId")
+    // not @Transactional: the ledger branch waits on the engine without holding a pooled connection,
+    // and the row-lock branch opens its own transaction (or joins the caller's)
     public Transaction deposit(Long walletId, BigDecimal amount, String reference) {
-        BigDecimal amt = normalizeAmount(amount);
+        Money amt = normalizeAmount(amount);
 
-        Wallet wallet = walletRepository.findByIdWithLock(walletId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
-
-        // update balance
-        wallet.setBalance(wallet.getBalance().add(amt));
-        walletRepository.save(wallet);
-
-        Transaction tx = Transaction.builder()
-                .wallet(wallet)
-                .amount(amt)
-                .type(Transaction.TransactionType.CREDIT)
-                .status(Transaction.TransactionStatus.SUCCESS)
-                .reference(reference)
-                .build();
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            Transaction tx = recorded(LedgerEngine.await(engine.deposit(walletId, amt, reference)));
+            balanceCache.evict(walletId);
+            return tx;
+        }
 
-        return transactionRepository.save(tx);
+        return transactionTemplate.execute(status -> {
+            // update balance
+            Wallet wallet = applyChange(walletId, amt, Transaction.TransactionType.CREDIT, balanceUpdatePolicy.useConditional());
+            // the committed balance replaces the cached one instead of evicting it
+            balanceCache.publishAfterCommit(List.of(wallet));
+
+            Transaction tx = Transaction.builder()
+                    .wallet(wallet)
+                    .amount(amt)
+                    .type(Transaction.TransactionType.CREDIT)
+                    .status(Transaction.TransactionStatus.SUCCESS)
+                    .reference(reference)
+                    .balanceAfter(balanceAfter(wallet))
+                    .build();
+
+            tx = transactionRepository.save(tx);
+            outbox.append(List.of(tx));
+            return recorded(tx);
+        });
     }
 
-    @Transactional
-    // Evict the wallet entry so subsequent getById fetches the updated balance from DB
-    @CacheEvict(value = "wallets", key = "'wallet_' + #walletId")
     public Transaction withdraw(Long walletId, BigDecimal amount, String reference) {
-        BigDecimal amt = normalizeAmount(amount);
-
-        Wallet wallet = walletRepository.findByIdWithLock(walletId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+        Money amt = normalizeAmount(amount);
 
-        if (wallet.getBalance().compareTo(amt) < 0) {
-            throw new InsufficientFundsException("insufficient balance in wallet: " + walletId);
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            Transaction tx = recorded(LedgerEngine.await(engine.withdraw(walletId, amt, reference)));
+            balanceCache.evict(walletId);
+            return tx;
         }
 
-        wallet.setBalance(wallet.getBalance().subtract(amt));
-        walletRepository.save(wallet);
-
-        Transaction tx = Transaction.builder()
-                .wallet(wallet)
-                .amount(amt)
-                .type(Transaction.TransactionType.DEBIT)
-                .status(Transaction.TransactionStatus.SUCCESS)
-                .reference(reference)
-                .build();
-
-        return transactionRepository.save(tx);
+        return transactionTemplate.execute(status -> {
+            Wallet wallet = applyChange(walletId, amt, Transaction.TransactionType.DEBIT, balanceUpdatePolicy.useConditional());
+            balanceCache.publishAfterCommit(List.of(wallet));
+
+            Transaction tx = Transaction.builder()
+                    .wallet(wallet)
+                    .amount(amt)
+                    .type(Transaction.TransactionType.DEBIT)
+                    .status(Transaction.TransactionStatus.SUCCESS)
+                    .reference(reference)
+                    .balanceAfter(balanceAfter(wallet))
+                    .build();
+
+            tx = transactionRepository.save(tx);
+            outbox.append(List.of(tx));
+            return recorded(tx);
+        });
     }
 
     /**
@@ -127,85 +197,618 @@ public class WalletService {
      *
      * Ensures ordered locking by wallet id to reduce deadlocks.
      */
-    @Transactional
-    // Evict affected wallets from unified 'wallets' cache so next getById fetches DB
-    @Caching(evict = {
-        @CacheEvict(value = "wallets", key = "'wallet_' + #fromWalletId"),
-        @CacheEvict(value = "wallets", key = "'wallet_' + #toWalletId")
-    })
     public List<Transaction> transfer(Long fromWalletId, Long toWalletId, BigDecimal amount, String transferId, String reference) {
         if (fromWalletId.equals(toWalletId)) {
             throw new BadRequestException("from and to wallet must be different");
         }
 
         // If client did not provide a transferId, generate one here (service-layer generation)
+        boolean clientTransferId = transferId != null && !transferId.isBlank();
+        String id = clientTransferId
+                ? transferId
+                // generate a plain UUID (36 chars including hyphens) so it fits the DB column length
+                : java.util.UUID.randomUUID().toString();
+
+        Money amt = normalizeAmount(amount);
+
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            // the engine claims a client-supplied id in the same journal entry as the debit
+            List<Transaction> legs = LedgerEngine.await(engine.transfer(fromWalletId, toWalletId, amt, id,
+                    clientTransferId, reference));
+            recentTransactions.recordAfterCommit(legs);
+            balanceCache.evict(fromWalletId);
+            balanceCache.evict(toWalletId);
+            return legs;
+        }
+
+        return transactionTemplate.execute(status -> {
+            // if client supplied transferId, claim it atomically (unique key, same DB transaction) to maintain idempotency;
+            // a concurrent retry blocks on the key until this transfer commits and then sees it as taken
+            if (clientTransferId && !idempotencyService.claim(IdempotencyService.transferKey(id), "TRANSFER")) {
+                throw new DuplicateResourceException("transferId already processed: " + id);
+            }
+
+            // lock order by id - always lock smaller id first
+            // (hot wallets lock one of their shard rows instead of the wallet row, in the same order);
+            // insufficient funds aborts and rolls back the whole transfer
+            boolean conditional = balanceUpdatePolicy.useConditional();
+            Wallet fromWallet;
+            Wallet toWallet;
+            if (fromWalletId < toWalletId) {
+                fromWallet = applyChange(fromWalletId, amt, Transaction.TransactionType.DEBIT, conditional);
+                toWallet = applyChange(toWalletId, amt, Transaction.TransactionType.CREDIT, conditional);
+            } else {
+                toWallet = applyChange(toWalletId, amt, Transaction.TransactionType.CREDIT, conditional);
+                fromWallet = applyChange(fromWalletId, amt, Transaction.TransactionType.DEBIT, conditional);
+            }
+            balanceCache.publishAfterCommit(List.of(fromWallet, toWallet));
+
+            // create transactions
+            Transaction debit = transferLeg(fromWallet, toWallet, Transaction.TransactionType.DEBIT, amt, id, reference,
+                    balanceAfter(fromWallet));
+            Transaction credit = transferLeg(toWallet, fromWallet, Transaction.TransactionType.CREDIT, amt, id, reference,
+                    balanceAfter(toWallet));
+
+            // both rows are flushed at commit in one INSERT batch, after the wallet UPDATE batch
+            transactionRepository.saveAll(List.of(debit, credit));
+            outbox.append(List.of(debit, credit));
+            recentTransactions.recordAfterCommit(List.of(debit, credit));
+
+            return List.of(debit, credit);
+        });
+    }
+
+    /**
+     * Apply many transfers in a single database transaction.
+     * Every wallet involved is locked once, in ascending id order, balances are moved in memory in
+     * request order and the resulting rows are written with batched statements. Items that fail
+     * validation or run out of funds are reported individually and do not affect the rest of the batch.
+     */
+    public List<BatchTransferOutcome> transferBatch(List<TransferRequestDto> requests) {
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            return ledgerTransferBatch(engine, requests);
+        }
+        return transactionTemplate.execute(status -> lockedTransferBatch(requests));
+    }
+
+    private List<BatchTransferOutcome> lockedTransferBatch(List<TransferRequestDto> requests) {
+        int n = requests.size();
+        BatchTransferOutcome[] outcomes = new BatchTransferOutcome[n];
+        Money[] amounts = new Money[n];
+        String[] transferIds = new String[n];
+
+        // validate items and resolve transfer ids before taking any lock
+        Set<String> batchTransferIds = new HashSet<>();
+        Set<String> clientTransferIds = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            TransferRequestDto req = requests.get(i);
+            if (req == null) {
+                outcomes[i] = BatchTransferOutcome.failure(i, null, "transfer is required");
+                continue;
+            }
+            String transferId = req.getTransferId() == null || req.getTransferId().isBlank()
+                    ? UUID.randomUUID().toString()
+                    : req.getTransferId();
+            transferIds[i] = transferId;
+            try {
+                validateBatchItem(req);
+                amounts[i] = normalizeAmount(req.getAmount());
+                if (!batchTransferIds.add(transferId)) {
+                    throw new DuplicateResourceException("transferId repeated in batch: " + transferId);
+                }
+                if (transferId.equals(req.getTransferId())) {
+                    clientTransferIds.add(transferId);
+                }
+            } catch (BadRequestException | DuplicateResourceException ex) {
+                outcomes[i] = BatchTransferOutcome.failure(i, transferId, ex.getMessage());
+            }
+        }
+
+        // one query for idempotency instead of one claim per item; the claims are inserted together below
+        Set<String> processed = idempotencyService.findClaimed(
+                clientTransferIds.stream().map(IdempotencyService::transferKey).toList()).stream()
+                .map(IdempotencyService::transferId)
+                .collect(Collectors.toSet());
+        SortedSet<Long> walletIds = new TreeSet<>();
+        for (int i = 0; i < n; i++) {
+            if (outcomes[i] != null) continue;
+            if (processed.contains(transferIds[i])) {
+                outcomes[i] = BatchTransferOutcome.failure(i, transferIds[i], "transferId already processed: " + transferIds[i]);
+                continue;
+            }
+            walletIds.add(requests.get(i).getFromWalletId());
+            walletIds.add(requests.get(i).getToWalletId());
+        }
+        if (walletIds.isEmpty()) {
+            return Arrays.asList(outcomes);
+        }
+
+        LockedWallets locked = lockAll(walletIds);
+        Map<Long, Wallet> wallets = locked.wallets();
+        Map<Long, Money> balances = locked.balances();
+
+        // apply deltas in memory, in request order
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (outcomes[i] != null) continue;
+            TransferRequestDto req = requests.get(i);
+            Wallet fromWallet = wallets.get(req.getFromWalletId());
+            Wallet toWallet = wallets.get(req.getToWalletId());
+            if (fromWallet == null || toWallet == null) {
+                Long missing = fromWallet == null ? req.getFromWalletId() : req.getToWalletId();
+                outcomes[i] = BatchTransferOutcome.failure(i, transferIds[i], "Wallet not found: " + missing);
+                continue;
+            }
+            Money amt = amounts[i];
+            if (balances.get(fromWallet.getWalletId()).isLessThan(amt)) {
+                outcomes[i] = BatchTransferOutcome.failure(i, transferIds[i],
+                        "insufficient funds in wallet: " + fromWallet.getWalletId());
+                continue;
+            }
+            balances.merge(fromWallet.getWalletId(), amt, Money::minus);
+            balances.merge(toWallet.getWalletId(), amt, Money::plus);
+
+            // regular wallets record their running balance; hot wallets stay null as on every other path
+            Transaction debit = transferLeg(fromWallet, toWallet, Transaction.TransactionType.DEBIT, amt, transferIds[i], req.getReference(),
+                    isHot(fromWallet) ? null : balances.get(fromWallet.getWalletId()));
+            Transaction credit = transferLeg(toWallet, fromWallet, Transaction.TransactionType.CREDIT, amt, transferIds[i], req.getReference(),
+                    isHot(toWallet) ? null : balances.get(toWallet.getWalletId()));
+            rows.add(debit);
+            rows.add(credit);
+            outcomes[i] = BatchTransferOutcome.success(i, transferIds[i], List.of(debit, credit));
+        }
+
+        // a concurrent claim of one of these ids fails the insert and rolls back the whole batch
+        idempotencyService.claimAll(Arrays.stream(outcomes)
+                .filter(o -> o.isSuccess() && clientTransferIds.contains(o.getTransferId()))
+                .map(o -> IdempotencyService.transferKey(o.getTransferId()))
+                .toList(), "TRANSFER");
+        writeBack(locked);
+        transactionRepository.saveAll(rows);
+        outbox.append(rows);
+        recentTransactions.recordAfterCommit(rows);
+        balanceCache.publishAfterCommit(wallets.values());
+        return Arrays.asList(outcomes);
+    }
+
+    // items are not bean-validated one by one (that would reject the whole batch), so check them here
+    private static void validateBatchItem(TransferRequestDto req) {
+        if (req.getFromWalletId() == null || req.getToWalletId() == null) {
+            throw new BadRequestException("fromWalletId and toWalletId are required");
+        }
+        if (req.getFromWalletId().equals(req.getToWalletId())) {
+            throw new BadRequestException("from and to wallet must be different");
+        }
+        if (req.getTransferId() != null && req.getTransferId().length() > 36) {
+            throw new BadRequestException("transferId must be at most 36 characters");
+        }
+        if (req.getReference() != null && req.getReference().length() > 255) {
+            throw new BadRequestException("reference must be at most 255 characters");
+        }
+    }
+
+    /**
+     * Accept a transfer for asynchronous execution: validate it, claim its transferId and record both
+     * legs as INITIATED. No wallet is locked; {@link #settleInitiatedTransfers} moves the money later.
+     */
+    @Transactional
+    public List<Transaction> initiateTransfer(Long fromWalletId, Long toWalletId, BigDecimal amount, String transferId, String reference) {
+        if (fromWalletId.equals(toWalletId)) {
+            throw new BadRequestException("from and to wallet must be different");
+        }
+        Money amt = normalizeAmount(amount);
         if (transferId == null || transferId.isBlank()) {
-            // generate a plain UUID (36 chars including hyphens) so it fits the DB column length
-            transferId = java.util.UUID.randomUUID().toString();
-        } else {
-            // if client supplied transferId, ensure it's not already processed to maintain idempotency
-            if (!transactionRepository.findByTransferId(transferId).isEmpty()) {
-                throw new DuplicateResourceException("transferId already processed: " + transferId);
+            transferId = UUID.randomUUID().toString();
+        } else if (!idempotencyService.claim(IdempotencyService.transferKey(transferId), "TRANSFER")) {
+            throw new DuplicateResourceException("transferId already processed: " + transferId);
+        }
+
+        Wallet fromWallet = walletRepository.findById(fromWalletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + fromWalletId));
+        Wallet toWallet = walletRepository.findById(toWalletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + toWalletId));
+
+        Transaction debit = transferLeg(fromWallet, toWallet, Transaction.TransactionType.DEBIT, amt, transferId, reference, null);
+        Transaction credit = transferLeg(toWallet, fromWallet, Transaction.TransactionType.CREDIT, amt, transferId, reference, null);
+        debit.setStatus(Transaction.TransactionStatus.INITIATED);
+        credit.setStatus(Transaction.TransactionStatus.INITIATED);
+        transactionRepository.saveAll(List.of(debit, credit));
+        recentTransactions.recordAfterCommit(List.of(debit, credit));
+        return List.of(debit, credit);
+    }
+
+    /**
+     * Execute INITIATED transfers in the given order in one database transaction, flipping their legs to
+     * SUCCESS or FAILED (insufficient funds). Wallets are locked as in {@link #transferBatch}; legs already
+     * settled by another worker are skipped, so a transfer is never applied twice. Settled legs take the
+     * settle time as {@code created_at}: their balance_after is taken now, so statements and the backfill
+     * must place them after anything the wallets saw while they were pending.
+     *
+     * @return the number of transfers settled by this call
+     */
+    @Transactional
+    public int settleInitiatedTransfers(List<String> transferIds) {
+        List<Transaction> pending = transactionRepository.findByTransferIdInAndStatus(transferIds, Transaction.TransactionStatus.INITIATED);
+        if (pending.isEmpty()) return 0;
+        SortedSet<Long> walletIds = new TreeSet<>();
+        pending.forEach(t -> walletIds.add(t.getWalletId()));
+        LockedWallets locked = lockAll(walletIds);
+
+        // re-read with a lock once the wallets are held: only rows still INITIATED now are ours to settle
+        Map<String, List<Transaction>> legsByTransfer = new HashMap<>();
+        transactionRepository.findByTransferIdInAndStatusWithLock(transferIds, Transaction.TransactionStatus.INITIATED)
+                .forEach(t -> legsByTransfer.computeIfAbsent(t.getTransferId(), id -> new ArrayList<>()).add(t));
+
+        List<Transaction> succeeded = new ArrayList<>();
+        LocalDateTime settledAt = LocalDateTime.now();
+        int settled = 0;
+        for (String transferId : transferIds) {
+            List<Transaction> legs = legsByTransfer.remove(transferId);
+            if (legs == null || legs.size() != 2) continue;
+            Transaction debit = legs.get(0).getType() == Transaction.TransactionType.DEBIT ? legs.get(0) : legs.get(1);
+            Transaction credit = debit == legs.get(0) ? legs.get(1) : legs.get(0);
+            Wallet fromWallet = locked.wallets().get(debit.getWalletId());
+            Wallet toWallet = locked.wallets().get(credit.getWalletId());
+            Money amt = debit.getAmount();
+            debit.setCreatedAt(settledAt);
+            credit.setCreatedAt(settledAt);
+            settled++;
+
+            if (locked.balances().get(fromWallet.getWalletId()).isLessThan(amt)) {
+                debit.setStatus(Transaction.TransactionStatus.FAILED);
+                credit.setStatus(Transaction.TransactionStatus.FAILED);
+                continue;
+            }
+            locked.balances().merge(fromWallet.getWalletId(), amt, Money::minus);
+            locked.balances().merge(toWallet.getWalletId(), amt, Money::plus);
+            debit.setStatus(Transaction.TransactionStatus.SUCCESS);
+            credit.setStatus(Transaction.TransactionStatus.SUCCESS);
+            debit.setBalanceAfter(isHot(fromWallet) ? null : locked.balances().get(fromWallet.getWalletId()));
+            credit.setBalanceAfter(isHot(toWallet) ? null : locked.balances().get(toWallet.getWalletId()));
+            succeeded.add(debit);
+            succeeded.add(credit);
+        }
+
+        writeBack(locked);
+        outbox.append(succeeded);
+        // the windows hold these rows as INITIATED; drop them so the next read rebuilds from the DB
+        recentTransactions.invalidateAfterCommit(walletIds);
+        balanceCache.publishAfterCommit(locked.wallets().values());
+        return settled;
+    }
+
+    /** Wallets locked for an in-memory batch: rows, hot-wallet shards, and combined balances before and during the batch. */
+    public record LockedWallets(Map<Long, Wallet> wallets, Map<Long, List<WalletBalanceShard>> hotShards,
+                                 Map<Long, Money> balances, Map<Long, Money> initialBalances) {
+    }
+
+    /**
+     * Lock every wallet once, walking the ids in ascending order and taking each wallet's lock unit in turn:
+     * the row of a regular wallet, the shards of a hot one. Single-wallet operations lock exactly these units
+     * in the same order, so a batch and a transfer never wait on each other in a cycle. Consecutive regular
+     * wallets are locked with one statement. Runs in the caller's transaction (also used by DisbursementService).
+     */
+    public LockedWallets lockAll(SortedSet<Long> walletIds) {
+        Map<Long, Integer> shardCounts = new HashMap<>();
+        walletRepository.findShardCountsByIdIn(walletIds).forEach(c -> shardCounts.put(c.getId(), c.getShardCount()));
+
+        Map<Long, Wallet> wallets = new HashMap<>();
+        Map<Long, List<WalletBalanceShard>> hotShards = new HashMap<>();
+        List<Long> regularRun = new ArrayList<>();
+        for (Long id : walletIds) {
+            Integer shardCount = shardCounts.get(id);
+            if (shardCount == null) continue;
+            if (shardCount <= 1) {
+                regularRun.add(id);
+                continue;
+            }
+            lockRows(regularRun, wallets, hotShards);
+            regularRun.clear();
+            // hot mode is never switched off, so the row needs no lock; its @Version guards the rare row write
+            walletRepository.findById(id).ifPresent(wallet -> {
+                wallets.put(id, wallet);
+                hotShards.put(id, shardRepository.findAllByWalletIdWithLock(id));
+            });
+        }
+        lockRows(regularRun, wallets, hotShards);
+
+        Map<Long, Money> balances = new HashMap<>();
+        for (Long id : walletIds) {
+            Wallet wallet = wallets.get(id);
+            if (wallet == null) continue;
+            List<WalletBalanceShard> shards = hotShards.get(id);
+            balances.put(id, shards == null ? wallet.getBalance() : wallet.getBalance().plus(sumShards(shards)));
+        }
+        return new LockedWallets(wallets, hotShards, balances, new HashMap<>(balances));
+    }
+
+    private void lockRows(List<Long> ids, Map<Long, Wallet> wallets, Map<Long, List<WalletBalanceShard>> hotShards) {
+        if (ids.isEmpty()) return;
+        for (Wallet wallet : walletRepository.findAllByIdInWithLock(ids)) {
+            wallets.put(wallet.getWalletId(), wallet);
+            if (isHot(wallet)) {
+                // switched to hot mode after the counts were read: enableHotMode held this row until it committed,
+                // so its shards are new; lock them too (out of order, but only for that one commit window,
+                // and InnoDB rolls back one side of any resulting deadlock)
+                hotShards.put(wallet.getWalletId(), shardRepository.findAllByWalletIdWithLock(wallet.getWalletId()));
+            }
+        }
+    }
+
+    // write back net changes: regular wallets take the final balance, hot wallets move their net delta on the shards
+    public void writeBack(LockedWallets locked) {
+        List<Wallet> changedWallets = new ArrayList<>();
+        List<WalletBalanceShard> changedShards = new ArrayList<>();
+        for (Long id : locked.balances().keySet()) {
+            Money delta = locked.balances().get(id).minus(locked.initialBalances().get(id));
+            if (delta.signum() == 0) continue;
+            Wallet wallet = locked.wallets().get(id);
+            List<WalletBalanceShard> shards = locked.hotShards().get(id);
+            if (shards == null) {
+                wallet.setBalance(locked.balances().get(id));
+                changedWallets.add(wallet);
+            } else if (delta.signum() > 0) {
+                WalletBalanceShard target = shards.get(ThreadLocalRandom.current().nextInt(shards.size()));
+                target.setBalance(target.getBalance().plus(delta));
+                changedShards.add(target);
+            } else {
+                Money remaining = drainShards(shards, delta.negate(), changedShards);
+                if (remaining.signum() > 0) {
+                    // whatever the shards could not cover comes out of the wallet row itself
+                    wallet.setBalance(wallet.getBalance().minus(remaining));
+                    changedWallets.add(wallet);
+                }
+            }
+        }
+        walletRepository.saveAll(changedWallets);
+        shardRepository.saveAll(changedShards);
+    }
+
+    // the ledger engine already orders work per wallet, so batch items are simply submitted together
+    private List<BatchTransferOutcome> ledgerTransferBatch(LedgerEngine engine, List<TransferRequestDto> requests) {
+        List<CompletableFuture<List<Transaction>>> futures = new ArrayList<>();
+        String[] transferIds = new String[requests.size()];
+        BatchTransferOutcome[] outcomes = new BatchTransferOutcome[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequestDto req = requests.get(i);
+            if (req == null) {
+                outcomes[i] = BatchTransferOutcome.failure(i, null, "transfer is required");
+                futures.add(null);
+                continue;
+            }
+            transferIds[i] = req.getTransferId() == null || req.getTransferId().isBlank()
+                    ? UUID.randomUUID().toString()
+                    : req.getTransferId();
+            try {
+                validateBatchItem(req);
+                futures.add(engine.transfer(req.getFromWalletId(), req.getToWalletId(),
+                        normalizeAmount(req.getAmount()), transferIds[i],
+                        transferIds[i].equals(req.getTransferId()), req.getReference()));
+            } catch (BadRequestException | DuplicateResourceException ex) {
+                outcomes[i] = BatchTransferOutcome.failure(i, transferIds[i], ex.getMessage());
+                futures.add(null);
+            }
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            if (outcomes[i] != null) continue;
+            try {
+                List<Transaction> legs = LedgerEngine.await(futures.get(i));
+                recentTransactions.recordAfterCommit(legs);
+                balanceCache.evict(requests.get(i).getFromWalletId());
+                balanceCache.evict(requests.get(i).getToWalletId());
+                outcomes[i] = BatchTransferOutcome.success(i, transferIds[i], legs);
+            } catch (RuntimeException ex) {
+                outcomes[i] = BatchTransferOutcome.failure(i, transferIds[i], ex.getMessage());
             }
         }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Switch a wallet to hot mode: its balance is moved into {@code shardCount} shard rows so
+     * credits land on a random shard and no longer serialize on the wallets row.
+     */
+    @Transactional
+    public Wallet enableHotMode(Long walletId, int shardCount) {
+        if (shardCount < 2 || shardCount > MAX_SHARDS) {
+            throw new BadRequestException("shardCount must be between 2 and " + MAX_SHARDS);
+        }
+
+        Wallet wallet = walletRepository.findByIdWithLock(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+        if (isHot(wallet)) {
+            throw new BadRequestException("wallet is already in hot mode: " + walletId);
+        }
+
+        Money balance = wallet.getBalance();
+        List<WalletBalanceShard> shards = IntStream.range(0, shardCount)
+                .mapToObj(i -> WalletBalanceShard.builder()
+                        .walletId(walletId)
+                        .shardNo(i)
+                        .balance(i == 0 ? balance : Money.ZERO)
+                        .build())
+                .toList();
+        shardRepository.saveAll(shards);
+
+        wallet.setBalance(Money.ZERO);
+        wallet.setShardCount(shardCount);
+        walletRepository.save(wallet);
+        balanceCache.publishAfterCommit(List.of(wallet));
+
+        return WalletBalanceCache.copyWithBalance(wallet, balance);
+    }
+
+    private Transaction recorded(Transaction tx) {
+        recentTransactions.recordAfterCommit(List.of(tx));
+        return tx;
+    }
+
+    /**
+     * Balance after the change just applied to a locked regular wallet. Hot wallets take credits on
+     * single shards concurrently, so their rows are left null and filled in by {@link RunningBalanceBackfill}.
+     */
+    private static Money balanceAfter(Wallet wallet) {
+        return isHot(wallet) ? null : wallet.getBalance();
+    }
 
-        BigDecimal amt = normalizeAmount(amount);
+    static boolean isHot(Wallet wallet) {
+        return wallet.getShardCount() != null && wallet.getShardCount() > 1;
+    }
 
-        // lock order by id - always lock smaller id first
-        Wallet first, second;
-        boolean fromIsFirst = fromWalletId < toWalletId;
-        if (fromIsFirst) {
-            first = walletRepository.findByIdWithLock(fromWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + fromWalletId));
-            second = walletRepository.findByIdWithLock(toWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + toWalletId));
+    /**
+     * Load a wallet for a balance change. Regular wallets are locked with SELECT ... FOR UPDATE;
+     * hot wallets are read without a lock because their shard rows are locked instead.
+     */
+    private Wallet loadForUpdate(Long walletId) {
+        int shardCount = walletRepository.findShardCountById(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+        if (shardCount > 1) {
+            return walletRepository.findById(walletId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+        }
+        // the row lock also covers a concurrent enableHotMode; credit/debit re-check the mode afterwards
+        return walletRepository.findByIdWithLock(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+    }
+
+    /**
+     * Apply one wallet's side of a balance change and return the wallet as it stands afterwards. With
+     * {@code conditional} a regular wallet takes a single guarded UPDATE instead of SELECT ... FOR UPDATE
+     * followed by an UPDATE; hot wallets keep their shard path.
+     */
+    private Wallet applyChange(Long walletId, Money amt, Transaction.TransactionType type, boolean conditional) {
+        if (conditional && conditionalChange(walletId, amt, type)) {
+            return afterConditionalChange(walletId, amt, type);
+        }
+        Wallet wallet = loadForUpdate(walletId);
+        if (type == Transaction.TransactionType.CREDIT) {
+            credit(wallet, amt);
         } else {
-            first = walletRepository.findByIdWithLock(toWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + toWalletId));
-            second = walletRepository.findByIdWithLock(fromWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + fromWalletId));
+            debit(wallet, amt);
+        }
+        return wallet;
+    }
+
+    // false for a hot wallet, whose balance lives on its shards and cannot be guarded in the wallet row
+    private boolean conditionalChange(Long walletId, Money amt, Transaction.TransactionType type) {
+        int updated = type == Transaction.TransactionType.CREDIT
+                ? walletRepository.conditionalCredit(walletId, amt.toBigDecimal())
+                : walletRepository.conditionalDebit(walletId, amt.toBigDecimal());
+        if (updated == 1) {
+            return true;
+        }
+        // no row changed: tell a missing wallet, a hot wallet and a short balance apart (failure path only)
+        int shardCount = walletRepository.findShardCountById(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + walletId));
+        if (shardCount > 1) {
+            return false;
+        }
+        throw new InsufficientFundsException("insufficient balance in wallet: " + walletId);
+    }
+
+    /**
+     * The wallet after a guarded UPDATE, which bypassed the persistence context. A wallet this transaction has
+     * not loaded yet is read once; the row lock is ours, so the read sees the new balance. One the caller
+     * already loaded is patched in memory instead, and its snapshot and version move along, so the flush
+     * neither writes it back nor fails its version check.
+     */
+    private Wallet afterConditionalChange(Long walletId, Money amt, Transaction.TransactionType type) {
+        Wallet reference = entityManager.getReference(Wallet.class, walletId);
+        if (!Hibernate.isInitialized(reference)) {
+            return Hibernate.unproxy(reference, Wallet.class);
         }
+        Wallet wallet = Hibernate.unproxy(reference, Wallet.class);
+        wallet.setBalance(type == Transaction.TransactionType.CREDIT
+                ? wallet.getBalance().plus(amt)
+                : wallet.getBalance().minus(amt));
+        wallet.setVersion(wallet.getVersion() + 1);
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityEntry entry = session.getPersistenceContextInternal().getEntry(wallet);
+        entry.postUpdate(wallet, entry.getPersister().getValues(wallet), wallet.getVersion());
+        return wallet;
+    }
 
-        Wallet fromWallet = fromIsFirst ? first : second;
-        Wallet toWallet = fromIsFirst ? second : first;
+    private void credit(Wallet wallet, Money amt) {
+        if (!isHot(wallet)) {
+            wallet.setBalance(wallet.getBalance().plus(amt));
+            walletRepository.save(wallet);
+            return;
+        }
+        int shardNo = ThreadLocalRandom.current().nextInt(wallet.getShardCount());
+        WalletBalanceShard shard = shardRepository.findByWalletIdAndShardNoWithLock(wallet.getWalletId(), shardNo)
+                .orElseThrow(() -> new IllegalStateException(
+                        "missing balance shard " + shardNo + " for wallet: " + wallet.getWalletId()));
+        shard.setBalance(shard.getBalance().plus(amt));
+        shardRepository.save(shard);
+    }
 
-        // check balance
-        if (fromWallet.getBalance().compareTo(amt) < 0) {
-            throw new InsufficientFundsException("insufficient funds in wallet: " + fromWallet.getWalletId());
+    private void debit(Wallet wallet, Money amt) {
+        if (!isHot(wallet)) {
+            if (wallet.getBalance().isLessThan(amt)) {
+                throw new InsufficientFundsException("insufficient balance in wallet: " + wallet.getWalletId());
+            }
+            wallet.setBalance(wallet.getBalance().minus(amt));
+            walletRepository.save(wallet);
+            return;
         }
 
-        // perform balance updates
-        fromWallet.setBalance(fromWallet.getBalance().subtract(amt));
-        toWallet.setBalance(toWallet.getBalance().add(amt));
+        // sweep: lock every shard in shard_no order and drain them until the amount is covered
+        List<WalletBalanceShard> shards = shardRepository.findAllByWalletIdWithLock(wallet.getWalletId());
+        if (sumShards(shards).isLessThan(amt)) {
+            throw new InsufficientFundsException("insufficient balance in wallet: " + wallet.getWalletId());
+        }
+        List<WalletBalanceShard> changed = new ArrayList<>();
+        drainShards(shards, amt, changed);
+        shardRepository.saveAll(changed);
+    }
 
-        // persist wallets
-        walletRepository.save(fromWallet);
-        walletRepository.save(toWallet);
+    private static Money sumShards(List<WalletBalanceShard> shards) {
+        return shards.stream()
+                .map(WalletBalanceShard::getBalance)
+                .reduce(Money.ZERO, Money::plus);
+    }
 
-        // create transactions
-        Transaction debit = Transaction.builder()
-                .wallet(fromWallet)
-                .amount(amt)
-                .type(Transaction.TransactionType.DEBIT)
-                .status(Transaction.TransactionStatus.SUCCESS)
-                .transferId(transferId)
-                .relatedWallet(toWallet)
-                .reference(reference)
-                .build();
+    /** Take {@code amount} out of the shards in order; returns the part that could not be covered. */
+    private static Money drainShards(List<WalletBalanceShard> shards, Money amount,
+                                     List<WalletBalanceShard> changed) {
+        Money remaining = amount;
+        for (WalletBalanceShard shard : shards) {
+            if (remaining.signum() == 0) break;
+            Money take = shard.getBalance().min(remaining);
+            if (take.signum() <= 0) continue;
+            shard.setBalance(shard.getBalance().minus(take));
+            changed.add(shard);
+            remaining = remaining.minus(take);
+        }
+        return remaining;
+    }
 
-        Transaction credit = Transaction.builder()
-                .wallet(toWallet)
+    static Transaction transferLeg(Wallet wallet, Wallet relatedWallet, Transaction.TransactionType type,
+                                           Money amt, String transferId, String reference, Money balanceAfter) {
+        return Transaction.builder()
+                .wallet(wallet)
                 .amount(amt)
-                .type(Transaction.TransactionType.CREDIT)
+                .type(type)
                 .status(Transaction.TransactionStatus.SUCCESS)
                 .transferId(transferId)
-                .relatedWallet(fromWallet)
+                .relatedWallet(relatedWallet)
                 .reference(reference)
+                .balanceAfter(balanceAfter)
                 .build();
+    }
 
-        transactionRepository.save(debit);
-        transactionRepository.save(credit);
-
-        return List.of(debit, credit);
+    // hot wallets report the sum of their shards, the ledger engine its in-memory balance;
+    // the managed entity itself is left untouched
+    private Wallet withCurrentBalance(Wallet wallet) {
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            Optional<Money> balance = engine.currentBalance(wallet.getWalletId());
+            if (balance.isPresent()) return WalletBalanceCache.copyWithBalance(wallet, balance.get());
+        }
+        if (!isHot(wallet)) return wallet;
+        Money total = wallet.getBalance().plus(Money.of(shardRepository.sumBalanceByWalletId(wallet.getWalletId())));
+        return WalletBalanceCache.copyWithBalance(wallet, total);
     }
 }
@@ -0,0 +1,61 @@
+package com.example.miniwallet.service.ledger;
+
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One balance change applied by the {@link LedgerEngine}. Entries are written to the local
+ * journal before the in-memory balance changes and are later flushed to MySQL as a
+ * transactions row plus a balance delta on the wallets row.
+ *
+ * {@code claimKey} is the idempotency key claimed by this entry (the debit leg of a transfer with a
+ * client-supplied id), inserted in the same MySQL transaction as the row itself.
+ */
+public record LedgerEntry(
+        long seq,
+        String transactionId,
+        Long walletId,
+        Transaction.TransactionType type,
+        BigDecimal amount,
+        String transferId,
+        Long relatedWalletId,
+        String reference,
+        LocalDateTime createdAt,
+        BigDecimal balanceAfter,
+        String claimKey
+) {
+
+    public LedgerEntry withSeq(long newSeq) {
+        return new LedgerEntry(newSeq, transactionId, walletId, type, amount, transferId, relatedWalletId, reference, createdAt,
+                balanceAfter, claimKey);
+    }
+
+    public LedgerEntry withClaimKey(String key) {
+        return new LedgerEntry(seq, transactionId, walletId, type, amount, transferId, relatedWalletId, reference, createdAt,
+                balanceAfter, key);
+    }
+
+    public BigDecimal delta() {
+        return type == Transaction.TransactionType.CREDIT ? amount : amount.negate();
+    }
+
+    public Transaction toTransaction() {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .wallet(Wallet.builder().walletId(walletId).build())
+                .walletId(walletId)
+                .amount(Money.of(amount))
+                .type(type)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .transferId(transferId)
+                .relatedWallet(relatedWalletId != null ? Wallet.builder().walletId(relatedWalletId).build() : null)
+                .reference(reference)
+                .createdAt(createdAt)
+                .balanceAfter(Money.ofNullable(balanceAfter))
+                .build();
+    }
+}
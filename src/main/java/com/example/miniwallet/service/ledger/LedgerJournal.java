@@ -0,0 +1,182 @@
+package com.example.miniwallet.service.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only local journal (one JSON entry per line) used by the {@link LedgerEngine} for crash recovery.
+ * A side file holds the sequence number of the last entry known to be persisted in MySQL.
+ *
+ * Appends only write; {@link #sync} makes them durable with group commit, so one {@code force()} covers
+ * every entry appended (by any partition) while the previous one was running.
+ */
+@Slf4j
+public class LedgerJournal implements Closeable {
+
+    private final Path journalPath;
+    private final Path checkpointPath;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    private final FileChannel channel;
+    private long lastSeq;
+    private long checkpointSeq;
+    // guarded by syncLock, not by this, so appends continue while a force() is running
+    private final Object syncLock = new Object();
+    private long syncedSeq;
+
+    public LedgerJournal(Path journalPath, ObjectMapper objectMapper, boolean fsync) throws IOException {
+        this.journalPath = journalPath;
+        this.checkpointPath = journalPath.resolveSibling(journalPath.getFileName() + ".checkpoint");
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+        if (journalPath.getParent() != null) {
+            Files.createDirectories(journalPath.getParent());
+        }
+        this.checkpointSeq = Files.exists(checkpointPath)
+                ? Long.parseLong(Files.readString(checkpointPath).trim())
+                : 0L;
+        this.lastSeq = checkpointSeq;
+        Scan scan = scan();
+        for (LedgerEntry entry : scan.entries()) {
+            lastSeq = Math.max(lastSeq, entry.seq());
+        }
+        this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() > scan.validLength()) {
+            // drop a torn last line, or the next append would be glued onto it
+            channel.truncate(scan.validLength());
+        }
+        this.syncedSeq = lastSeq;
+    }
+
+    /** Assign the next sequence number to {@code draft} and write it; durable once {@link #sync} returns. */
+    public synchronized LedgerEntry append(LedgerEntry draft) {
+        LedgerEntry entry = draft.withSeq(lastSeq + 1);
+        try {
+            byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("ledger journal append failed", ex);
+        }
+        lastSeq = entry.seq();
+        return entry;
+    }
+
+    /**
+     * Block until every entry up to {@code seq} is on disk. Callers queue on one lock; whoever gets it
+     * forces everything appended so far, and the callers behind it usually find their entry already covered.
+     */
+    public void sync(long seq) {
+        if (!fsync) return;
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            long upTo = lastSeq();
+            try {
+                channel.force(false);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("ledger journal sync failed", ex);
+            }
+            syncedSeq = upTo;
+        }
+    }
+
+    /** Entries appended after the last checkpoint, i.e. not yet known to be in MySQL. */
+    public synchronized List<LedgerEntry> readAfterCheckpoint() {
+        return scan().entries().stream().filter(e -> e.seq() > checkpointSeq).toList();
+    }
+
+    /**
+     * Record that every entry up to {@code seq} is persisted. With {@code mayTruncate} the journal is emptied
+     * once it is fully flushed; callers pass false while an entry still depends on one not yet appended.
+     */
+    public synchronized void checkpoint(long seq, boolean mayTruncate) {
+        try {
+            Path tmp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+            Files.writeString(tmp, Long.toString(seq));
+            Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointSeq = seq;
+            if (mayTruncate && seq == lastSeq) {
+                channel.truncate(0);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("ledger journal checkpoint failed", ex);
+        }
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /** Continue numbering after {@code seq}, e.g. the last sequence MySQL has seen when the journal was lost. */
+    public synchronized void advanceTo(long seq) {
+        if (seq > lastSeq) {
+            lastSeq = seq;
+        }
+    }
+
+    /**
+     * Read every entry. Only the final line may be unreadable: it is a torn append from a crash that was never
+     * acknowledged to a caller. An unreadable line anywhere else means the journal is damaged, and starting
+     * without those entries would silently lose money movements, so this fails instead.
+     */
+    private Scan scan() {
+        List<LedgerEntry> entries = new ArrayList<>();
+        if (!Files.exists(journalPath)) return new Scan(entries, 0);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(journalPath);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("ledger journal read failed", ex);
+        }
+        int start = 0;
+        int lineNo = 0;
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') end++;
+            lineNo++;
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+            if (end == content.length) {
+                // no newline: the append was cut short, so it was neither acknowledged nor flushed
+                log.warn("dropping torn last ledger journal line: {}", line);
+                return new Scan(entries, start);
+            }
+            if (!line.isBlank()) {
+                try {
+                    entries.add(objectMapper.readValue(line, LedgerEntry.class));
+                } catch (IOException ex) {
+                    if (end != content.length - 1) {
+                        throw new IllegalStateException("ledger journal " + journalPath + " is corrupt at line " + lineNo, ex);
+                    }
+                    log.warn("dropping unreadable last ledger journal line: {}", line);
+                    return new Scan(entries, start);
+                }
+            }
+            start = end + 1;
+        }
+        return new Scan(entries, content.length);
+    }
+
+    /** Entries read from the journal and the length of the file up to the end of the last complete line. */
+    private record Scan(List<LedgerEntry> entries, long validLength) {
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.miniwallet.service.ledger;
+
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.service.outbox.LedgerEvent;
+import com.example.miniwallet.service.outbox.OutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Write-behind side of the {@link LedgerEngine}: persists a batch of journal entries with
+ * JDBC batch statements in one transaction. Wallet balances are updated by delta, so a
+ * transactions row exists in MySQL exactly when its balance effect does (and its outbox event).
+ *
+ * The same transaction advances {@code ledger_flush_state.last_seq}, and entries at or below it are
+ * skipped, so persisting a batch again (a retry after the journal checkpoint failed) changes nothing.
+ * A quarantined entry advances it the same way, so it is neither persisted nor quarantined twice.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "ledger")
+public class LedgerPersister {
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (id, wallet_id, amount, type, status, transfer_id, related_wallet_id, reference, created_at, balance_after) " +
+            "VALUES (?, ?, ?, ?, 'SUCCESS', ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_BALANCE =
+            "UPDATE wallets SET balance = balance + ?, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String INSERT_CLAIM =
+            "INSERT IGNORE INTO idempotency_keys (idem_key, operation, created_at) VALUES (?, 'TRANSFER', CURRENT_TIMESTAMP(6))";
+
+    private static final String INSERT_DEAD_LETTER =
+            "INSERT INTO ledger_dead_letters (seq, transaction_id, wallet_id, entry, error, quarantined_at) " +
+            "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP(6))";
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxService outbox;
+    private final ObjectMapper objectMapper;
+
+    public void persist(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) return;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            long flushedSeq = lockFlushedSeq();
+            List<LedgerEntry> fresh = entries.stream().filter(e -> e.seq() > flushedSeq).toList();
+            if (fresh.isEmpty()) return;
+
+            // net delta per wallet, sorted by id so flushes lock wallet rows smaller id first
+            Map<Long, BigDecimal> deltas = new TreeMap<>();
+            fresh.forEach(e -> deltas.merge(e.walletId(), e.delta(), BigDecimal::add));
+            List<Map.Entry<Long, BigDecimal>> walletDeltas = new ArrayList<>(deltas.entrySet());
+
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, fresh, fresh.size(), (ps, e) -> {
+                ps.setBytes(1, UuidBinaryConverter.toBytes(e.transactionId()));
+                ps.setLong(2, e.walletId());
+                ps.setBigDecimal(3, e.amount());
+                ps.setString(4, e.type().name());
+                ps.setString(5, e.transferId());
+                ps.setObject(6, e.relatedWalletId());
+                ps.setString(7, e.reference());
+                ps.setTimestamp(8, Timestamp.valueOf(e.createdAt()));
+                ps.setBigDecimal(9, e.balanceAfter());
+            });
+            List<String> claims = fresh.stream().map(LedgerEntry::claimKey).filter(Objects::nonNull).toList();
+            jdbcTemplate.batchUpdate(INSERT_CLAIM, claims, claims.size(), (ps, key) -> ps.setString(1, key));
+            outbox.appendEvents(fresh.stream().map(LedgerEvent::of).toList());
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, walletDeltas, walletDeltas.size(), (ps, d) -> {
+                ps.setBigDecimal(1, d.getValue());
+                ps.setLong(2, d.getKey());
+            });
+            jdbcTemplate.update("UPDATE ledger_flush_state SET last_seq = ? WHERE id = 1", fresh.get(fresh.size() - 1).seq());
+        });
+    }
+
+    /**
+     * Set aside an entry MySQL rejects: store it as journaled in {@code ledger_dead_letters} for repair and move
+     * the flush position past it, so the entries after it can be persisted.
+     */
+    public void quarantine(LedgerEntry entry, String reason) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(entry);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException("ledger entry " + entry.seq() + " could not be serialized", ex);
+        }
+        String error = reason == null || reason.length() <= MAX_ERROR_LENGTH ? reason : reason.substring(0, MAX_ERROR_LENGTH);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (entry.seq() <= lockFlushedSeq()) return;
+            jdbcTemplate.update(INSERT_DEAD_LETTER, entry.seq(), UuidBinaryConverter.toBytes(entry.transactionId()),
+                    entry.walletId(), json, error);
+            jdbcTemplate.update("UPDATE ledger_flush_state SET last_seq = ? WHERE id = 1", entry.seq());
+        });
+    }
+
+    /** Highest journal sequence persisted so far (0 when nothing was). */
+    public long lastFlushedSeq() {
+        List<Long> seq = jdbcTemplate.queryForList("SELECT last_seq FROM ledger_flush_state WHERE id = 1", Long.class);
+        return seq.isEmpty() ? 0L : seq.get(0);
+    }
+
+    /** Whether an idempotency key is already claimed in MySQL. */
+    public boolean isClaimed(String key) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys WHERE idem_key = ?", Integer.class, key);
+        return count != null && count > 0;
+    }
+
+    // the flusher is the only writer, the row lock just keeps a second node on the same database honest
+    private long lockFlushedSeq() {
+        List<Long> seq = jdbcTemplate.queryForList("SELECT last_seq FROM ledger_flush_state WHERE id = 1 FOR UPDATE", Long.class);
+        if (!seq.isEmpty()) return seq.get(0);
+        jdbcTemplate.update("INSERT INTO ledger_flush_state (id, last_seq) VALUES (1, 0)");
+        return 0L;
+    }
+}
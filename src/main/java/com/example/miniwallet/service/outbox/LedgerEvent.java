@@ -0,0 +1,37 @@
+package com.example.miniwallet.service.outbox;
+
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.service.ledger.LedgerEntry;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Compact event for one successful transactions row, as stored in {@code outbox_events} and handed
+ * to the {@link OutboxSink}. {@code eventId} is null until the row is written; consumers can use it
+ * to de-duplicate redeliveries.
+ */
+public record LedgerEvent(
+        Long eventId,
+        String transactionId,
+        Long walletId,
+        Transaction.TransactionType type,
+        BigDecimal amount,
+        BigDecimal balanceAfter,
+        String transferId,
+        Long relatedWalletId,
+        LocalDateTime occurredAt
+) {
+
+    public static LedgerEvent of(Transaction tx) {
+        return new LedgerEvent(null, tx.getTransactionId(), tx.getWallet().getWalletId(), tx.getType(), tx.getAmount().toBigDecimal(),
+                tx.getBalanceAfter() != null ? tx.getBalanceAfter().toBigDecimal() : null, tx.getTransferId(),
+                tx.getRelatedWallet() != null ? tx.getRelatedWallet().getWalletId() : null,
+                tx.getCreatedAt() != null ? tx.getCreatedAt() : LocalDateTime.now());
+    }
+
+    public static LedgerEvent of(LedgerEntry entry) {
+        return new LedgerEvent(null, entry.transactionId(), entry.walletId(), entry.type(), entry.amount(),
+                entry.balanceAfter(), entry.transferId(), entry.relatedWalletId(), entry.createdAt());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.miniwallet.service.outbox;
+
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Drains {@code outbox_events} into the {@link OutboxSink}. Each batch is claimed with
+ * {@code FOR UPDATE SKIP LOCKED}, so relays on several nodes take disjoint batches without
+ * coordinating, and is deleted in the same transaction once the sink has accepted it. A failed
+ * delivery rolls back and the rows are picked up again on the next poll.
+ *
+ * Events are delivered in id order within a batch; across nodes batches may overtake each other,
+ * so consumers that need per-wallet order should sort by {@code eventId} or {@code occurredAt}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final String CLAIM_BATCH =
+            "SELECT id, transaction_id, wallet_id, type, amount, balance_after, transfer_id, related_wallet_id, occurred_at " +
+            "FROM outbox_events ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxSink sink;
+
+    @Value("${wallet.outbox.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${wallet.outbox.poll-interval:PT0.5S}")
+    public void drain() {
+        try {
+            // keep going while batches come back full, so a backlog is drained without waiting for the next poll
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("outbox relay failed, will retry: {}", ex.getMessage());
+        }
+    }
+
+    int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<LedgerEvent> events = jdbcTemplate.query(CLAIM_BATCH, (rs, i) -> {
+                Timestamp occurredAt = rs.getTimestamp(9);
+                return new LedgerEvent(
+                        rs.getLong(1),
+                        UuidBinaryConverter.fromBytes(rs.getBytes(2)),
+                        rs.getLong(3),
+                        Transaction.TransactionType.valueOf(rs.getString(4)),
+                        rs.getBigDecimal(5),
+                        rs.getBigDecimal(6),
+                        rs.getString(7),
+                        rs.getObject(8, Long.class),
+                        occurredAt.toLocalDateTime());
+            }, batchSize);
+            if (events.isEmpty()) return 0;
+
+            try {
+                sink.deliver(events);
+            } catch (Exception ex) {
+                throw new IllegalStateException("sink rejected " + events.size() + " events", ex);
+            }
+
+            String placeholders = String.join(",", Collections.nCopies(events.size(), "?"));
+            jdbcTemplate.update("DELETE FROM outbox_events WHERE id IN (" + placeholders + ")",
+                    events.stream().map(LedgerEvent::eventId).toArray());
+            return events.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+}
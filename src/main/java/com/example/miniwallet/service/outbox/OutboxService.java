@@ -0,0 +1,49 @@
+package com.example.miniwallet.service.outbox;
+
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Write side of the transactional outbox: ledger events are inserted with one JDBC batch on the
+ * caller's connection, so they commit or roll back together with the transactions rows they describe.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO outbox_events (transaction_id, wallet_id, type, amount, balance_after, transfer_id, related_wallet_id, occurred_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${wallet.outbox.enabled:true}")
+    private boolean enabled;
+
+    /** Must be called inside the transaction that writes the rows. */
+    public void append(Collection<Transaction> transactions) {
+        appendEvents(transactions.stream().map(LedgerEvent::of).toList());
+    }
+
+    public void appendEvents(List<LedgerEvent> events) {
+        if (!enabled || events.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_EVENT, events, events.size(), (ps, e) -> {
+            ps.setBytes(1, UuidBinaryConverter.toBytes(e.transactionId()));
+            ps.setLong(2, e.walletId());
+            ps.setString(3, e.type().name());
+            ps.setBigDecimal(4, e.amount());
+            ps.setBigDecimal(5, e.balanceAfter());
+            ps.setString(6, e.transferId());
+            ps.setObject(7, e.relatedWalletId());
+            ps.setTimestamp(8, Timestamp.valueOf(e.occurredAt()));
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.miniwallet.service.outbox;
+
+import java.util.List;
+
+/**
+ * Destination of the outbox relay. A batch counts as delivered only if {@link #deliver} returns
+ * normally; on an exception its rows stay in the outbox and are retried, so sinks must tolerate
+ * redelivery (at-least-once).
+ */
+public interface OutboxSink {
+
+    void deliver(List<LedgerEvent> events) throws Exception;
+}
@@ -0,0 +1,51 @@
+package com.example.miniwallet;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * One redis-server per test JVM, started on first use. Tests that need the shared cache tier call
+ * {@link #register} from a {@code @DynamicPropertySource} method.
+ */
+public final class EmbeddedRedis {
+
+    private static RedisServer server;
+    private static int port;
+
+    private EmbeddedRedis() {
+    }
+
+    public static void register(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", EmbeddedRedis::port);
+        registry.add("wallet.cache.store", () -> "redis");
+    }
+
+    public static synchronized int port() {
+        if (server == null) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            try {
+                server = new RedisServer(port);
+                server.start();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (IOException ignored) {
+                    // the process is going away anyway
+                }
+            }));
+        }
+        return port;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.miniwallet;
+
+import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.service.CustomerService;
+import com.example.miniwallet.service.WalletService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/** Seeds a fresh customer and wallet per call, so integration tests sharing one database do not collide. */
+public final class TestWallets {
+
+    private TestWallets() {
+    }
+
+    public static Wallet create(CustomerService customers, WalletService wallets, String balance) {
+        String name = "test-" + UUID.randomUUID();
+        Customer customer = customers.createCustomer(Customer.builder()
+                .name(name)
+                .email(name + "@example.com")
+                .build());
+        Wallet wallet = wallets.createWalletForCustomer(customer.getCustomerId());
+        if (new BigDecimal(balance).signum() > 0) {
+            wallets.deposit(wallet.getWalletId(), new BigDecimal(balance), "seed");
+        }
+        return wallet;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.miniwallet.config;
+
+import com.example.miniwallet.entity.Customer;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactCacheSerializerTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 6, 1, 9, 30, 15, 123_456_000);
+
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(RedisCacheConfig.jsonSerializer());
+
+    @Test
+    void walletsRoundTripWithAndWithoutTheirCustomer() {
+        Wallet wallet = Wallet.builder()
+                .walletId(7L)
+                .customer(customer())
+                .balance(Money.of(new BigDecimal("-12.3456")))
+                .version(42)
+                .shardCount(8)
+                .createdAt(CREATED)
+                .updatedAt(CREATED.plusDays(1))
+                .build();
+
+        Wallet read = (Wallet) roundTrip(wallet);
+
+        assertThat(read.getWalletId()).isEqualTo(7L);
+        assertThat(read.getBalance()).isEqualTo(wallet.getBalance());
+        assertThat(read.getVersion()).isEqualTo(42);
+        assertThat(read.getShardCount()).isEqualTo(8);
+        assertThat(read.getCreatedAt()).isEqualTo(CREATED);
+        assertThat(read.getUpdatedAt()).isEqualTo(CREATED.plusDays(1));
+        assertThat(read.getCustomer()).usingRecursiveComparison().isEqualTo(customer());
+
+        Wallet bare = (Wallet) roundTrip(Wallet.builder().walletId(8L).balance(Money.ZERO).build());
+        assertThat(bare.getCustomer()).isNull();
+        assertThat(bare.getShardCount()).isNull();
+        assertThat(bare.getBalance()).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void transactionsRoundTripIncludingNullsAndBalanceAfter() {
+        Transaction full = transaction("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b", new BigDecimal("99.5"));
+        Transaction sparse = Transaction.builder()
+                .transactionId("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5c")
+                .wallet(Wallet.builder().walletId(3L).build())
+                .amount(Money.of(BigDecimal.ONE))
+                .type(Transaction.TransactionType.CREDIT)
+                .status(Transaction.TransactionStatus.INITIATED)
+                .build();
+
+        Transaction read = (Transaction) roundTrip(full);
+        assertTransaction(read, full);
+        assertThat(read.getBalanceAfter()).isEqualTo(Money.of(new BigDecimal("99.5")));
+
+        Transaction readSparse = (Transaction) roundTrip(sparse);
+        assertTransaction(readSparse, sparse);
+        assertThat(readSparse.getRelatedWallet()).isNull();
+        assertThat(readSparse.getBalanceAfter()).isNull();
+    }
+
+    @Test
+    void transactionPagesKeepPagingMetadata() {
+        Page<Transaction> page = new PageImpl<>(List.of(
+                transaction("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a51", BigDecimal.TEN),
+                transaction("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a52", null)), PageRequest.of(2, 20), 97);
+
+        @SuppressWarnings("unchecked")
+        Page<Transaction> read = (Page<Transaction>) roundTrip(page);
+
+        assertThat(read.getNumber()).isEqualTo(2);
+        assertThat(read.getSize()).isEqualTo(20);
+        assertThat(read.getTotalElements()).isEqualTo(97);
+        assertThat(read.getContent()).extracting(Transaction::getTransactionId)
+                .containsExactly("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a51", "0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a52");
+        assertThat(read.getContent().get(1).getBalanceAfter()).isNull();
+    }
+
+    @Test
+    void versionOneTransactionsWithoutBalanceAfterStillDecode() throws IOException {
+        Transaction written = transaction("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b", null);
+
+        Transaction read = (Transaction) serializer.deserialize(versionOne(written, false));
+        assertTransaction(read, written);
+        assertThat(read.getBalanceAfter()).isNull();
+
+        @SuppressWarnings("unchecked")
+        Page<Transaction> page = (Page<Transaction>) serializer.deserialize(versionOne(written, true));
+        assertThat(page.getContent()).singleElement().satisfies(t -> assertTransaction(t, written));
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void otherValuesAndLegacyJsonGoThroughTheFallback() {
+        Map<String, Object> stats = new HashMap<>(Map.of("count", 3));
+        assertThat(roundTrip(stats)).isEqualTo(stats);
+
+        byte[] legacy = RedisCacheConfig.jsonSerializer().serialize(customer());
+        assertThat(serializer.deserialize(legacy)).usingRecursiveComparison().isEqualTo(customer());
+    }
+
+    @Test
+    void unknownVersionsAreRejected() {
+        byte[] bytes = serializer.serialize(customer());
+        bytes[2] = 9;
+
+        assertThatThrownBy(() -> serializer.deserialize(bytes))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("version 9");
+    }
+
+    private Object roundTrip(Object value) {
+        byte[] bytes = serializer.serialize(value);
+        assertThat(bytes[0]).isEqualTo((byte) 0xB1);
+        return serializer.deserialize(bytes);
+    }
+
+    private static void assertTransaction(Transaction read, Transaction written) {
+        assertThat(read.getTransactionId()).isEqualTo(written.getTransactionId());
+        assertThat(read.getWalletId()).isEqualTo(written.getWallet().getWalletId());
+        assertThat(read.getWallet().getWalletId()).isEqualTo(written.getWallet().getWalletId());
+        assertThat(read.getAmount()).isEqualTo(written.getAmount());
+        assertThat(read.getType()).isEqualTo(written.getType());
+        assertThat(read.getStatus()).isEqualTo(written.getStatus());
+        assertThat(read.getTransferId()).isEqualTo(written.getTransferId());
+        assertThat(read.getReference()).isEqualTo(written.getReference());
+        assertThat(read.getCreatedAt()).isEqualTo(written.getCreatedAt());
+        if (written.getRelatedWallet() != null) {
+            assertThat(read.getRelatedWallet().getWalletId()).isEqualTo(written.getRelatedWallet().getWalletId());
+        }
+    }
+
+    private static Customer customer() {
+        return Customer.builder()
+                .customerId(11L)
+                .name("Zoë \"Z\" Müller")
+                .email("zoe@example.com")
+                .createdAt(CREATED)
+                .updatedAt(CREATED)
+                .build();
+    }
+
+    private static Transaction transaction(String id, BigDecimal balanceAfter) {
+        return Transaction.builder()
+                .transactionId(id)
+                .wallet(Wallet.builder().walletId(3L).build())
+                .amount(Money.of(new BigDecimal("10.25")))
+                .type(Transaction.TransactionType.DEBIT)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .transferId("t-1")
+                .relatedWallet(Wallet.builder().walletId(4L).build())
+                .reference("rent")
+                .createdAt(CREATED)
+                .balanceAfter(Money.ofNullable(balanceAfter))
+                .build();
+    }
+
+    // the layout written before balanceAfter was added: same fields, schema version 1, nothing after createdAt
+    private static byte[] versionOne(Transaction t, boolean asPage) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(0xB1);
+        out.writeByte(asPage ? 4 : 3);
+        out.writeByte(1);
+        if (asPage) {
+            out.writeInt(0);
+            out.writeInt(20);
+            out.writeLong(1);
+            out.writeInt(1);
+        }
+        out.writeBoolean(true);
+        out.writeUTF(t.getTransactionId());
+        out.writeBoolean(true);
+        out.writeLong(t.getWallet().getWalletId());
+        BigDecimal amount = t.getAmount().toBigDecimal();
+        byte[] unscaled = amount.unscaledValue().toByteArray();
+        out.writeBoolean(true);
+        out.writeByte(amount.scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+        out.writeBoolean(true);
+        out.writeUTF(t.getType().name());
+        out.writeBoolean(true);
+        out.writeUTF(t.getStatus().name());
+        out.writeBoolean(true);
+        out.writeUTF(t.getTransferId());
+        out.writeBoolean(true);
+        out.writeLong(t.getRelatedWallet().getWalletId());
+        out.writeBoolean(true);
+        out.writeUTF(t.getReference());
+        out.writeBoolean(true);
+        out.writeLong(t.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(t.getCreatedAt().getNano());
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
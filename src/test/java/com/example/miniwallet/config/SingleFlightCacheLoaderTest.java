@@ -0,0 +1,115 @@
+package com.example.miniwallet.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightCacheLoaderTest {
+
+    private static final int CALLERS = 16;
+
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("wallets");
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+    private SingleFlightCacheLoader loader = new SingleFlightCacheLoader(cacheManager, registry, Duration.ofMinutes(5), false, 1.0);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+        loader.close();
+    }
+
+    @Test
+    void concurrentMissesRunTheLoaderOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callConcurrently(() -> loader.get("wallets", "wallet:1", String.class, () -> {
+            loads.incrementAndGet();
+            // hold the flight open until every other caller has joined it
+            awaitCount("coalesced", CALLERS - 1);
+            return "loaded";
+        }));
+
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("loaded");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(count("loaded")).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(CALLERS - 1);
+        assertThat(cacheManager.getCache("wallets").get("wallet:1", String.class)).isEqualTo("loaded");
+
+        // the next caller is a plain hit
+        assertThat(loader.get("wallets", "wallet:1", String.class, () -> "unused")).isEqualTo("loaded");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void aFailedLoadReachesEveryWaiterAndIsNotRemembered() throws Exception {
+        List<Future<String>> results = callConcurrently(() -> loader.get("wallets", "wallet:2", String.class, () -> {
+            awaitCount("coalesced", CALLERS - 1);
+            throw new IllegalStateException("db down");
+        }));
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseMessage("db down");
+        }
+        assertThat(cacheManager.getCache("wallets").get("wallet:2")).isNull();
+        assertThat(loader.get("wallets", "wallet:2", String.class, () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void aHitCloseToExpiryRefreshesInTheBackground() throws Exception {
+        loader.close();
+        // a huge beta makes the XFetch head start dwarf the TTL, so the first hit always refreshes
+        loader = new SingleFlightCacheLoader(cacheManager, registry, Duration.ofMinutes(5), true, 1e12);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(loader.get("wallets", "wallet:3", String.class, () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(loader.get("wallets", "wallet:3", String.class, () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"v2".equals(cacheManager.getCache("wallets").get("wallet:3", String.class))) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        assertThat(count("early_refresh")).isEqualTo(1);
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<Future<String>> callConcurrently(Callable<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(pool.submit(call));
+        }
+        return results;
+    }
+
+    private void awaitCount(String outcome, long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count(outcome) < expected && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private double count(String outcome) {
+        var counter = registry.find("miniwallet.cache.loads").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
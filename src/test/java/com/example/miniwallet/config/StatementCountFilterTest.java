@@ -0,0 +1,61 @@
+package com.example.miniwallet.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Requests against an in-memory H2 reached through a {@link BulkheadDataSource}, as the application wires it. */
+class StatementCountFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StatementCountFilter filter = new StatementCountFilter(meterRegistry);
+
+    @Test
+    void jdbcTemplateStatementsAreCountedWithAndWithoutTheLimit() throws Exception {
+        for (int limit : new int[]{0, 2}) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new BulkheadDataSource(h2(), limit, Duration.ofSeconds(1)));
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS events (id BIGINT AUTO_INCREMENT PRIMARY KEY, payload VARCHAR(20))");
+
+            filter.doFilter(request("POST"), new MockHttpServletResponse(), (req, res) -> {
+                jdbcTemplate.update("INSERT INTO events (payload) VALUES (?)", "a");
+                jdbcTemplate.batchUpdate("INSERT INTO events (payload) VALUES (?)", List.of(new Object[]{"b"}, new Object[]{"c"}));
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class);
+            });
+        }
+
+        // insert + one batch + select, twice; statements outside a request are not recorded
+        DistributionSummary summary = meterRegistry.get("miniwallet.db.statements").tag("method", "POST").summary();
+        assertThat(summary.count()).isEqualTo(2);
+        assertThat(summary.totalAmount()).isEqualTo(6);
+    }
+
+    @Test
+    void nonStandardMethodsShareOneTagValue() throws Exception {
+        filter.doFilter(request("PROPFIND"), new MockHttpServletResponse(), (req, res) -> { });
+        filter.doFilter(request("X-" + System.nanoTime()), new MockHttpServletResponse(), (req, res) -> { });
+        filter.doFilter(request("GET"), new MockHttpServletResponse(), (req, res) -> { });
+
+        assertThat(meterRegistry.get("miniwallet.db.statements").tag("method", "UNKNOWN").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("miniwallet.db.statements").tag("method", "GET").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("miniwallet.db.statements").summaries()).hasSize(2);
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        return new MockHttpServletRequest(method, "/api/wallets");
+    }
+
+    private static JdbcDataSource h2() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:statement-count;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
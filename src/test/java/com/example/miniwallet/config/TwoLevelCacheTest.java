@@ -0,0 +1,95 @@
+package com.example.miniwallet.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Two nodes sharing one remote tier, with pub/sub replaced by direct delivery to every bus. */
+class TwoLevelCacheTest {
+
+    private final ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+    private final List<CacheInvalidationBus> buses = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Cache nodeA;
+    private Cache nodeB;
+
+    @BeforeEach
+    void nodes() {
+        nodeA = node().getCache("wallets");
+        nodeB = node().getCache("wallets");
+    }
+
+    @Test
+    void aWriteOnOneNodeDropsTheNearCopyOnTheOther() {
+        nodeA.put("wallet:1", "v1");
+        assertThat(nodeB.get("wallet:1").get()).isEqualTo("v1");
+
+        nodeA.put("wallet:1", "v2");
+
+        // without the invalidation node B would keep serving v1 from its near tier until the TTL
+        assertThat(nodeB.get("wallet:1").get()).isEqualTo("v2");
+        assertThat(nodeA.get("wallet:1").get()).isEqualTo("v2");
+    }
+
+    @Test
+    void evictAndClearReachEveryNode() {
+        nodeA.put("wallet:1", "v1");
+        nodeA.put("wallet:2", "v1");
+        nodeB.get("wallet:1");
+        nodeB.get("wallet:2");
+
+        nodeA.evict("wallet:1");
+        assertThat(nodeB.get("wallet:1")).isNull();
+        assertThat(nodeB.get("wallet:2").get()).isEqualTo("v1");
+
+        nodeB.clear();
+        assertThat(nodeA.get("wallet:2")).isNull();
+    }
+
+    @Test
+    void lookupsAreCountedByTier() {
+        nodeA.put("wallet:1", "v1");
+
+        nodeB.get("wallet:1");
+        nodeB.get("wallet:1");
+        nodeB.get("wallet:9");
+        assertThat(nodeB.get("wallet:8", () -> "loaded")).isEqualTo("loaded");
+
+        assertThat(count("remote_hit")).isEqualTo(1);
+        assertThat(count("near_hit")).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(2);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("miniwallet.cache.gets").tag("cache", "wallets").tag("result", result).counter().count();
+    }
+
+    private TwoLevelCacheManager node() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        StringRedisTemplate fanOut = new StringRedisTemplate() {
+            @Override
+            public Long convertAndSend(String channel, Object message) {
+                byte[] body = message.toString().getBytes(StandardCharsets.UTF_8);
+                buses.forEach(bus -> bus.onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body), null));
+                return (long) buses.size();
+            }
+        };
+        CacheInvalidationBus bus = new CacheInvalidationBus(fanOut, objectMapper, new RedisMessageListenerContainer());
+        buses.add(bus);
+        return new TwoLevelCacheManager(remote, bus, 100, Duration.ofMinutes(10), Map.of(), meterRegistry);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.miniwallet.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    private static final Money MAX = Money.ofUnits(Long.MAX_VALUE);
+    private static final Money MIN = Money.ofUnits(Long.MIN_VALUE);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void arithmeticMatchesBigDecimalAtScaleFour() {
+        Money a = Money.of(new BigDecimal("1250.5"));
+        Money b = Money.of(new BigDecimal("0.0001"));
+
+        assertThat(a.plus(b).toBigDecimal()).isEqualTo(new BigDecimal("1250.5001"));
+        assertThat(b.minus(a).toBigDecimal()).isEqualTo(new BigDecimal("-1250.4999"));
+        assertThat(a.negate().signum()).isEqualTo(-1);
+        assertThat(a.min(b)).isSameAs(b);
+        assertThat(b.isLessThan(a)).isTrue();
+        assertThat(a.plus(Money.ZERO)).isSameAs(a);
+        assertThat(a.minus(a)).isSameAs(Money.ZERO);
+        // equal values compare equal whatever scale they came in with, unlike BigDecimal.equals
+        assertThat(Money.of(new BigDecimal("12.5"))).isEqualTo(Money.of(new BigDecimal("12.50000")))
+                .hasSameHashCodeAs(Money.of(new BigDecimal("12.50000")));
+    }
+
+    @Test
+    void inputIsRoundedHalfUpToFourPlaces() {
+        assertThat(Money.of(new BigDecimal("0.12345")).units()).isEqualTo(1235);
+        assertThat(Money.of(new BigDecimal("0.12344")).units()).isEqualTo(1234);
+        assertThat(Money.of(new BigDecimal("-0.12345")).units()).isEqualTo(-1235);
+        assertThat(Money.ofNullable(null)).isNull();
+    }
+
+    @Test
+    void overflowThrowsInsteadOfWrapping() {
+        assertThatThrownBy(() -> MAX.plus(Money.ofUnits(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> MIN.minus(Money.ofUnits(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(MIN::negate).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("922337203685477.5808"))).isInstanceOf(ArithmeticException.class);
+        assertThat(Money.of(new BigDecimal("922337203685477.5807"))).isEqualTo(MAX);
+    }
+
+    @Test
+    void toStringIsThePlainScaleFourForm() {
+        assertThat(Money.ZERO).hasToString("0.0000");
+        assertThat(Money.ofUnits(-500)).hasToString("-0.0500");
+        assertThat(Money.ofUnits(125_000)).hasToString("12.5000");
+        assertThat(MAX).hasToString("922337203685477.5807");
+        assertThat(MIN).hasToString("-922337203685477.5808");
+    }
+
+    @Test
+    void jsonIsTheSameNumberABigDecimalBalanceProduced() throws Exception {
+        assertThat(objectMapper.writeValueAsString(Money.ofUnits(125_000))).isEqualTo("12.5000");
+        assertThat(objectMapper.writeValueAsString(Money.ofUnits(-1))).isEqualTo("-0.0001");
+
+        assertThat(objectMapper.readValue("12.5", Money.class)).isEqualTo(Money.ofUnits(125_000));
+        assertThat(objectMapper.readValue("\" 12.5 \"", Money.class)).isEqualTo(Money.ofUnits(125_000));
+        assertThat(objectMapper.readValue("1e2", Money.class)).isEqualTo(Money.ofUnits(1_000_000));
+        assertThat(objectMapper.readValue("0.00005", Money.class)).isEqualTo(Money.ofUnits(1));
+        for (Money value : new Money[]{Money.ZERO, MAX, MIN, Money.ofUnits(-123_456_789)}) {
+            assertThat(objectMapper.readValue(objectMapper.writeValueAsString(value), Money.class)).isEqualTo(value);
+        }
+    }
+}
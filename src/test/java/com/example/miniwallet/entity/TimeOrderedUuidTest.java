@@ -0,0 +1,57 @@
+package com.example.miniwallet.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidTest {
+
+    @Test
+    void idsAreVersion7WithIetfVariant() {
+        UUID id = TimeOrderedUuid.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void idsFromOneJvmIncreaseInStoredByteOrder() {
+        List<byte[]> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UuidBinaryConverter.toBytes(TimeOrderedUuid.next().toString()));
+        }
+
+        // BINARY(16) compares unsigned bytes left to right, which is what the clustered index sees
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(Arrays.compareUnsigned(ids.get(i - 1), ids.get(i))).isNegative();
+        }
+    }
+
+    @Test
+    void leadingBitsCarryTheCreationTime() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuid.next();
+        long after = System.currentTimeMillis();
+
+        // more than 4096 ids in one millisecond borrow from the next ones, so allow some lead
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertThat(millis).isBetween(before, after + 1_000);
+    }
+
+    @Test
+    void binaryFormRoundTripsTheStringForm() {
+        String id = TimeOrderedUuid.next().toString();
+
+        byte[] bytes = UuidBinaryConverter.toBytes(id);
+
+        assertThat(bytes).hasSize(16);
+        assertThat(UuidBinaryConverter.fromBytes(bytes)).isEqualTo(id);
+        assertThat(UuidBinaryConverter.toBytes(null)).isNull();
+        assertThat(UuidBinaryConverter.fromBytes(null)).isNull();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.miniwallet.entity;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.service.CustomerService;
+import com.example.miniwallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionIdMappingTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void idIsStoredAsSixteenBytesAndReadBackAsTheSameString() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+
+        Transaction tx = walletService.deposit(wallet.getWalletId(), new BigDecimal("12.50"), "id-mapping");
+
+        byte[] stored = jdbcTemplate.queryForObject(
+                "SELECT id FROM transactions WHERE wallet_id = ?", byte[].class, wallet.getWalletId());
+        assertThat(stored).isEqualTo(UuidBinaryConverter.toBytes(tx.getTransactionId()));
+        assertThat(transactionRepository.findById(tx.getTransactionId()))
+                .hasValueSatisfying(found -> assertThat(found.getAmount()).isEqualTo(Money.of(new BigDecimal("12.50"))));
+    }
+}
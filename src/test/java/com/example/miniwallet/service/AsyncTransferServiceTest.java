@@ -0,0 +1,130 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.repository.TransactionRepository;
+import com.example.miniwallet.service.ledger.LedgerEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AsyncTransferServiceTest {
+
+    // the largest balance Money can hold; any credit to a wallet holding it overflows
+    private static final String MONEY_MAX = "922337203685477.5807";
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private RunningBalanceBackfill backfill;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void aTransferThatCannotSettleHoldsBackOnlyItsOwnSourceWallet() throws Exception {
+        Wallet source = TestWallets.create(customerService, walletService, "100");
+        Wallet other = TestWallets.create(customerService, walletService, "100");
+        Wallet target = TestWallets.create(customerService, walletService, "0");
+        Wallet full = TestWallets.create(customerService, walletService, "0");
+        jdbcTemplate.update("UPDATE wallets SET balance = ? WHERE id = ?", new BigDecimal(MONEY_MAX), full.getWalletId());
+
+        // one lane, so every transfer below queues behind the poisoned one
+        try (AsyncTransferService async = new AsyncTransferService(walletService, transactionRepository,
+                context.getBeanProvider(LedgerEngine.class), true, 1, 50, Duration.ZERO)) {
+            String first = transferId(async.submit(source.getWalletId(), target.getWalletId(), BigDecimal.ONE, null, "first"));
+            String poisoned = transferId(async.submit(source.getWalletId(), full.getWalletId(), BigDecimal.ONE, null, "poisoned"));
+            String behind = transferId(async.submit(source.getWalletId(), target.getWalletId(), new BigDecimal("2"), null, "behind"));
+            String unrelated = transferId(async.submit(other.getWalletId(), target.getWalletId(), new BigDecimal("5"), null, "unrelated"));
+
+            awaitSettled(unrelated);
+            assertThat(status(first)).isEqualTo(Transaction.TransactionStatus.SUCCESS);
+            assertThat(status(unrelated)).isEqualTo(Transaction.TransactionStatus.SUCCESS);
+            assertThat(status(poisoned)).isEqualTo(Transaction.TransactionStatus.INITIATED);
+            // not overtaken, even though it could have settled on its own
+            assertThat(status(behind)).isEqualTo(Transaction.TransactionStatus.INITIATED);
+
+            // once the poisoned transfer can go through, the sweep settles both, in their original order
+            jdbcTemplate.update("UPDATE wallets SET balance = 0 WHERE id = ?", full.getWalletId());
+            async.requeueStale();
+            awaitSettled(behind);
+
+            assertThat(status(poisoned)).isEqualTo(Transaction.TransactionStatus.SUCCESS);
+            assertThat(status(behind)).isEqualTo(Transaction.TransactionStatus.SUCCESS);
+            assertThat(debitBalanceAfter(first)).isEqualByComparingTo("99");
+            assertThat(debitBalanceAfter(poisoned)).isEqualByComparingTo("98");
+            assertThat(debitBalanceAfter(behind)).isEqualByComparingTo("96");
+        }
+    }
+
+    @Test
+    void aDepositMadeWhileATransferIsPendingComesBeforeItInTheHistory() {
+        Wallet source = TestWallets.create(customerService, walletService, "100");
+        Wallet target = TestWallets.create(customerService, walletService, "0");
+
+        String pending = transferId(walletService.initiateTransfer(
+                source.getWalletId(), target.getWalletId(), new BigDecimal("30"), null, "pending"));
+        walletService.deposit(source.getWalletId(), new BigDecimal("50"), "meanwhile");
+        walletService.settleInitiatedTransfers(List.of(pending));
+
+        // the transfer moved money after the deposit, so it is listed after it and continues from its balance
+        List<Transaction> history = transactionRepository.findByWalletIdOrderByCreatedAtDesc(source.getWalletId());
+        assertThat(history).extracting(Transaction::getReference).containsExactly("pending", "meanwhile", "seed");
+        assertThat(history).extracting(t -> t.getBalanceAfter().toBigDecimal())
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("120"), new BigDecimal("150"), new BigDecimal("100"));
+
+        // the backfill walks the same order back from the balance and arrives at the same values
+        jdbcTemplate.update("UPDATE transactions SET balance_after = NULL WHERE wallet_id = ?", source.getWalletId());
+        backfill.fillWallet(source.getWalletId(), false, false);
+        assertThat(transactionRepository.findByWalletIdOrderByCreatedAtDesc(source.getWalletId()))
+                .extracting(t -> t.getBalanceAfter().toBigDecimal())
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("120"), new BigDecimal("150"), new BigDecimal("100"));
+    }
+
+    private static String transferId(List<Transaction> legs) {
+        return legs.get(0).getTransferId();
+    }
+
+    private Transaction.TransactionStatus status(String transferId) {
+        return debit(transferId).getStatus();
+    }
+
+    private BigDecimal debitBalanceAfter(String transferId) {
+        return debit(transferId).getBalanceAfter().toBigDecimal();
+    }
+
+    private Transaction debit(String transferId) {
+        return transactionRepository.findByTransferId(transferId).stream()
+                .filter(t -> t.getType() == Transaction.TransactionType.DEBIT)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void awaitSettled(String transferId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (status(transferId) == Transaction.TransactionStatus.INITIATED) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
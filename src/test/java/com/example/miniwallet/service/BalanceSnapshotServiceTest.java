@@ -0,0 +1,108 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.entity.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BalanceSnapshotServiceTest {
+
+    private static final LocalDate DAY_1 = LocalDate.of(2024, 2, 1);
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private BalanceSnapshotService snapshotService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void resetProgress() {
+        jdbcTemplate.update("DELETE FROM balance_snapshot_progress");
+    }
+
+    @Test
+    void firstRunBackfillsHistoryAndBalancesAsOfStartFromTheNearestSnapshot() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        insert(wallet, DAY_1.atTime(10, 0), "CREDIT", "SUCCESS", "100");
+        insert(wallet, DAY_1.atTime(15, 0), "DEBIT", "SUCCESS", "30");
+        insert(wallet, DAY_1.plusDays(1).atTime(9, 0), "CREDIT", "SUCCESS", "50");
+        insert(wallet, DAY_1.plusDays(1).atTime(10, 0), "CREDIT", "FAILED", "999");
+        insert(wallet, DAY_1.plusDays(1).atTime(18, 0), "DEBIT", "SUCCESS", "20");
+        insert(wallet, DAY_1.plusDays(2).atTime(12, 0), "CREDIT", "SUCCESS", "5");
+
+        snapshotService.closeFinishedDays();
+
+        assertThat(closingBalances(wallet)).containsExactly(
+                Map.entry(DAY_1, new BigDecimal("70.0000")),
+                Map.entry(DAY_1.plusDays(1), new BigDecimal("100.0000")),
+                Map.entry(DAY_1.plusDays(2), new BigDecimal("105.0000")));
+        assertThat(closedThrough()).isEqualTo(LocalDate.now().minusDays(1));
+
+        BalanceSnapshotService.BalanceAsOf midDay = snapshotService.balanceAsOf(wallet.getWalletId(), DAY_1.plusDays(1).atTime(12, 0));
+        assertThat(midDay.balance()).isEqualByComparingTo("120");
+        assertThat(midDay.snapshotDate()).isEqualTo(DAY_1);
+        assertThat(snapshotService.balanceAsOf(wallet.getWalletId(), DAY_1.atTime(9, 0)).balance()).isEqualByComparingTo("0");
+        assertThat(snapshotService.balanceAsOf(wallet.getWalletId(), LocalDateTime.now()).balance()).isEqualByComparingTo("105");
+    }
+
+    @Test
+    void aDayWithInitiatedTransfersStaysOpenUntilTheySettle() {
+        LocalDate today = LocalDate.now();
+        jdbcTemplate.update("INSERT INTO balance_snapshot_progress (id, closed_through) VALUES (1, ?)", Date.valueOf(today.minusDays(3)));
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        insert(wallet, today.minusDays(2).atTime(9, 0), "CREDIT", "SUCCESS", "40");
+        byte[] pending = insert(wallet, today.minusDays(2).atTime(11, 0), "CREDIT", "INITIATED", "10");
+        insert(wallet, today.minusDays(1).atTime(10, 0), "CREDIT", "SUCCESS", "1");
+
+        snapshotService.closeFinishedDays();
+
+        assertThat(closedThrough()).isEqualTo(today.minusDays(3));
+        assertThat(closingBalances(wallet)).isEmpty();
+
+        jdbcTemplate.update("UPDATE transactions SET status = 'SUCCESS' WHERE id = ?", (Object) pending);
+        snapshotService.closeFinishedDays();
+
+        assertThat(closedThrough()).isEqualTo(today.minusDays(1));
+        assertThat(closingBalances(wallet)).containsExactly(
+                Map.entry(today.minusDays(2), new BigDecimal("50.0000")),
+                Map.entry(today.minusDays(1), new BigDecimal("51.0000")));
+    }
+
+    private byte[] insert(Wallet wallet, LocalDateTime createdAt, String type, String status, String amount) {
+        byte[] id = UuidBinaryConverter.toBytes(UUID.randomUUID().toString());
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                id, wallet.getWalletId(), new BigDecimal(amount), type, status, Timestamp.valueOf(createdAt));
+        return id;
+    }
+
+    private List<Map.Entry<LocalDate, BigDecimal>> closingBalances(Wallet wallet) {
+        return jdbcTemplate.query("SELECT balance_date, closing_balance FROM wallet_daily_balances WHERE wallet_id = ? ORDER BY balance_date",
+                (rs, rowNum) -> Map.entry(rs.getDate("balance_date").toLocalDate(), rs.getBigDecimal("closing_balance")),
+                wallet.getWalletId());
+    }
+
+    private LocalDate closedThrough() {
+        return jdbcTemplate.queryForObject("SELECT closed_through FROM balance_snapshot_progress", Date.class).toLocalDate();
+    }
+}
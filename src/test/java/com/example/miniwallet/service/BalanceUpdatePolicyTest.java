@@ -0,0 +1,142 @@
+package com.example.miniwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BalanceUpdatePolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void pessimisticModeNeverUsesConditionalUpdates() {
+        BalanceUpdatePolicy policy = policy("pessimistic", 0.05, 1, Duration.ZERO, Duration.ofMinutes(1), 1);
+
+        assertThat(policy.useConditional()).isFalse();
+        assertThat(gauge()).isZero();
+    }
+
+    @Test
+    void conflictsAtTheRateSwitchToRowLocksUntilTheFallbackEnds() throws Exception {
+        BalanceUpdatePolicy policy = policy("conditional", 0.5, 4, Duration.ofMillis(200), Duration.ofMillis(300), 1);
+        assertThat(policy.useConditional()).isTrue();
+
+        // 2 conflicts in 4 attempts once the window closes: 50%, at the threshold
+        conflict(policy);
+        conflict(policy);
+        policy.withRetry(() -> "ok");
+        Thread.sleep(250);
+        policy.withRetry(() -> "ok");
+
+        assertThat(policy.useConditional()).isFalse();
+        assertThat(gauge()).isZero();
+
+        Thread.sleep(350);
+        assertThat(policy.useConditional()).isTrue();
+        assertThat(gauge()).isOne();
+    }
+
+    @Test
+    void windowsBelowTheRateOrTheMinimumSamplesKeepConditionalUpdates() throws Exception {
+        BalanceUpdatePolicy policy = policy("conditional", 0.5, 4, Duration.ofMillis(100), Duration.ofMinutes(1), 1);
+
+        // 1 conflict in 4: below the rate
+        conflict(policy);
+        policy.withRetry(() -> "ok");
+        policy.withRetry(() -> "ok");
+        Thread.sleep(150);
+        policy.withRetry(() -> "ok");
+        assertThat(policy.useConditional()).isTrue();
+
+        // 2 conflicts in 3: over the rate, but too few samples to judge
+        conflict(policy);
+        conflict(policy);
+        Thread.sleep(150);
+        policy.withRetry(() -> "ok");
+        assertThat(policy.useConditional()).isTrue();
+    }
+
+    @Test
+    void conflictsAreRetriedAndCountedByReason() {
+        BalanceUpdatePolicy policy = policy("pessimistic", 0.05, 100, Duration.ofMinutes(1), Duration.ofMinutes(1), 3);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.withRetry(() -> switch (calls.incrementAndGet()) {
+            case 1 -> throw deadlock();
+            case 2 -> throw lockTimeout();
+            default -> "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(calls).hasValue(3);
+        assertThat(conflicts("deadlock")).isEqualTo(1);
+        assertThat(conflicts("lock_timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void theLastConflictIsRethrownOnceAttemptsRunOut() {
+        BalanceUpdatePolicy policy = policy("pessimistic", 0.05, 100, Duration.ofMinutes(1), Duration.ofMinutes(1), 3);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.withRetry(() -> {
+            calls.incrementAndGet();
+            throw lockTimeout();
+        })).isInstanceOf(CannotAcquireLockException.class);
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void insideATransactionTheConflictIsNotRetried() {
+        BalanceUpdatePolicy policy = policy("pessimistic", 0.05, 100, Duration.ofMinutes(1), Duration.ofMinutes(1), 3);
+        AtomicInteger calls = new AtomicInteger();
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(() -> policy.withRetry(() -> {
+                calls.incrementAndGet();
+                throw deadlock();
+            })).isInstanceOf(CannotAcquireLockException.class);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        // the caller's transaction is already doomed; only the outermost withRetry may run it again
+        assertThat(calls).hasValue(1);
+        assertThat(meterRegistry.find("miniwallet.wallet.lock.conflicts").counter()).isNull();
+    }
+
+    private BalanceUpdatePolicy policy(String mode, double conflictRate, long minSamples, Duration window,
+                                       Duration fallbackDuration, int maxAttempts) {
+        return new BalanceUpdatePolicy(mode, conflictRate, minSamples, window, fallbackDuration, maxAttempts,
+                Duration.ofMillis(1), Duration.ofMillis(2), meterRegistry);
+    }
+
+    private static void conflict(BalanceUpdatePolicy policy) {
+        assertThatThrownBy(() -> policy.withRetry(() -> {
+            throw lockTimeout();
+        })).isInstanceOf(CannotAcquireLockException.class);
+    }
+
+    private static CannotAcquireLockException deadlock() {
+        return new CannotAcquireLockException("deadlock", new SQLException("Deadlock found", "40001", 1213));
+    }
+
+    private static CannotAcquireLockException lockTimeout() {
+        return new CannotAcquireLockException("lock wait", new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+    }
+
+    private double gauge() {
+        return meterRegistry.get("miniwallet.wallet.balance_update.conditional").gauge().value();
+    }
+
+    private double conflicts(String reason) {
+        return meterRegistry.get("miniwallet.wallet.lock.conflicts").tag("reason", reason).counter().count();
+    }
+}
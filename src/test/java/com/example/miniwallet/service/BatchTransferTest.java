@@ -0,0 +1,125 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.dto.TransferRequestDto;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Wallet;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BatchTransferTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+
+    @Test
+    void failedItemsAreReportedWithoutAffectingTheRest() {
+        Wallet a = TestWallets.create(customerService, walletService, "100");
+        Wallet b = TestWallets.create(customerService, walletService, "0");
+        String processed = UUID.randomUUID().toString();
+        walletService.transfer(a.getWalletId(), b.getWalletId(), new BigDecimal("10"), processed, "earlier");
+        String repeated = UUID.randomUUID().toString();
+
+        List<BatchTransferOutcome> outcomes = walletService.transferBatch(Arrays.asList(
+                item(a, b, "30", null),
+                item(b, a, "1000", null),
+                item(a, a, "1", null),
+                TransferRequestDto.builder().fromWalletId(a.getWalletId()).toWalletId(Long.MAX_VALUE)
+                        .amount(BigDecimal.ONE).build(),
+                null,
+                item(a, b, "5", repeated),
+                item(a, b, "5", repeated),
+                item(a, b, "5", processed),
+                item(a, b, "0", null),
+                item(a, b, "1", "x".repeat(37)),
+                item(b, a, "2", null)));
+
+        assertThat(outcomes).extracting(BatchTransferOutcome::isSuccess)
+                .containsExactly(true, false, false, false, false, true, false, false, false, false, true);
+        assertThat(outcomes.get(1).getError()).contains("insufficient funds");
+        assertThat(outcomes.get(3).getError()).contains("Wallet not found");
+        assertThat(outcomes.get(4).getError()).isEqualTo("transfer is required");
+        assertThat(outcomes.get(6).getError()).contains("repeated in batch");
+        assertThat(outcomes.get(7).getError()).contains("already processed");
+        assertThat(outcomes).extracting(BatchTransferOutcome::getIndex)
+                .containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        // 100 - 10 - 30 - 5 + 2 on a, the rest on b
+        assertThat(balance(a)).isEqualTo(money("57"));
+        assertThat(balance(b)).isEqualTo(money("43"));
+    }
+
+    @Test
+    void batchesAndSingleTransfersOnAHotWalletDoNotDeadlock() throws Exception {
+        // the hot wallet has the smallest id, so a batch that locked every row first would hold b and c
+        // while waiting for a's shards, and a single a->b transfer holds a's shards while waiting for b
+        Wallet a = TestWallets.create(customerService, walletService, "1000");
+        Wallet b = TestWallets.create(customerService, walletService, "1000");
+        Wallet c = TestWallets.create(customerService, walletService, "1000");
+        walletService.enableHotMode(a.getWalletId(), 4);
+
+        int rounds = 15;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    List<BatchTransferOutcome> outcomes = walletService.transferBatch(List.of(
+                            item(a, b, "1", null), item(b, c, "1", null), item(c, a, "1", null)));
+                    assertThat(outcomes).allMatch(BatchTransferOutcome::isSuccess);
+                }
+                return null;
+            }));
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    walletService.transfer(a.getWalletId(), b.getWalletId(), BigDecimal.ONE, null, "single");
+                    walletService.transfer(b.getWalletId(), a.getWalletId(), BigDecimal.ONE, null, "single");
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(120, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(balance(a)).isEqualTo(money("1000"));
+        assertThat(balance(b)).isEqualTo(money("1000"));
+        assertThat(balance(c)).isEqualTo(money("1000"));
+    }
+
+    private static TransferRequestDto item(Wallet from, Wallet to, String amount, String transferId) {
+        return TransferRequestDto.builder()
+                .fromWalletId(from.getWalletId())
+                .toWalletId(to.getWalletId())
+                .amount(new BigDecimal(amount))
+                .transferId(transferId)
+                .build();
+    }
+
+    private Money balance(Wallet wallet) {
+        return walletService.getById(wallet.getWalletId()).getBalance();
+    }
+
+    private static Money money(String value) {
+        return Money.of(new BigDecimal(value));
+    }
+}
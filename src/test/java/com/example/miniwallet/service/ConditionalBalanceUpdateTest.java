@@ -0,0 +1,170 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.InsufficientFundsException;
+import com.example.miniwallet.exception.ResourceNotFoundException;
+import com.example.miniwallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Balance changes as single guarded UPDATEs, where the affected-row count decides the outcome. */
+@SpringBootTest(properties = "wallet.balance-update.mode=conditional")
+@ActiveProfiles("test")
+class ConditionalBalanceUpdateTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private BalanceUpdatePolicy balanceUpdatePolicy;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void conditionalModeIsActive() {
+        assertThat(balanceUpdatePolicy.useConditional()).isTrue();
+    }
+
+    @Test
+    void aDebitThatMatchesNoRowIsInsufficientFundsAndWritesNothing() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "10");
+
+        assertThatThrownBy(() -> walletService.withdraw(wallet.getWalletId(), new BigDecimal("10.0001"), "too much"))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        assertThat(rowBalance(wallet.getWalletId())).isEqualByComparingTo("10");
+        assertThat(debits(wallet.getWalletId())).isZero();
+
+        walletService.withdraw(wallet.getWalletId(), new BigDecimal("10"), "all of it");
+        assertThat(rowBalance(wallet.getWalletId())).isEqualByComparingTo("0");
+        assertThat(debits(wallet.getWalletId())).isOne();
+    }
+
+    @Test
+    void aMissingWalletIsNotFoundRatherThanShort() {
+        assertThatThrownBy(() -> walletService.withdraw(Long.MAX_VALUE, BigDecimal.ONE, "nobody"))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> walletService.deposit(Long.MAX_VALUE, BigDecimal.ONE, "nobody"))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void hotWalletsMatchNoRowAndTakeTheShardPath() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+
+        walletService.deposit(wallet.getWalletId(), new BigDecimal("5"), "credit");
+        walletService.withdraw(wallet.getWalletId(), new BigDecimal("30"), "debit");
+
+        // the guarded UPDATEs skip shard_count > 1, so the wallet row itself never moved
+        assertThat(rowBalance(wallet.getWalletId())).isEqualByComparingTo("0");
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(balance) FROM wallet_balance_shards WHERE wallet_id = ?",
+                BigDecimal.class, wallet.getWalletId())).isEqualByComparingTo("75");
+    }
+
+    @Test
+    void aShortTransferRollsBackTheLegAlreadyApplied() {
+        // the credit goes first (lower id), so the failed debit has to undo it
+        Wallet to = TestWallets.create(customerService, walletService, "0");
+        Wallet from = TestWallets.create(customerService, walletService, "5");
+
+        assertThatThrownBy(() -> walletService.transfer(from.getWalletId(), to.getWalletId(), new BigDecimal("6"), null, "short"))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        assertThat(rowBalance(from.getWalletId())).isEqualByComparingTo("5");
+        assertThat(rowBalance(to.getWalletId())).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void concurrentDebitsNeverTakeTheBalanceBelowZero() throws Exception {
+        Wallet wallet = TestWallets.create(customerService, walletService, "20");
+        Long id = wallet.getWalletId();
+
+        int threads = 8;
+        int perThread = 5;
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        balanceUpdatePolicy.withRetry(() -> walletService.withdraw(id, BigDecimal.ONE, "debit"));
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException ex) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // 40 attempts on a balance of 20: the balance >= amount guard lets exactly 20 through
+        assertThat(succeeded).hasValue(20);
+        assertThat(rejected).hasValue(20);
+        assertThat(rowBalance(id)).isEqualByComparingTo("0");
+        assertThat(debits(id)).isEqualTo(20);
+    }
+
+    @Test
+    void aWalletTheCallerAlreadyLoadedIsPatchedRatherThanReadAgain() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "10");
+        Long id = wallet.getWalletId();
+        Integer version = jdbcTemplate.queryForObject("SELECT version FROM wallets WHERE id = ?", Integer.class, id);
+
+        List<Transaction> written = transactionTemplate.execute(status -> {
+            Wallet loaded = walletRepository.findById(id).orElseThrow();
+            Transaction deposit = walletService.deposit(id, new BigDecimal("5"), "joined");
+            Transaction withdrawal = walletService.withdraw(id, new BigDecimal("3"), "joined");
+            assertThat(loaded.getBalance().toBigDecimal()).isEqualByComparingTo("12");
+            assertThat(loaded.getVersion()).isEqualTo(version + 2);
+            return List.of(deposit, withdrawal);
+        });
+
+        assertThat(written).extracting(t -> t.getBalanceAfter().toBigDecimal())
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("15"), new BigDecimal("12"));
+        // the commit found nothing to write back: only the two guarded UPDATEs moved the row
+        assertThat(rowBalance(id)).isEqualByComparingTo("12");
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM wallets WHERE id = ?", Integer.class, id))
+                .isEqualTo(version + 2);
+    }
+
+    private BigDecimal rowBalance(Long walletId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallets WHERE id = ?", BigDecimal.class, walletId);
+    }
+
+    private int debits(Long walletId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE wallet_id = ? AND type = 'DEBIT'",
+                Integer.class, walletId);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.dto.DisbursementItemDto;
+import com.example.miniwallet.entity.Disbursement;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// several chunks per campaign
+@SpringBootTest(properties = "wallet.disbursement.chunk-size=3")
+@ActiveProfiles("test")
+class DisbursementServiceTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private DisbursementService disbursementService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void aPausedCampaignResumesWithoutPayingAnyItemTwice() throws Exception {
+        Wallet source = TestWallets.create(customerService, walletService, "35");
+        List<Wallet> destinations = wallets(8);
+
+        // 8 x 10 needs 80: three full items fit, the fourth pauses the campaign
+        Disbursement campaign = disbursementService.create(null, source.getWalletId(), "cashback", items(destinations, "10"));
+        Disbursement paused = awaitStatus(campaign.getCampaignId(), Disbursement.Status.PAUSED);
+        assertThat(paused.getPaidItems()).isEqualTo(3);
+        assertThat(paused.getLastError()).contains("insufficient funds");
+
+        walletService.deposit(source.getWalletId(), new BigDecimal("100"), "top-up");
+        disbursementService.resume(campaign.getCampaignId());
+        Disbursement completed = awaitStatus(campaign.getCampaignId(), Disbursement.Status.COMPLETED);
+
+        assertThat(completed.getPaidItems()).isEqualTo(8);
+        assertThat(completed.getAmountPaid()).isEqualByComparingTo("80");
+        for (Wallet destination : destinations) {
+            assertThat(credits(campaign.getCampaignId(), destination)).isEqualTo(1);
+            assertThat(balance(destination)).isEqualByComparingTo("10");
+        }
+        assertThat(balance(source)).isEqualByComparingTo("55");
+    }
+
+    @Test
+    void aChunkThatLosesALockWaitIsRetriedInsteadOfPausingTheCampaign() throws Exception {
+        Wallet source = TestWallets.create(customerService, walletService, "100");
+        List<Wallet> destinations = wallets(4);
+        CountDownLatch locked = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // longer than one lock wait (5s in the test profile), shorter than two
+            Future<?> holder = pool.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM wallets WHERE id = ? FOR UPDATE", destinations.get(0).getWalletId());
+                locked.countDown();
+                try {
+                    Thread.sleep(6000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Disbursement campaign = disbursementService.create(null, source.getWalletId(), "retry", items(destinations, "5"));
+            Disbursement completed = awaitStatus(campaign.getCampaignId(), Disbursement.Status.COMPLETED);
+            holder.get(10, TimeUnit.SECONDS);
+
+            assertThat(completed.getPaidItems()).isEqualTo(4);
+            assertThat(completed.getLastError()).isNull();
+            assertThat(balance(source)).isEqualByComparingTo("80");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void campaignIdsAndTransferIdsShareOneNamespace() throws Exception {
+        Wallet source = TestWallets.create(customerService, walletService, "100");
+        List<Wallet> destinations = wallets(1);
+        String transferId = UUID.randomUUID().toString();
+        walletService.transfer(source.getWalletId(), destinations.get(0).getWalletId(), BigDecimal.ONE, transferId, "transfer");
+
+        assertThatThrownBy(() -> disbursementService.create(transferId, source.getWalletId(), "clash", items(destinations, "1")))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessageContaining("transferId already processed");
+
+        String campaignId = UUID.randomUUID().toString();
+        disbursementService.create(campaignId, source.getWalletId(), "campaign", items(destinations, "1"));
+        awaitStatus(campaignId, Disbursement.Status.COMPLETED);
+        assertThatThrownBy(() -> walletService.transfer(source.getWalletId(), destinations.get(0).getWalletId(),
+                BigDecimal.ONE, campaignId, "clash"))
+                .isInstanceOf(DuplicateResourceException.class);
+        assertThat(balance(source)).isEqualByComparingTo("98");
+    }
+
+    private List<Wallet> wallets(int count) {
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            wallets.add(TestWallets.create(customerService, walletService, "0"));
+        }
+        return wallets;
+    }
+
+    private static List<DisbursementItemDto> items(List<Wallet> wallets, String amount) {
+        return wallets.stream()
+                .map(w -> DisbursementItemDto.builder().walletId(w.getWalletId()).amount(new BigDecimal(amount)).build())
+                .toList();
+    }
+
+    private Disbursement awaitStatus(String campaignId, Disbursement.Status expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        Disbursement campaign = disbursementService.get(campaignId);
+        while (campaign.getStatus() != expected) {
+            assertThat(campaign.getStatus()).isEqualTo(Disbursement.Status.RUNNING);
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(20);
+            campaign = disbursementService.get(campaignId);
+        }
+        return campaign;
+    }
+
+    private int credits(String campaignId, Wallet wallet) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE transfer_id = ? AND wallet_id = ? AND type = 'CREDIT'",
+                Integer.class, campaignId, wallet.getWalletId());
+    }
+
+    private BigDecimal balance(Wallet wallet) {
+        return walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.InsufficientFundsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class HotWalletTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void enablingHotModeMovesTheBalanceOntoTheShards() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+
+        Wallet hot = walletService.enableHotMode(wallet.getWalletId(), 4);
+
+        assertThat(hot.getShardCount()).isEqualTo(4);
+        assertThat(hot.getBalance()).isEqualTo(money("100"));
+        assertThat(rowBalance(wallet.getWalletId())).isEqualByComparingTo("0");
+        assertThat(shardBalances(wallet.getWalletId())).hasSize(4);
+        assertThat(shardSum(wallet.getWalletId())).isEqualByComparingTo("100");
+        assertThatThrownBy(() -> walletService.enableHotMode(wallet.getWalletId(), 4))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void shardCountIsBounded() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+
+        assertThatThrownBy(() -> walletService.enableHotMode(wallet.getWalletId(), 1))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> walletService.enableHotMode(wallet.getWalletId(), 65))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void creditsLandOnShardsAndTheTotalIsRowPlusShards() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        walletService.enableHotMode(wallet.getWalletId(), 8);
+
+        for (int i = 0; i < 40; i++) {
+            Transaction tx = walletService.deposit(wallet.getWalletId(), new BigDecimal("2.5"), "credit-" + i);
+            // concurrent credits land on different shards, so a single running balance is not known here
+            assertThat(tx.getBalanceAfter()).isNull();
+        }
+
+        assertThat(rowBalance(wallet.getWalletId())).isEqualByComparingTo("0");
+        assertThat(shardSum(wallet.getWalletId())).isEqualByComparingTo("200");
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance()).isEqualTo(money("200"));
+        // with 40 random picks out of 8 shards more than one shard takes credits
+        assertThat(shardBalances(wallet.getWalletId()).stream().filter(b -> b.signum() > 0).count()).isGreaterThan(1);
+    }
+
+    @Test
+    void debitSweepsShardsInShardOrder() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+        for (int i = 0; i < 8; i++) {
+            walletService.deposit(wallet.getWalletId(), new BigDecimal("10"), "credit-" + i);
+        }
+
+        List<BigDecimal> before = shardBalances(wallet.getWalletId());
+
+        walletService.withdraw(wallet.getWalletId(), new BigDecimal("150"), "sweep");
+
+        // shards are emptied in shard_no order; only the last one touched keeps a remainder
+        List<BigDecimal> expected = new ArrayList<>();
+        BigDecimal remaining = new BigDecimal("150");
+        for (BigDecimal balance : before) {
+            BigDecimal take = balance.min(remaining);
+            expected.add(balance.subtract(take));
+            remaining = remaining.subtract(take);
+        }
+        assertThat(shardBalances(wallet.getWalletId()))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactlyElementsOf(expected);
+        assertThat(shardSum(wallet.getWalletId())).isEqualByComparingTo("30");
+    }
+
+    @Test
+    void debitBeyondTheShardTotalIsRejectedAndChangesNothing() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "50");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+        walletService.deposit(wallet.getWalletId(), new BigDecimal("10"), "credit");
+
+        assertThatThrownBy(() -> walletService.withdraw(wallet.getWalletId(), new BigDecimal("60.0001"), "too much"))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        assertThat(shardSum(wallet.getWalletId())).isEqualByComparingTo("60");
+        walletService.withdraw(wallet.getWalletId(), new BigDecimal("60"), "all of it");
+        assertThat(shardSum(wallet.getWalletId())).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void concurrentCreditsAndDebitsKeepTheShardSum() throws Exception {
+        Wallet wallet = TestWallets.create(customerService, walletService, "1000");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+        Long id = wallet.getWalletId();
+
+        // more threads than pooled connections, so a request needing a second connection would stall here
+        int threads = 24;
+        int perThread = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            boolean debits = t % 4 == 0;
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    if (debits) {
+                        walletService.withdraw(id, new BigDecimal("3"), "debit");
+                    } else {
+                        walletService.deposit(id, new BigDecimal("1"), "credit");
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // 18 threads credit 10 x 1, 6 threads debit 10 x 3
+        assertThat(shardSum(id)).isEqualByComparingTo(new BigDecimal(1000 + 18 * perThread - 6 * perThread * 3));
+        BigDecimal ledger = jdbcTemplate.queryForObject(
+                "SELECT SUM(CASE WHEN type = 'CREDIT' THEN amount ELSE -amount END) FROM transactions WHERE wallet_id = ?",
+                BigDecimal.class, id);
+        assertThat(ledger).isEqualByComparingTo(shardSum(id));
+    }
+
+    private BigDecimal rowBalance(Long walletId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallets WHERE id = ?", BigDecimal.class, walletId);
+    }
+
+    private List<BigDecimal> shardBalances(Long walletId) {
+        return jdbcTemplate.queryForList(
+                "SELECT balance FROM wallet_balance_shards WHERE wallet_id = ? ORDER BY shard_no", BigDecimal.class, walletId);
+    }
+
+    private BigDecimal shardSum(Long walletId) {
+        return shardBalances(walletId).stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static Money money(String value) {
+        return Money.of(new BigDecimal(value));
+    }
+}
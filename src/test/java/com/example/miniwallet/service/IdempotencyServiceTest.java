@@ -0,0 +1,159 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    private static final TypeReference<Map<String, Object>> BODY = new TypeReference<>() {
+    };
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+
+    @Test
+    void aRetryReplaysTheStoredResponseWithoutRunningAgain() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String key = UUID.randomUUID().toString();
+        Map<String, Object> request = Map.of("amount", "5");
+
+        ResponseEntity<Map<String, Object>> first = deposit(key, wallet, request);
+        ResponseEntity<Map<String, Object>> retry = deposit(key, wallet, request);
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(first.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("5");
+    }
+
+    @Test
+    void aKeyCannotBeReusedForADifferentRequest() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String key = UUID.randomUUID().toString();
+        deposit(key, wallet, Map.of("amount", "5"));
+
+        assertThatThrownBy(() -> deposit(key, wallet, Map.of("amount", "6")))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("different request");
+        assertThatThrownBy(() -> deposit("k".repeat(129), wallet, Map.of("amount", "5")))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void headerKeysAndTransferClaimsDoNotShareANamespace() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String id = UUID.randomUUID().toString();
+        deposit(id, wallet, Map.of("amount", "5"));
+
+        // a header key equal to a transfer id does not claim that transfer
+        assertThat(idempotencyService.findClaimed(List.of(IdempotencyService.transferKey(id)))).isEmpty();
+        idempotencyService.claimAll(List.of(IdempotencyService.transferKey(id)), "TRANSFER");
+        assertThat(deposit(id, wallet, Map.of("amount", "5")).getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER))
+                .isEqualTo("true");
+
+        assertThatThrownBy(() -> deposit(IdempotencyService.transferKey(id), wallet, Map.of("amount", "5")))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("reserved prefix");
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("5");
+    }
+
+    @Test
+    void aKeyClaimedInBetweenIsAConflict() {
+        String key = IdempotencyService.transferKey(UUID.randomUUID().toString());
+        idempotencyService.claimAll(List.of(key), "TRANSFER");
+
+        assertThatThrownBy(() -> idempotencyService.claimAll(List.of(key), "TRANSFER"))
+                .isInstanceOf(DuplicateResourceException.class);
+    }
+
+    @Test
+    void aFailedActionReleasesTheKey() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "WITHDRAW", Map.of("amount", "5"), HttpStatus.OK, BODY,
+                () -> body(walletService.withdraw(wallet.getWalletId(), new BigDecimal("5"), "too much"))))
+                .isInstanceOf(RuntimeException.class);
+
+        walletService.deposit(wallet.getWalletId(), new BigDecimal("5"), "top up");
+        ResponseEntity<Map<String, Object>> retry = idempotencyService.execute(key, "WITHDRAW", Map.of("amount", "5"),
+                HttpStatus.OK, BODY, () -> body(walletService.withdraw(wallet.getWalletId(), new BigDecimal("5"), "now")));
+        assertThat(retry.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void concurrentRequestsWithOneKeyRunTheActionOnce() throws Exception {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String key = UUID.randomUUID().toString();
+        Map<String, Object> request = Map.of("amount", "5");
+        AtomicInteger runs = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<ResponseEntity<Map<String, Object>>>> calls = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            calls.add(pool.submit(() -> {
+                start.await();
+                return idempotencyService.execute(key, "DEPOSIT", request, HttpStatus.CREATED, BODY, () -> {
+                    runs.incrementAndGet();
+                    return body(walletService.deposit(wallet.getWalletId(), new BigDecimal("5"), "once"));
+                });
+            }));
+        }
+        start.countDown();
+        List<Map<String, Object>> bodies = new ArrayList<>();
+        for (Future<ResponseEntity<Map<String, Object>>> call : calls) {
+            bodies.add(call.get(60, TimeUnit.SECONDS).getBody());
+        }
+        pool.shutdown();
+
+        // the losers wait on the claimed key and replay the winner's response once it commits
+        assertThat(runs).hasValue(1);
+        assertThat(bodies).allSatisfy(b -> assertThat(b).isEqualTo(bodies.get(0)));
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("5");
+    }
+
+    private ResponseEntity<Map<String, Object>> deposit(String key, Wallet wallet, Map<String, Object> request) {
+        return idempotencyService.execute(key, "DEPOSIT:" + wallet.getWalletId(), request, HttpStatus.CREATED, BODY,
+                () -> body(walletService.deposit(wallet.getWalletId(), new BigDecimal((String) request.get("amount")), "idem")));
+    }
+
+    private static Map<String, Object> body(Transaction tx) {
+        return Map.of("transactionId", tx.getTransactionId(), "amount", tx.getAmount().toString());
+    }
+}
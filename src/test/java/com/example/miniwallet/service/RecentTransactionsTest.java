@@ -0,0 +1,99 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.EmbeddedRedis;
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RecentTransactionsTest {
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        EmbeddedRedis.register(registry);
+    }
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private RecentTransactionsService recentTransactions;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void pagesFromTheWindowMatchTheDatabaseAsRowsAreAppended() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        deposits(wallet, 12);
+
+        // first read rebuilds the window, the deposits after it are appended
+        assertThat(recentTransactions.findPage(wallet.getWalletId(), PageRequest.of(0, 5))).isPresent();
+        deposits(wallet, 13);
+
+        assertWindowMatchesDatabase(wallet, 25);
+    }
+
+    @Test
+    void pagesBeyondTheWindowGoToTheDatabase() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+
+        assertThat(recentTransactions.findPage(wallet.getWalletId(),
+                PageRequest.of(RecentTransactionsService.WINDOW / 10, 10))).isEmpty();
+        assertThat(recentTransactions.findPage(wallet.getWalletId(), PageRequest.of(0, 10)))
+                .hasValueSatisfying(page -> assertThat(page.getTotalElements()).isZero());
+    }
+
+    @Test
+    void anAppendOfARowTheRebuildAlreadyReadIsSkipped() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        deposits(wallet, 3);
+        Transaction newest = transactionRepository.findByWalletIdOrderByCreatedAtDesc(wallet.getWalletId()).get(0);
+
+        // a rebuild that runs after a commit but before that commit's append sees the row in the DB ...
+        recentTransactions.invalidateAfterCommit(List.of(wallet.getWalletId()));
+        assertThat(recentTransactions.findPage(wallet.getWalletId(), PageRequest.of(0, 10)))
+                .hasValueSatisfying(page -> assertThat(page.getTotalElements()).isEqualTo(3));
+        // ... and the late append must not add it a second time
+        recentTransactions.recordAfterCommit(List.of(newest));
+
+        assertWindowMatchesDatabase(wallet, 3);
+    }
+
+    private void assertWindowMatchesDatabase(Wallet wallet, int expected) {
+        List<String> fromWindow = new ArrayList<>();
+        for (int page = 0; page * 10 < expected; page++) {
+            Page<Transaction> result = recentTransactions.findPage(wallet.getWalletId(), PageRequest.of(page, 10))
+                    .orElseThrow();
+            assertThat(result.getTotalElements()).isEqualTo(expected);
+            result.forEach(t -> fromWindow.add(t.getTransactionId()));
+        }
+        List<String> fromDb = transactionRepository.findByWalletIdOrderByCreatedAtDesc(wallet.getWalletId()).stream()
+                .map(Transaction::getTransactionId)
+                .toList();
+        assertThat(fromDb).hasSize(expected);
+        assertThat(fromWindow).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(fromDb);
+    }
+
+    private void deposits(Wallet wallet, int count) {
+        for (int i = 0; i < count; i++) {
+            walletService.deposit(wallet.getWalletId(), BigDecimal.ONE, "recent-" + i);
+        }
+    }
+}
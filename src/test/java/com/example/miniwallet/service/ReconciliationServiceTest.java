@@ -0,0 +1,139 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.ReconciliationMismatch;
+import com.example.miniwallet.entity.ReconciliationRun;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// small ranges, so the seeded wallets land in several of them
+@SpringBootTest(properties = "wallet.reconciliation.range-size=3")
+@ActiveProfiles("test")
+class ReconciliationServiceTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aFullRunReportsExactlyTheWalletsWhoseBalanceDrifted() throws Exception {
+        Wallet regular = TestWallets.create(customerService, walletService, "100");
+        walletService.withdraw(regular.getWalletId(), new BigDecimal("40"), "seed");
+        Wallet hot = TestWallets.create(customerService, walletService, "50");
+        walletService.enableHotMode(hot.getWalletId(), 4);
+        walletService.deposit(hot.getWalletId(), new BigDecimal("5"), "seed");
+        Wallet drifted = TestWallets.create(customerService, walletService, "20");
+        drift(drifted, "7.5", LocalDateTime.now());
+        Wallet driftedShard = TestWallets.create(customerService, walletService, "10");
+        walletService.enableHotMode(driftedShard.getWalletId(), 2);
+        jdbcTemplate.update("UPDATE wallet_balance_shards SET balance = balance - 1 WHERE wallet_id = ? AND shard_no = 1",
+                driftedShard.getWalletId());
+
+        ReconciliationRun run = runToCompletion(true);
+
+        assertThat(run.getChangedSince()).isNull();
+        assertThat(run.getWalletsChecked()).isGreaterThanOrEqualTo(4);
+        assertThat(mismatches(run, regular, hot, drifted, driftedShard))
+                .extracting(ReconciliationMismatch::getWalletId, m -> m.getDifference().stripTrailingZeros())
+                .containsExactly(
+                        tuple(drifted.getWalletId(), new BigDecimal("7.5")),
+                        tuple(driftedShard.getWalletId(), new BigDecimal("-1")));
+    }
+
+    @Test
+    void anIncrementalRunOnlyChecksWalletsChangedSinceTheLastOne() throws Exception {
+        Wallet untouched = TestWallets.create(customerService, walletService, "10");
+        Wallet changed = TestWallets.create(customerService, walletService, "10");
+        runToCompletion(true);
+
+        // a drift the incremental run cannot see: updated_at stays before the previous run
+        drift(untouched, "3", LocalDateTime.of(2000, 1, 1, 0, 0));
+        drift(changed, "4", LocalDateTime.now());
+
+        ReconciliationRun run = runToCompletion(false);
+
+        assertThat(run.getChangedSince()).isNotNull();
+        assertThat(mismatches(run, untouched, changed)).extracting(ReconciliationMismatch::getWalletId)
+                .containsExactly(changed.getWalletId());
+    }
+
+    @Test
+    void anInterruptedRunResumesWithTheRangesItHadNotFinished() throws Exception {
+        Wallet drifted = TestWallets.create(customerService, walletService, "10");
+        drift(drifted, "2", LocalDateTime.now());
+        ReconciliationRun first = runToCompletion(true);
+
+        // pretend the run stopped before the range holding the drifted wallet was checked
+        jdbcTemplate.update("UPDATE reconciliation_runs SET status = 'FAILED', finished_at = NULL WHERE id = ?", first.getRunId());
+        jdbcTemplate.update("UPDATE reconciliation_ranges SET done = false, wallets_checked = NULL, mismatches = NULL " +
+                "WHERE run_id = ? AND ? BETWEEN range_start AND range_end", first.getRunId(), drifted.getWalletId());
+        jdbcTemplate.update("DELETE FROM reconciliation_mismatches WHERE run_id = ? AND wallet_id = ?", first.getRunId(), drifted.getWalletId());
+        jdbcTemplate.update("UPDATE reconciliation_ranges SET checked_at = NULL WHERE run_id = ?", first.getRunId());
+
+        ReconciliationRun resumed = runToCompletion(true);
+
+        assertThat(resumed.getRunId()).isEqualTo(first.getRunId());
+        assertThat(mismatches(resumed, drifted)).extracting(ReconciliationMismatch::getWalletId)
+                .containsExactly(drifted.getWalletId());
+        // only the reopened range was checked again
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reconciliation_ranges WHERE run_id = ? AND checked_at IS NOT NULL",
+                Integer.class, first.getRunId())).isEqualTo(1);
+    }
+
+    private void drift(Wallet wallet, String amount, LocalDateTime updatedAt) {
+        jdbcTemplate.update("UPDATE wallets SET balance = balance + ?, updated_at = ? WHERE id = ?",
+                new BigDecimal(amount), Timestamp.valueOf(updatedAt), wallet.getWalletId());
+    }
+
+    private ReconciliationRun runToCompletion(boolean full) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        ReconciliationRun started = null;
+        while (started == null) {
+            try {
+                started = reconciliationService.start(full);
+            } catch (DuplicateResourceException ex) {
+                // the previous run has saved its result but not yet released the run slot
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+        ReconciliationRun run = reconciliationService.getRun(started.getRunId());
+        // a resumed run keeps its old status until it finishes
+        while (run.getStatus() != ReconciliationRun.Status.COMPLETED) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(20);
+            run = reconciliationService.getRun(started.getRunId());
+        }
+        return run;
+    }
+
+    private List<ReconciliationMismatch> mismatches(ReconciliationRun run, Wallet... wallets) {
+        Set<Long> ids = Arrays.stream(wallets).map(Wallet::getWalletId).collect(Collectors.toSet());
+        return reconciliationService.getMismatches(run.getRunId(), Pageable.unpaged()).stream()
+                .filter(m -> ids.contains(m.getWalletId()))
+                .toList();
+    }
+}
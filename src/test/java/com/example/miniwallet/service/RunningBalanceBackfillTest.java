@@ -0,0 +1,131 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.entity.Wallet;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// a small page size makes every walk span several transactions
+@SpringBootTest(properties = "wallet.balance-after.page-size=7")
+@ActiveProfiles("test")
+class RunningBalanceBackfillTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private RunningBalanceBackfill backfill;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void historyIsFilledFromTheCurrentBalanceBackwards() {
+        jdbcTemplate.update("DELETE FROM balance_after_backfill_state");
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        // the opening 50 was seeded without a transaction row
+        List<Seeded> rows = seedHistory(wallet, new BigDecimal("50"), 40);
+
+        backfill.backfillAll();
+
+        assertFilled(rows);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_after_backfill", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT scanned_through FROM balance_after_backfill_state", Long.class))
+                .isGreaterThanOrEqualTo(wallet.getWalletId());
+    }
+
+    @Test
+    void anInterruptedWalkIsResumedFromItsCheckpoint() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        List<Seeded> rows = seedHistory(wallet, BigDecimal.ZERO, 20);
+        // the walk got as far as row 12: everything newer is set, the older rows are still missing
+        for (Seeded row : rows.subList(12, rows.size())) {
+            jdbcTemplate.update("UPDATE transactions SET balance_after = ? WHERE id = ?", row.balanceAfter(), row.id());
+        }
+        Seeded checkpoint = rows.get(12);
+        jdbcTemplate.update("INSERT INTO balance_after_backfill (wallet_id, before_created_at, before_id, balance) VALUES (?, ?, ?, ?)",
+                wallet.getWalletId(), Timestamp.valueOf(checkpoint.createdAt()), checkpoint.id(), rows.get(11).balanceAfter());
+        // and the scan already passed this wallet, so only the checkpoint leads back to it
+        jdbcTemplate.update("DELETE FROM balance_after_backfill_state");
+        jdbcTemplate.update("INSERT INTO balance_after_backfill_state (id, scanned_through) VALUES (1, ?)", Long.MAX_VALUE / 2);
+
+        backfill.backfillAll();
+
+        assertFilled(rows);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_after_backfill WHERE wallet_id = ?",
+                Integer.class, wallet.getWalletId())).isZero();
+        jdbcTemplate.update("DELETE FROM balance_after_backfill_state");
+    }
+
+    @Test
+    void hotWalletRowsAreFilledAcrossSeveralPages() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+        for (int i = 0; i < 18; i++) {
+            if (i % 3 == 2) {
+                walletService.withdraw(wallet.getWalletId(), new BigDecimal("2"), "hot-" + i);
+            } else {
+                walletService.deposit(wallet.getWalletId(), new BigDecimal("5"), "hot-" + i);
+            }
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE wallet_id = ? AND balance_after IS NULL",
+                Integer.class, wallet.getWalletId())).isEqualTo(18);
+
+        backfill.fillHotWallets();
+
+        List<BigDecimal> balances = jdbcTemplate.queryForList(
+                "SELECT balance_after FROM transactions WHERE wallet_id = ? ORDER BY created_at, id", BigDecimal.class,
+                wallet.getWalletId());
+        assertThat(balances).doesNotContainNull();
+        // oldest first: the seed deposit, then +5 +5 -2 repeated; the walk ends on the current balance
+        assertThat(balances.get(0)).isEqualByComparingTo("100");
+        assertThat(balances.get(balances.size() - 1)).isEqualByComparingTo("148");
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("148");
+    }
+
+    /** Inserts rows one second apart without balance_after and sets the wallet balance they lead to. */
+    private List<Seeded> seedHistory(Wallet wallet, BigDecimal opening, int count) {
+        List<Seeded> rows = new ArrayList<>();
+        BigDecimal running = opening;
+        for (int i = 0; i < count; i++) {
+            boolean debit = i % 4 == 3;
+            String status = i % 7 == 6 ? "FAILED" : "SUCCESS";
+            BigDecimal amount = new BigDecimal(debit ? "3.5" : "10.25");
+            if ("SUCCESS".equals(status)) {
+                running = debit ? running.subtract(amount) : running.add(amount);
+            }
+            byte[] id = UuidBinaryConverter.toBytes(UUID.randomUUID().toString());
+            LocalDateTime createdAt = START.plusSeconds(i);
+            jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    id, wallet.getWalletId(), amount, debit ? "DEBIT" : "CREDIT", status, Timestamp.valueOf(createdAt));
+            rows.add(new Seeded(id, createdAt, running));
+        }
+        jdbcTemplate.update("UPDATE wallets SET balance = ? WHERE id = ?", running, wallet.getWalletId());
+        return rows;
+    }
+
+    private void assertFilled(List<Seeded> rows) {
+        for (Seeded row : rows) {
+            assertThat(jdbcTemplate.queryForObject("SELECT balance_after FROM transactions WHERE id = ?", BigDecimal.class, row.id()))
+                    .isEqualByComparingTo(row.balanceAfter());
+        }
+    }
+
+    private record Seeded(byte[] id, LocalDateTime createdAt, BigDecimal balanceAfter) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionCursorPagingTest {
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pagesWalkRowsSharingOneTimestampExactlyOnce() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        LocalDateTime older = LocalDateTime.of(2024, 1, 1, 10, 0);
+        LocalDateTime tied = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Row> seeded = new ArrayList<>();
+        seeded.add(insert(wallet, older));
+        // random (not time-ordered) ids, so only the id tie-break separates these rows
+        for (int i = 0; i < 10; i++) {
+            seeded.add(insert(wallet, tied));
+        }
+        seeded.add(insert(wallet, older.minusDays(1)));
+
+        List<String> expected = seeded.stream()
+                .sorted(Comparator.comparing(Row::createdAt).thenComparing(Row::id).reversed())
+                .map(Row::id)
+                .toList();
+
+        List<String> walked = new ArrayList<>();
+        TransactionCursor cursor = TransactionCursor.START;
+        int pages = 0;
+        while (true) {
+            Slice<Transaction> page = transactionService.getByWalletIdAfter(wallet.getWalletId(), cursor, 3,
+                    null, null, null, null);
+            page.forEach(t -> walked.add(t.getTransactionId()));
+            pages++;
+            if (!page.hasNext()) break;
+            // clients get the cursor in its encoded form and send it back
+            cursor = TransactionCursor.decode(TransactionCursor.after(page.getContent().get(page.getNumberOfElements() - 1)).encode());
+        }
+
+        assertThat(walked).containsExactlyElementsOf(expected);
+        assertThat(pages).isEqualTo(4);
+    }
+
+    @Test
+    void filteredPagesUseTheSameTieBreak() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        LocalDateTime tied = LocalDateTime.of(2024, 2, 1, 12, 0);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(insert(wallet, tied).id());
+        }
+        expected.sort(Comparator.reverseOrder());
+
+        Slice<Transaction> first = transactionService.getByWalletIdAfter(wallet.getWalletId(), TransactionCursor.START, 2,
+                null, Transaction.TransactionType.CREDIT, null, null);
+        Slice<Transaction> second = transactionService.getByWalletIdAfter(wallet.getWalletId(),
+                TransactionCursor.after(first.getContent().get(1)), 10, null, Transaction.TransactionType.CREDIT, null, null);
+
+        assertThat(first.getContent()).extracting(Transaction::getTransactionId).containsExactlyElementsOf(expected.subList(0, 2));
+        assertThat(second.getContent()).extracting(Transaction::getTransactionId).containsExactlyElementsOf(expected.subList(2, 5));
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    void cursorsRoundTripAndRejectGarbage() {
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2024, 3, 1, 8, 30, 15, 123_456_000),
+                "0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b");
+
+        assertThat(TransactionCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(TransactionCursor.decode(null)).isEqualTo(TransactionCursor.START);
+        assertThat(TransactionCursor.decode("")).isEqualTo(TransactionCursor.START);
+        assertThatThrownBy(() -> TransactionCursor.decode("not-a-cursor")).isInstanceOf(BadRequestException.class);
+    }
+
+    private Row insert(Wallet wallet, LocalDateTime createdAt) {
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, created_at) VALUES (?, ?, 1, 'CREDIT', 'SUCCESS', ?)",
+                UuidBinaryConverter.toBytes(id), wallet.getWalletId(), Timestamp.valueOf(createdAt));
+        return new Row(id, createdAt);
+    }
+
+    private record Row(String id, LocalDateTime createdAt) {
+    }
+}
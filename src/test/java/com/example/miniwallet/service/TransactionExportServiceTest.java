@@ -0,0 +1,148 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.entity.Wallet;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionExportServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+    @Autowired
+    private TransactionExportService exportService;
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void csvRowsAreEscapedAndOrderedOldestFirst() throws IOException {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String plain = insert(wallet, DAY.plusHours(1), "CREDIT", "12.5", "salary", null, new BigDecimal("12.5"));
+        String tricky = insert(wallet, DAY.plusHours(2), "DEBIT", "2", "rent, \"flat 2\"\nsecond line", "t-1", null);
+
+        String csv = export(wallet, TransactionExportService.Format.CSV, false, null, null);
+
+        assertThat(csv).isEqualTo(
+                "id,walletId,amount,type,status,transferId,relatedWalletId,reference,createdAt,balanceAfter\n"
+                + plain + "," + wallet.getWalletId() + ",12.5000,CREDIT,SUCCESS,,,salary,2024-05-01T01:00,12.5000\n"
+                + tricky + "," + wallet.getWalletId() + ",2.0000,DEBIT,SUCCESS,t-1,,\"rent, \"\"flat 2\"\"\nsecond line\",2024-05-01T02:00,\n");
+    }
+
+    @Test
+    void ndjsonHasOneObjectPerRowWithNulls() throws IOException {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String first = insert(wallet, DAY.plusHours(1), "CREDIT", "3", "a \"quoted\" ref", null, new BigDecimal("3"));
+        String second = insert(wallet, DAY.plusHours(2), "DEBIT", "1", null, "t-2", null);
+
+        String[] lines = export(wallet, TransactionExportService.Format.NDJSON, false, null, null).split("\n");
+
+        assertThat(lines).hasSize(2);
+        JsonNode a = objectMapper.readTree(lines[0]);
+        JsonNode b = objectMapper.readTree(lines[1]);
+        assertThat(a.get("id").asText()).isEqualTo(first);
+        assertThat(a.get("amount").decimalValue()).isEqualByComparingTo("3");
+        assertThat(a.get("reference").asText()).isEqualTo("a \"quoted\" ref");
+        assertThat(a.get("balanceAfter").decimalValue()).isEqualByComparingTo("3");
+        assertThat(a.get("relatedWalletId").isNull()).isTrue();
+        assertThat(b.get("id").asText()).isEqualTo(second);
+        assertThat(b.get("transferId").asText()).isEqualTo("t-2");
+        assertThat(b.get("reference").isNull()).isTrue();
+        assertThat(b.get("balanceAfter").isNull()).isTrue();
+        assertThat(b.get("createdAt").asText()).isEqualTo("2024-05-01T02:00");
+    }
+
+    @Test
+    void gzipAndDateRangeApply() throws IOException {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        insert(wallet, DAY.minusHours(1), "CREDIT", "1", "before", null, null);
+        String inside = insert(wallet, DAY, "CREDIT", "1", "inside", null, null);
+        insert(wallet, DAY.plusDays(1), "CREDIT", "1", "end is exclusive", null, null);
+
+        String ndjson = export(wallet, TransactionExportService.Format.NDJSON, true, DAY, DAY.plusDays(1));
+
+        assertThat(ndjson.split("\n")).singleElement().satisfies(line -> assertThat(line).contains(inside));
+    }
+
+    @Test
+    void aClientThatGoesAwayAbortsTheExport() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        // well past the 64 KB write buffer, so the failure surfaces while rows are still being read
+        int rows = 2000;
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, wallet_id, amount, type, status, reference, created_at) "
+                        + "VALUES (?, ?, 1, 'CREDIT', 'SUCCESS', ?, ?)",
+                IntStream.range(0, rows).boxed().toList(), 500, (ps, i) -> {
+                    ps.setBytes(1, UuidBinaryConverter.toBytes(UUID.randomUUID().toString()));
+                    ps.setLong(2, wallet.getWalletId());
+                    ps.setString(3, "row " + i);
+                    ps.setTimestamp(4, Timestamp.valueOf(DAY.plusSeconds(i)));
+                });
+        OutputStream disconnects = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 100) throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exportService.export(wallet.getWalletId(), null, null,
+                TransactionExportService.Format.CSV, false, disconnects))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        // the connection went back to the pool in a usable state
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE wallet_id = ?", Integer.class,
+                wallet.getWalletId())).isEqualTo(rows);
+    }
+
+    private String export(Wallet wallet, TransactionExportService.Format format, boolean gzip,
+                          LocalDateTime start, LocalDateTime end) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(wallet.getWalletId(), start, end, format, gzip, out);
+        byte[] bytes = out.toByteArray();
+        if (gzip) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = in.readAllBytes();
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String insert(Wallet wallet, LocalDateTime createdAt, String type, String amount, String reference,
+                          String transferId, BigDecimal balanceAfter) {
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO transactions (id, wallet_id, amount, type, status, transfer_id, reference, created_at, balance_after) "
+                        + "VALUES (?, ?, ?, ?, 'SUCCESS', ?, ?, ?, ?)",
+                UuidBinaryConverter.toBytes(id), wallet.getWalletId(), new BigDecimal(amount), type, transferId, reference,
+                Timestamp.valueOf(createdAt), balanceAfter);
+        return id;
+    }
+}
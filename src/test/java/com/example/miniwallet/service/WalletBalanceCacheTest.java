@@ -0,0 +1,91 @@
+package com.example.miniwallet.service;
+
+import com.example.miniwallet.EmbeddedRedis;
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.config.VersionedCacheWriter;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.repository.WalletRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WalletBalanceCacheTest {
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        EmbeddedRedis.register(registry);
+    }
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private WalletBalanceCache balanceCache;
+    @Autowired
+    private VersionedCacheWriter writer;
+
+    @Test
+    void olderVersionNeverReplacesNewerEntry() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        String key = WalletBalanceCache.key(wallet.getWalletId());
+
+        assertThat(writer.putIfNewer(WalletBalanceCache.CACHE, key, withBalance(wallet, "10"), 5)).isTrue();
+        assertThat(writer.putIfNewer(WalletBalanceCache.CACHE, key, withBalance(wallet, "7"), 3)).isFalse();
+        assertThat(balanceCache.get(wallet.getWalletId()).getBalance()).isEqualTo(money("10"));
+
+        // the same version may be written again (a reload of an unchanged row)
+        assertThat(writer.putIfNewer(WalletBalanceCache.CACHE, key, withBalance(wallet, "10"), 5)).isTrue();
+        assertThat(writer.putIfNewer(WalletBalanceCache.CACHE, key, withBalance(wallet, "12"), 6)).isTrue();
+        assertThat(balanceCache.get(wallet.getWalletId()).getBalance()).isEqualTo(money("12"));
+    }
+
+    @Test
+    void committedBalanceIsWrittenThroughAndStaleLoadIsDropped() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        Wallet before = walletRepository.findById(wallet.getWalletId()).orElseThrow();
+
+        walletService.deposit(wallet.getWalletId(), new BigDecimal("25"), "write-through");
+
+        Wallet committed = walletRepository.findById(wallet.getWalletId()).orElseThrow();
+        Wallet cached = balanceCache.get(wallet.getWalletId());
+        assertThat(cached.getBalance()).isEqualTo(money("125"));
+        assertThat(cached.getVersion()).isEqualTo(committed.getVersion());
+
+        // a cache-miss load that read the row before the deposit must not overwrite it
+        balanceCache.load(before);
+        assertThat(balanceCache.get(wallet.getWalletId()).getBalance()).isEqualTo(money("125"));
+    }
+
+    @Test
+    void hotWalletCreditEvictsEntryAndNextReadSeesShardTotal() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "100");
+        walletService.enableHotMode(wallet.getWalletId(), 4);
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance()).isEqualTo(money("100"));
+
+        walletService.deposit(wallet.getWalletId(), new BigDecimal("5"), "hot");
+
+        assertThat(balanceCache.get(wallet.getWalletId())).isNull();
+        assertThat(walletService.getById(wallet.getWalletId()).getBalance()).isEqualTo(money("105"));
+    }
+
+    private static Wallet withBalance(Wallet wallet, String balance) {
+        return WalletBalanceCache.copyWithBalance(wallet, money(balance));
+    }
+
+    private static Money money(String value) {
+        return Money.of(new BigDecimal(value));
+    }
+}
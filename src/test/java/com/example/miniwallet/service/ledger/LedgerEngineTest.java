@@ -0,0 +1,154 @@
+package com.example.miniwallet.service.ledger;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Money;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.UuidBinaryConverter;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.exception.BadRequestException;
+import com.example.miniwallet.exception.DuplicateResourceException;
+import com.example.miniwallet.exception.InsufficientFundsException;
+import com.example.miniwallet.service.CustomerService;
+import com.example.miniwallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LedgerEngineTest {
+
+    @DynamicPropertySource
+    static void ledger(DynamicPropertyRegistry registry) throws IOException {
+        String journal = Files.createTempDirectory("ledger-test").resolve("ledger.journal").toString();
+        registry.add("wallet.engine", () -> "ledger");
+        registry.add("wallet.ledger.journal-path", () -> journal);
+    }
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private LedgerPersister persister;
+    @Autowired
+    private LedgerEngine engine;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void changesReachMySqlThroughTheFlusher() throws Exception {
+        Wallet a = TestWallets.create(customerService, walletService, "100");
+        Wallet b = TestWallets.create(customerService, walletService, "0");
+
+        walletService.withdraw(a.getWalletId(), new BigDecimal("30"), "out");
+        List<Transaction> legs = walletService.transfer(a.getWalletId(), b.getWalletId(), new BigDecimal("20"), null, "move");
+
+        assertThat(legs).extracting(Transaction::getType)
+                .containsExactly(Transaction.TransactionType.DEBIT, Transaction.TransactionType.CREDIT);
+        assertThat(walletService.getById(a.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("50");
+        awaitStoredBalance(a, "50");
+        awaitStoredBalance(b, "20");
+    }
+
+    @Test
+    void aClientTransferIdIsClaimedWithTheFlushedDebit() throws Exception {
+        Wallet a = TestWallets.create(customerService, walletService, "100");
+        Wallet b = TestWallets.create(customerService, walletService, "0");
+        String transferId = UUID.randomUUID().toString();
+
+        walletService.transfer(a.getWalletId(), b.getWalletId(), BigDecimal.ONE, transferId, "first");
+        // rejected while only the journal has it
+        assertThatThrownBy(() -> walletService.transfer(a.getWalletId(), b.getWalletId(), BigDecimal.ONE, transferId, "retry"))
+                .isInstanceOf(DuplicateResourceException.class);
+
+        awaitStoredBalance(b, "1");
+        assertThat(persister.isClaimed("transfer:" + transferId)).isTrue();
+        // and after the flush through the claim MySQL now holds
+        assertThatThrownBy(() -> walletService.transfer(a.getWalletId(), b.getWalletId(), BigDecimal.ONE, transferId, "retry"))
+                .isInstanceOf(DuplicateResourceException.class);
+        assertThat(walletService.getById(b.getWalletId()).getBalance().toBigDecimal()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void persistingEntriesAgainChangesNothing() throws Exception {
+        Wallet a = TestWallets.create(customerService, walletService, "10");
+        awaitStoredBalance(a, "10");
+
+        // an entry the flusher already persisted, as it would be retried after a failed journal checkpoint
+        String id = UUID.randomUUID().toString();
+        LedgerEntry replayed = new LedgerEntry(persister.lastFlushedSeq(), id, a.getWalletId(),
+                Transaction.TransactionType.CREDIT, new BigDecimal("10"), null, null, "replayed", LocalDateTime.now(), null, null);
+        persister.persist(List.of(replayed));
+
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE id = ?", Integer.class,
+                (Object) UuidBinaryConverter.toBytes(id));
+        assertThat(rows).isZero();
+        assertThat(storedBalance(a)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void aReferenceTooLongForItsColumnIsRejectedBeforeItIsJournaled() throws Exception {
+        Wallet a = TestWallets.create(customerService, walletService, "10");
+        Wallet b = TestWallets.create(customerService, walletService, "0");
+        String reference = "r".repeat(256);
+
+        assertThatThrownBy(() -> walletService.deposit(a.getWalletId(), BigDecimal.ONE, reference))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> walletService.transfer(a.getWalletId(), b.getWalletId(), BigDecimal.ONE, null, reference))
+                .isInstanceOf(BadRequestException.class);
+
+        walletService.deposit(a.getWalletId(), BigDecimal.ONE, "r".repeat(255));
+        awaitStoredBalance(a, "11");
+    }
+
+    @Test
+    void anEntryMySqlRejectsIsQuarantinedAndLaterFlushesGoOn() throws Exception {
+        Wallet gone = TestWallets.create(customerService, walletService, "0");
+        Wallet other = TestWallets.create(customerService, walletService, "0");
+        // the engine loads the wallet, then its row disappears, so the next entry fails the foreign key
+        assertThatThrownBy(() -> walletService.withdraw(gone.getWalletId(), BigDecimal.ONE, "load"))
+                .isInstanceOf(InsufficientFundsException.class);
+        jdbcTemplate.update("DELETE FROM wallets WHERE id = ?", gone.getWalletId());
+
+        walletService.deposit(gone.getWalletId(), new BigDecimal("5"), "poison");
+        walletService.deposit(other.getWalletId(), new BigDecimal("7"), "after");
+
+        awaitStoredBalance(other, "7");
+        assertThat(jdbcTemplate.queryForList("SELECT entry FROM ledger_dead_letters WHERE wallet_id = ?", String.class,
+                gone.getWalletId())).singleElement().asString().contains("poison");
+        // the quarantined deposit is taken back out of the in-memory balance
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!engine.currentBalance(gone.getWalletId()).orElseThrow().equals(Money.ZERO)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(engine.currentBalance(gone.getWalletId())).contains(Money.ZERO);
+    }
+
+    private void awaitStoredBalance(Wallet wallet, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (storedBalance(wallet).compareTo(new BigDecimal(expected)) != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(storedBalance(wallet)).isEqualByComparingTo(expected);
+    }
+
+    private BigDecimal storedBalance(Wallet wallet) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallets WHERE id = ?", BigDecimal.class, wallet.getWalletId());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.miniwallet.service.ledger;
+
+import com.example.miniwallet.entity.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LedgerJournalTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unflushedEntriesSurviveAReopen() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, true)) {
+            for (int i = 0; i < 5; i++) {
+                LedgerEntry entry = journal.append(entry(i));
+                journal.sync(entry.seq());
+            }
+            journal.checkpoint(2, true);
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, true)) {
+            assertThat(journal.readAfterCheckpoint()).extracting(LedgerEntry::seq).containsExactly(3L, 4L, 5L);
+            assertThat(journal.readAfterCheckpoint().get(0).claimKey()).isEqualTo("transfer:2");
+            assertThat(journal.append(entry(5)).seq()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void aFullyFlushedJournalIsTruncatedOnlyWhenAllowed() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            journal.append(entry(0));
+            journal.append(entry(1));
+            journal.checkpoint(2, false);
+            assertThat(Files.size(path)).isPositive();
+            journal.checkpoint(2, true);
+            assertThat(Files.size(path)).isZero();
+            // numbering continues from the checkpoint
+            assertThat(journal.append(entry(2)).seq()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void aTornLastLineIsDroppedAndTheNextAppendStartsCleanly() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            journal.append(entry(0));
+            journal.append(entry(1));
+        }
+        Files.writeString(path, "{\"seq\":3,\"transactionId\":\"0190", StandardOpenOption.APPEND);
+
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            assertThat(journal.readAfterCheckpoint()).extracting(LedgerEntry::seq).containsExactly(1L, 2L);
+            assertThat(journal.append(entry(2)).seq()).isEqualTo(3);
+        }
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            assertThat(journal.readAfterCheckpoint()).extracting(LedgerEntry::seq).containsExactly(1L, 2L, 3L);
+        }
+    }
+
+    @Test
+    void anUnreadableFinalLineIsTolerated() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            journal.append(entry(0));
+        }
+        Files.writeString(path, "\u0000\u0000\u0000\n", StandardOpenOption.APPEND);
+
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            assertThat(journal.readAfterCheckpoint()).extracting(LedgerEntry::seq).containsExactly(1L);
+        }
+    }
+
+    @Test
+    void corruptionBeforeTheLastLineFailsStartup() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, false)) {
+            journal.append(entry(0));
+            journal.append(entry(1));
+            journal.append(entry(2));
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        lines.set(1, "garbage");
+        Files.write(path, lines, StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> new LedgerJournal(path, objectMapper, false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("corrupt at line 2");
+    }
+
+    @Test
+    void numberingCanBeAdvancedPastALostJournal() throws Exception {
+        try (LedgerJournal journal = new LedgerJournal(dir.resolve("ledger.journal"), objectMapper, false)) {
+            journal.advanceTo(41);
+            journal.advanceTo(7);
+            assertThat(journal.append(entry(0)).seq()).isEqualTo(42);
+        }
+    }
+
+    @Test
+    void concurrentAppendsShareSyncsAndKeepEverySequence() throws Exception {
+        Path path = dir.resolve("ledger.journal");
+        int threads = 8;
+        int perThread = 50;
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, true)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        LedgerEntry entry = journal.append(entry(i));
+                        journal.sync(entry.seq());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+            pool.shutdown();
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path, objectMapper, true)) {
+            assertThat(journal.readAfterCheckpoint()).extracting(LedgerEntry::seq)
+                    .containsExactlyElementsOf(LongStream.rangeClosed(1, threads * perThread).boxed().toList());
+        }
+    }
+
+    private static LedgerEntry entry(int i) {
+        return new LedgerEntry(0L, UUID.randomUUID().toString(), 1L, Transaction.TransactionType.DEBIT, new BigDecimal("1.5000"),
+                "t-" + i, 2L, "ref", LocalDateTime.now(), new BigDecimal("10.0000"), "transfer:" + i);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.miniwallet.service.outbox;
+
+import com.example.miniwallet.TestWallets;
+import com.example.miniwallet.entity.Transaction;
+import com.example.miniwallet.entity.Wallet;
+import com.example.miniwallet.service.CustomerService;
+import com.example.miniwallet.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OutboxRelayTest {
+
+    @TempDir
+    static Path outboxDir;
+
+    @DynamicPropertySource
+    static void outbox(DynamicPropertyRegistry registry) {
+        // events are written, but the scheduled relay stays off (scheduling is disabled in tests)
+        registry.add("wallet.outbox.enabled", () -> "true");
+        registry.add("wallet.outbox.file", () -> outboxDir.resolve("events.ndjson").toString());
+    }
+
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void emptyOutbox() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+    }
+
+    @Test
+    void eventsAreDeliveredInIdOrderAndDeletedWithTheirBatch() {
+        Wallet a = TestWallets.create(customerService, walletService, "100");
+        Wallet b = TestWallets.create(customerService, walletService, "0");
+        Transaction debit = walletService.transfer(a.getWalletId(), b.getWalletId(), new BigDecimal("30"), null, "outbox").get(0);
+        walletService.withdraw(b.getWalletId(), new BigDecimal("5"), "outbox");
+        List<LedgerEvent> delivered = new CopyOnWriteArrayList<>();
+
+        OutboxRelay relay = relay(delivered::addAll, 2);
+        assertThat(relay.relayBatch()).isEqualTo(2);
+        assertThat(outboxSize()).isEqualTo(2);
+        assertThat(relay.relayBatch()).isEqualTo(2);
+        assertThat(relay.relayBatch()).isZero();
+
+        assertThat(outboxSize()).isZero();
+        assertThat(delivered).extracting(LedgerEvent::eventId).isSorted().doesNotHaveDuplicates();
+        // seed deposit, transfer debit and credit, withdrawal
+        assertThat(delivered).extracting(LedgerEvent::walletId, LedgerEvent::type).containsExactly(
+                tuple(a.getWalletId(), Transaction.TransactionType.CREDIT),
+                tuple(a.getWalletId(), Transaction.TransactionType.DEBIT),
+                tuple(b.getWalletId(), Transaction.TransactionType.CREDIT),
+                tuple(b.getWalletId(), Transaction.TransactionType.DEBIT));
+        LedgerEvent transferDebit = delivered.get(1);
+        assertThat(transferDebit.transactionId()).isEqualTo(debit.getTransactionId());
+        assertThat(transferDebit.transferId()).isEqualTo(debit.getTransferId());
+        assertThat(transferDebit.relatedWalletId()).isEqualTo(b.getWalletId());
+        assertThat(transferDebit.balanceAfter()).isEqualByComparingTo("70");
+        assertThat(delivered.get(3).balanceAfter()).isEqualByComparingTo("25");
+    }
+
+    @Test
+    void aRejectedBatchStaysInTheOutbox() {
+        Wallet wallet = TestWallets.create(customerService, walletService, "10");
+        walletService.deposit(wallet.getWalletId(), BigDecimal.ONE, "outbox");
+
+        OutboxRelay failing = relay(events -> {
+            throw new IllegalStateException("sink down");
+        }, 10);
+        assertThatThrownBy(failing::relayBatch).hasMessageContaining("sink rejected 2 events");
+        assertThat(outboxSize()).isEqualTo(2);
+
+        List<LedgerEvent> delivered = new CopyOnWriteArrayList<>();
+        assertThat(relay(delivered::addAll, 10).relayBatch()).isEqualTo(2);
+        assertThat(outboxSize()).isZero();
+    }
+
+    @Test
+    void concurrentRelaysClaimDisjointBatches() throws Exception {
+        Wallet wallet = TestWallets.create(customerService, walletService, "0");
+        for (int i = 0; i < 4; i++) {
+            walletService.deposit(wallet.getWalletId(), BigDecimal.ONE, "outbox-" + i);
+        }
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<LedgerEvent> slow = new CopyOnWriteArrayList<>();
+        List<LedgerEvent> fast = new CopyOnWriteArrayList<>();
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // the first relay holds its claim on the two oldest rows while the second one polls
+            Future<Integer> first = pool.submit(() -> relay(events -> {
+                slow.addAll(events);
+                claimed.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }, 2).relayBatch());
+            assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(relay(fast::addAll, 2).relayBatch()).isEqualTo(2);
+            release.countDown();
+            assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(slow).extracting(LedgerEvent::eventId).doesNotContainAnyElementsOf(
+                fast.stream().map(LedgerEvent::eventId).toList());
+        assertThat(outboxSize()).isZero();
+    }
+
+    private OutboxRelay relay(OutboxSink sink, int batchSize) {
+        OutboxRelay relay = new OutboxRelay(jdbcTemplate, transactionTemplate, sink);
+        ReflectionTestUtils.setField(relay, "batchSize", batchSize);
+        return relay;
+    }
+
+    private int outboxSize() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class);
+    }
+}
@@ -0,0 +1,47 @@
+-- Tables written only through JDBC (see database.sql); Hibernate creates the entity tables
+CREATE TABLE IF NOT EXISTS outbox_events (
+  id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  transaction_id BINARY(16) NOT NULL,
+  wallet_id BIGINT NOT NULL,
+  type VARCHAR(6) NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  balance_after DECIMAL(19,4) NULL,
+  transfer_id CHAR(36) NULL,
+  related_wallet_id BIGINT NULL,
+  occurred_at DATETIME(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ledger_flush_state (
+  id TINYINT NOT NULL PRIMARY KEY,
+  last_seq BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ledger_dead_letters (
+  seq BIGINT NOT NULL PRIMARY KEY,
+  transaction_id BINARY(16) NOT NULL,
+  wallet_id BIGINT NOT NULL,
+  entry CLOB NOT NULL,
+  error VARCHAR(1024) NULL,
+  quarantined_at DATETIME(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS balance_after_backfill (
+  wallet_id BIGINT NOT NULL PRIMARY KEY,
+  before_created_at DATETIME(6) NOT NULL,
+  before_id BINARY(16) NOT NULL,
+  balance DECIMAL(19,4) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS balance_after_backfill_state (
+  id TINYINT NOT NULL PRIMARY KEY,
+  scanned_through BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS disbursement_items (
+  id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  campaign_id CHAR(36) NOT NULL,
+  wallet_id BIGINT NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  status VARCHAR(7) NOT NULL,
+  CONSTRAINT uk_disbursement_item UNIQUE (campaign_id, wallet_id)
+);